@@ -3,9 +3,13 @@ import controller.ImageController;
 import controller.ScriptRunner;
 import model.IModel;
 import model.ImageModel;
+import model.ImageStorage;
+import model.Parallelism;
+import model.PixelKernels;
 import view.IView;
 import view.ImageProcessingGUI;
 
+import java.util.Arrays;
 import java.util.Scanner;
 
 /**
@@ -22,6 +26,16 @@ import java.util.Scanner;
  * java -jar ImageEditor.jar -text
  * java -jar ImageEditor.jar
  * </pre>
+ * Any of the above may be preceded by {@code -storage packed|planar|offheap|tiled} to choose how
+ * the model stores pixels (packed is the default). {@code -offheap-threshold pixels} and
+ * {@code -tiled-threshold pixels} set the image sizes from which loaded images are stored
+ * off-heap, or in a memory-mapped tiled file, regardless of that choice. {@code -threads n} sets
+ * how many threads image operations use (all available processors by default).
+ * {@code -kernels row|pixel} chooses between the row kernels of the pointwise filters and
+ * convolutions and their per-pixel forms (row is the default).
+ * {@code -evaluation eager|deferred} chooses whether operations are evaluated as they are given
+ * or only when their images are read or saved (eager is the default). {@code -cache-bytes bytes}
+ * sets the total size of the operation results the model caches (0 turns the cache off).
  * Invalid arguments will display a help message and terminate the program.
  */
 public class Main {
@@ -33,7 +47,70 @@ public class Main {
    * @param args command-line arguments
    */
   public static void main(String[] args) {
-    IModel model = new ImageModel();
+    ImageStorage storage = ImageStorage.PACKED;
+    long offHeapThreshold = ImageModel.DEFAULT_OFF_HEAP_THRESHOLD;
+    long tiledThreshold = ImageModel.DEFAULT_TILED_THRESHOLD;
+    boolean deferred = false;
+    long cacheBytes = ImageModel.DEFAULT_CACHE_BYTES;
+    while (args.length >= 2 && args[0].startsWith("-")) {
+      if (args[0].equals("-storage")) {
+        try {
+          storage = ImageStorage.valueOf(args[1].toUpperCase());
+        } catch (IllegalArgumentException e) {
+          System.out.println("Unknown storage mode: " + args[1]
+                  + " (use packed, planar, offheap or tiled)");
+          System.exit(1);
+        }
+      } else if (args[0].equals("-offheap-threshold")) {
+        try {
+          offHeapThreshold = Long.parseLong(args[1]);
+        } catch (NumberFormatException e) {
+          System.out.println("Invalid off-heap threshold: " + args[1]);
+          System.exit(1);
+        }
+      } else if (args[0].equals("-tiled-threshold")) {
+        try {
+          tiledThreshold = Long.parseLong(args[1]);
+        } catch (NumberFormatException e) {
+          System.out.println("Invalid tiled threshold: " + args[1]);
+          System.exit(1);
+        }
+      } else if (args[0].equals("-cache-bytes")) {
+        try {
+          cacheBytes = Long.parseLong(args[1]);
+        } catch (NumberFormatException e) {
+          System.out.println("Invalid cache size: " + args[1]);
+          System.exit(1);
+        }
+      } else if (args[0].equals("-threads")) {
+        try {
+          Parallelism.setThreads(Integer.parseInt(args[1]));
+        } catch (IllegalArgumentException e) {
+          System.out.println("Invalid thread count: " + args[1]);
+          System.exit(1);
+        }
+      } else if (args[0].equals("-kernels")) {
+        if (args[1].equalsIgnoreCase("row") || args[1].equalsIgnoreCase("pixel")) {
+          PixelKernels.setRowKernels(args[1].equalsIgnoreCase("row"));
+        } else {
+          System.out.println("Unknown kernels: " + args[1] + " (use row or pixel)");
+          System.exit(1);
+        }
+      } else if (args[0].equals("-evaluation")) {
+        if (args[1].equalsIgnoreCase("eager") || args[1].equalsIgnoreCase("deferred")) {
+          deferred = args[1].equalsIgnoreCase("deferred");
+        } else {
+          System.out.println("Unknown evaluation: " + args[1] + " (use eager or deferred)");
+          System.exit(1);
+        }
+      } else {
+        break;
+      }
+      args = Arrays.copyOfRange(args, 2, args.length);
+    }
+
+    IModel model = new ImageModel(storage, offHeapThreshold, tiledThreshold, deferred,
+            cacheBytes);
     IView view = new ImageProcessingGUI();
     Controller controller = new Controller(model, view); // GUI
     ImageController textController = new ImageController(model); // Text
@@ -70,6 +147,14 @@ public class Main {
               + "-file path-of-script-file");
       System.out.println("java -jar out/artifacts/ImageEditor_jar/ImageEditor.jar -text");
       System.out.println("java -jar out/artifacts/ImageEditor_jar/ImageEditor.jar");
+      System.out.println("Prefix any of these with -storage packed|planar|offheap|tiled to pick "
+              + "the pixel storage layout, and with -offheap-threshold pixels or -tiled-threshold "
+              + "pixels to set the image sizes from which images are kept off-heap or in a "
+              + "memory-mapped file. -cache-bytes bytes sets the size of the result cache. "
+              + "-threads n sets the number of threads used by image "
+              + "operations, -kernels row|pixel picks the row kernels or the "
+              + "per-pixel forms of the filters, and -evaluation eager|deferred picks whether "
+              + "operations run as they are given or only when their images are needed.");
       System.exit(1);
     }
   }
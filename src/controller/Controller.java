@@ -3,6 +3,7 @@ package controller;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.function.Supplier;
 
 import javax.imageio.ImageIO;
 
@@ -56,18 +57,22 @@ public class Controller implements Features {
   public void loadImage(String inputPath, String imageNameAsPerFile) throws IOException {
 
     try {
-      BufferedImage bufferedImage;
-      if (inputPath.contains(".ppm")) {
-        bufferedImage = ImageUtil.readPPM(inputPath);
+      // Save the original image in the model
+      if (inputPath.toLowerCase().endsWith(".haar")) {
+        model.loadImageFile(inputPath, originalImageName);
       } else {
-        bufferedImage = ImageIO.read(new File(inputPath));
+        BufferedImage bufferedImage;
+        if (inputPath.contains(".ppm")) {
+          bufferedImage = ImageUtil.readPPM(inputPath);
+        } else {
+          bufferedImage = ImageIO.read(new File(inputPath));
+        }
+        model.loadImage(bufferedImage, originalImageName);
       }
-      // Save the original image in the model
-      model.loadImage(bufferedImage, originalImageName);
-      // Also save a copy as the editable image
-      model.loadImage(bufferedImage, imageName);
-      //saving another image for split operations
-      model.loadImage(bufferedImage, splitImage);
+      // The editable and split images start out as the original itself; stored images are never
+      // modified in place, so they can share its pixels until an operation replaces them
+      model.resetToOriginal(imageName, originalImageName);
+      model.resetToOriginal(splitImage, originalImageName);
 
       BufferedImage imageInsideModelAfterLoading = model.getImage(imageName);
       view.displayImage(imageInsideModelAfterLoading, ImageType.WORKING_IMAGE);
@@ -103,6 +108,8 @@ public class Controller implements Features {
     if (filetype.contains("ppm")) {
       ImageUtil.savePPM(outputPath.substring(0, outputPath.lastIndexOf(".")) + ".ppm",
               imageInsideModelAfterLoading);
+    } else if (filetype.equals("haar")) {
+      model.saveImageFile(imageName, outputPath);
     } else {
       ImageIO.write(imageInsideModelAfterLoading, filetype, new File(outputPath));
     }
@@ -236,6 +243,22 @@ public class Controller implements Features {
     heplerForDisplayToView(imageName);
   }
 
+  @Override
+  public Supplier<Runnable> prepareCompress(int percentage) {
+    Supplier<Runnable> compression = model.prepareCompress(percentage, imageName, imageName);
+    return () -> {
+      Runnable store = compression.get();
+      return () -> {
+        store.run();
+        try {
+          heplerForDisplayToView(imageName);
+        } catch (IOException e) {
+          sendErrorToView("Error displaying image: " + e.getMessage());
+        }
+      };
+    };
+  }
+
   /**
    * Downscales the image to the specified width and height.
    * This method checks if the new dimensions are valid (i.e., smaller than or equal to
@@ -1,6 +1,7 @@
 package controller;
 
 import java.io.IOException;
+import java.util.function.Supplier;
 
 /**
  * This interface defines various image processing operations that can be performed on an image.
@@ -189,6 +190,16 @@ public interface Features {
    */
   void compress(int percentage) throws IOException;
 
+  /**
+   * Prepares to compress the image to the specified percentage on a worker thread. The returned
+   * compression may run on any thread. It returns the step that stores and displays the result,
+   * which must run on the thread that called this method.
+   *
+   * @param percentage the compression level, in percentage
+   * @return the compression
+   */
+  Supplier<Runnable> prepareCompress(int percentage);
+
   /**
    * Downscales the image to the specified width and height.
    *
@@ -1,13 +1,13 @@
 package controller;
 
-import java.awt.image.BufferedImage;
-import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
-import javax.imageio.ImageIO;
-
+import model.Histogram;
 import model.IModel;
-import model.ImageUtil;
+import model.ToneCurve;
 
 
 /**
@@ -41,7 +41,12 @@ public class ImageController implements ImageProcessingInterface {
 
     switch (actionWord) {
       case "load":
-        loadImage(processedCommand[1], processedCommand[2]);
+        if (processedCommand.length > 4 && processedCommand[3].equals("--reduce")) {
+          loadImage(processedCommand[1], processedCommand[2],
+                  Integer.parseInt(processedCommand[4]));
+        } else {
+          loadImage(processedCommand[1], processedCommand[2]);
+        }
         break;
       case "save":
         saveImage(processedCommand[1], processedCommand[2]);
@@ -83,7 +88,7 @@ public class ImageController implements ImageProcessingInterface {
                 processedCommand[3], processedCommand[4]);
         break;
       case "histogram":
-        model.createHistogram(processedCommand[1], processedCommand[2]);
+        histogram(processedCommand);
         break;
       case "color-correct":
         if (processedCommand.length == 5) {
@@ -112,32 +117,128 @@ public class ImageController implements ImageProcessingInterface {
           );
         }
         break;
+      case "gamma":
+        model.applyTone(ToneCurve.gamma(Double.parseDouble(processedCommand[1])),
+                processedCommand[2], processedCommand[3], splitPercentage(processedCommand, 5));
+        break;
+      case "contrast":
+        model.applyTone(ToneCurve.contrast(Double.parseDouble(processedCommand[1])),
+                processedCommand[2], processedCommand[3], splitPercentage(processedCommand, 5));
+        break;
+      case "curves":
+        model.applyTone(parseCurves(processedCommand[1]),
+                processedCommand[2], processedCommand[3], splitPercentage(processedCommand, 5));
+        break;
+      case "invert":
+        model.applyTone(ToneCurve.invert(),
+                processedCommand[1], processedCommand[2], splitPercentage(processedCommand, 4));
+        break;
       case "compress":
         model.compress(Integer.parseInt(processedCommand[1]),
-                processedCommand[2], processedCommand[3]);
+                processedCommand[2], processedCommand[3],
+                processedCommand.length > 4 && processedCommand[4].equals("--joint"));
         break;
       default:
         System.out.println("Invalid Command :" + actionWord);
     }
   }
 
+  /**
+   * Reads the optional {@code split <percentage>} that follows a command's arguments.
+   *
+   * @param processedCommand the command split into words.
+   * @param index            the position of the percentage, after the {@code split} word.
+   * @return the split percentage, or 100 if there is none.
+   */
+  private int splitPercentage(String[] processedCommand, int index) {
+    return processedCommand.length > index ? Integer.parseInt(processedCommand[index]) : 100;
+  }
+
+  /**
+   * Runs a histogram command. {@code histogram <source> <dest> [--size <w>x<h>] [--log]} stores
+   * a graph of the counts, and {@code histogram --data <source> <file>} writes the counts to a
+   * file without drawing them, as JSON if the file name ends in {@code .json} and as CSV
+   * otherwise.
+   *
+   * @param processedCommand the command split into words.
+   * @throws IOException if the counts cannot be written.
+   */
+  private void histogram(String[] processedCommand) throws IOException {
+    if (processedCommand[1].equals("--data")) {
+      Histogram histogram = model.getHistogram(processedCommand[2]);
+      String outputPath = processedCommand[3];
+      String data = outputPath.toLowerCase().endsWith(".json")
+              ? histogram.toJson() : histogram.toCsv();
+      Files.write(Paths.get(outputPath), data.getBytes(StandardCharsets.UTF_8));
+      System.out.println("Saved histogram data as: " + outputPath);
+      return;
+    }
+    int width = 256;
+    int height = 256;
+    boolean logScale = false;
+    for (int k = 3; k < processedCommand.length; k++) {
+      switch (processedCommand[k]) {
+        case "--size":
+          String[] size = processedCommand[++k].toLowerCase().split("x");
+          width = Integer.parseInt(size[0]);
+          height = Integer.parseInt(size[1]);
+          break;
+        case "--log":
+          logScale = true;
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown histogram option: " + processedCommand[k]);
+      }
+    }
+    model.createHistogram(processedCommand[1], processedCommand[2], width, height, logScale);
+  }
+
+  /**
+   * Parses the control points of a curves command, written as {@code in:out} pairs separated
+   * by commas, for example {@code 0:0,64:40,192:220,255:255}.
+   *
+   * @param points the control points.
+   * @return the curve through the points.
+   */
+  private ToneCurve parseCurves(String points) {
+    String[] pairs = points.split(",");
+    int[] inputs = new int[pairs.length];
+    int[] outputs = new int[pairs.length];
+    for (int k = 0; k < pairs.length; k++) {
+      String[] point = pairs[k].split(":");
+      if (point.length != 2) {
+        throw new IllegalArgumentException("Curve points must be written as in:out");
+      }
+      inputs[k] = Integer.parseInt(point[0]);
+      outputs[k] = Integer.parseInt(point[1]);
+    }
+    return ToneCurve.curves(inputs, outputs);
+  }
+
   /**
    * Loads an image from the given file path and associates it with the provided image name.
-   * Uses BufferedReader for file access.
+   * The model reads and decodes the file, so it can stream images too large for memory.
    *
    * @param filePath  the file path of the image to be loaded.
    * @param imageName the name to associate with the loaded image.
    * @throws IOException if the file cannot be read.
    */
   public void loadImage(String filePath, String imageName) throws IOException {
-    BufferedImage bufferedImage;
+    loadImage(filePath, imageName, 1);
+  }
+
+  /**
+   * Loads an image from the given file path at a reduced size, dividing its width and height by
+   * the given power of 2, and associates it with the provided image name.
+   *
+   * @param filePath  the file path of the image to be loaded.
+   * @param imageName the name to associate with the loaded image.
+   * @param reduction the factor the width and height are divided by.
+   * @throws IOException if the file cannot be read.
+   */
+  public void loadImage(String filePath, String imageName, int reduction) throws IOException {
     try {
-      if (filePath.contains(".ppm")) {
-        bufferedImage = ImageUtil.readPPM(filePath);
-      } else {
-        bufferedImage = ImageIO.read(new File(filePath));
-      }
-      model.loadImage(bufferedImage, imageName); // Delegate to the model for loading the image data
+      model.loadImageFile(filePath, imageName, reduction); // The model decodes the file itself
       System.out.println("Loaded image: " + imageName);
     } catch (IOException e) {
       throw new IOException("Error loading image from file path: " + filePath, e);
@@ -146,20 +247,16 @@ public class ImageController implements ImageProcessingInterface {
 
   /**
    * Saves the specified image to the given output path.
-   * Uses FileWriter for file access.
+   * The model encodes and writes the file, picking the format from its extension.
    *
    * @param outputPath the file path where the image will be saved.
    * @param imageName  the name of the image to be saved.
    * @throws IOException if the file cannot be written to.
    */
   public void saveImage(String outputPath, String imageName) throws IOException {
-    BufferedImage saved = model.getImage(imageName);
-    if (saved == null) {
+    if (!model.saveImageFile(imageName, outputPath)) {
       return;
     }
-    String filetype = outputPath.substring(
-            outputPath.lastIndexOf('.') + 1).toLowerCase();
-    ImageIO.write(saved, filetype, new File(outputPath));
     System.out.println("Saved image as: " + outputPath);
   }
 
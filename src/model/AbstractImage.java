@@ -1,8 +1,8 @@
 package model;
 
-import java.awt.Graphics2D;
-import java.awt.Color;
-import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntUnaryOperator;
 
 /**
  * The {@code AbstractImage} class serves as an abstract representation of an image and provides
@@ -15,6 +15,21 @@ public abstract class AbstractImage implements ImageADT {
   protected int width;
   protected int height;
 
+  private final CompressionImage c = new CompressionImage();
+
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  // The content hash, valid while contentHashed is set
+  private long contentHash;
+  private boolean contentHashed;
+  // The histogram of the whole image, or null until it is counted
+  private Histogram histogram;
+
+  private int shadow;
+  private int mid;
+  private int highlight;
+
   protected abstract int getWidth();
 
   protected abstract int getHeight();
@@ -23,7 +38,16 @@ public abstract class AbstractImage implements ImageADT {
    * Creates a new image instance. This method should be implemented by subclasses to create an
    * appropriate image object.
    */
-  protected abstract ImageADT createImage();
+  protected abstract AbstractImage createImage();
+
+  /**
+   * Creates a new, blank image of the same type with the given dimensions.
+   *
+   * @param width  the width of the new image.
+   * @param height the height of the new image.
+   * @return a new image whose pixels are all black.
+   */
+  protected abstract AbstractImage createImage(int width, int height);
 
   /**
    * Retrieves the pixel located at the specified (x, y) coordinates.
@@ -44,39 +68,509 @@ public abstract class AbstractImage implements ImageADT {
    */
   public abstract void setPixel(Pixel obj, int x, int y);
 
+  /**
+   * Retrieves the color at the specified (x, y) coordinates packed as {@code 0xRRGGBB}.
+   * Unlike {@link #getPixel(int, int)} this does not allocate a {@link Pixel} object, so it is
+   * the accessor used by the processing loops.
+   *
+   * @param x the row index of the pixel.
+   * @param y the column index of the pixel.
+   * @return the packed color value at the given coordinates.
+   */
+  protected abstract int getRGB(int x, int y);
+
+  /**
+   * Sets the color at the specified (x, y) coordinates from a packed {@code 0xRRGGBB} value.
+   *
+   * @param x   the row index of the pixel.
+   * @param y   the column index of the pixel.
+   * @param rgb the packed color value.
+   */
+  protected abstract void setRGB(int x, int y, int rgb);
+
+  /**
+   * Copies one row of this image into {@code row} as packed {@code 0xRRGGBB} values. Subclasses
+   * override this with a bulk copy out of their own storage layout.
+   *
+   * @param x   the row index.
+   * @param row the destination buffer, at least {@code width} long.
+   */
+  protected void readRow(int x, int[] row) {
+    for (int y = 0; y < width; y++) {
+      row[y] = getRGB(x, y);
+    }
+  }
+
+  /**
+   * Overwrites one row of this image with the packed {@code 0xRRGGBB} values in {@code row}.
+   *
+   * @param x   the row index.
+   * @param row the source buffer, at least {@code width} long.
+   */
+  protected void writeRow(int x, int[] row) {
+    writeRow(x, row, width);
+  }
+
+  /**
+   * Overwrites the first {@code length} columns of one row of this image with the packed
+   * {@code 0xRRGGBB} values in {@code row}, leaving the rest of the row as it is. Subclasses
+   * override this with a bulk copy into their own storage layout.
+   *
+   * @param x      the row index.
+   * @param row    the source buffer, at least {@code length} long.
+   * @param length the number of columns to write.
+   */
+  protected void writeRow(int x, int[] row, int length) {
+    for (int y = 0; y < length; y++) {
+      setRGB(x, y, row[y]);
+    }
+  }
+
+  /**
+   * Returns a 64-bit hash of the size and packed pixels of this image. Each row is hashed with
+   * FNV-1a, in parallel over bands of rows, and the row hashes are then folded in order, so the
+   * result does not depend on the number of threads or on the storage layout. The hash is kept
+   * until the pixels are next changed.
+   *
+   * @return the content hash.
+   */
+  long contentHash() {
+    if (!contentHashed) {
+      int columns = getWidth();
+      int rows = getHeight();
+      long[] rowHashes = new long[rows];
+      Parallelism.forEachBand(rows, columns, (from, to) -> {
+        int[] row = new int[columns];
+        for (int i = from; i < to; i++) {
+          readRow(i, row);
+          long hash = FNV_OFFSET;
+          for (int j = 0; j < columns; j++) {
+            hash = (hash ^ row[j]) * FNV_PRIME;
+          }
+          rowHashes[i] = hash;
+        }
+      });
+      long hash = ((FNV_OFFSET ^ columns) * FNV_PRIME ^ rows) * FNV_PRIME;
+      for (long rowHash : rowHashes) {
+        hash = (hash ^ rowHash) * FNV_PRIME;
+      }
+      contentHash = hash;
+      contentHashed = true;
+    }
+    return contentHash;
+  }
+
+  /**
+   * Forgets the content hash and histogram of this image. Layouts call this whenever their pixels
+   * change.
+   */
+  protected void pixelsChanged() {
+    contentHashed = false;
+    histogram = null;
+  }
+
+  /**
+   * Returns the histogram of the whole image. Images count it as they are loaded, operations
+   * that can work it out from the histogram of their source pass it on, and any other image
+   * counts it on first use. It is kept until the pixels change, so the histogram shown after
+   * each edit is usually had without reading the image.
+   *
+   * @return the histogram.
+   */
+  Histogram histogram() {
+    if (histogram == null) {
+      histogram = histogram(getWidth() - 1);
+    }
+    return histogram;
+  }
+
+  /**
+   * Sets the histogram of this image to one already known, such as one counted while loading
+   * it or worked out from the histogram of the image it was made from. It must be set after
+   * the pixels are written, since writing them forgets it.
+   *
+   * @param histogram the histogram of the whole image.
+   */
+  void keepHistogram(Histogram histogram) {
+    this.histogram = histogram;
+  }
+
+  /**
+   * Returns the histogram of this image if it is already known, without counting it.
+   *
+   * @return the histogram, or null.
+   */
+  Histogram knownHistogram() {
+    return histogram;
+  }
+
+  /**
+   * Counts the values of the first columns of this image. Layouts that store their channels
+   * separately override this to count them directly.
+   *
+   * @param lastColumn the last column that is counted.
+   * @return the histogram of those columns.
+   */
+  protected Histogram histogram(int lastColumn) {
+    return Histogram.of(this, lastColumn);
+  }
+
+  /**
+   * Returns whether this image and another are known to differ because both content hashes have
+   * been computed and are not equal. Equal or unknown hashes prove nothing.
+   *
+   * @param other the image to compare with.
+   * @return true if the images certainly differ.
+   */
+  protected boolean hashesDiffer(AbstractImage other) {
+    return contentHashed && other.contentHashed && contentHash != other.contentHash;
+  }
+
+  /**
+   * Returns whether this image has the same size and pixels as another image of any layout. Rows
+   * are compared in bulk with {@link Arrays#mismatch(int[], int[])}, in parallel over bands of
+   * rows, after a quick check of the content hashes when both are already known.
+   *
+   * @param other the image to compare with.
+   * @return true if every pixel is equal.
+   */
+  boolean samePixels(AbstractImage other) {
+    int columns = getWidth();
+    int rows = getHeight();
+    if (columns != other.getWidth() || rows != other.getHeight()) {
+      return false;
+    }
+    if (hashesDiffer(other)) {
+      return false;
+    }
+    AtomicBoolean differs = new AtomicBoolean();
+    Parallelism.forEachBand(rows, columns, (from, to) -> {
+      int[] row = new int[columns];
+      int[] otherRow = new int[columns];
+      for (int i = from; i < to && !differs.get(); i++) {
+        readRow(i, row);
+        other.readRow(i, otherRow);
+        if (Arrays.mismatch(row, otherRow) >= 0) {
+          differs.set(true);
+        }
+      }
+    });
+    return !differs.get();
+  }
+
+  /**
+   * Creates an image of the same size whose columns from {@code firstColumn} on hold the pixels
+   * of this image. Split operations start from it and only write the columns they change. The
+   * default copies the rows; layouts that support copy-on-write share them instead.
+   *
+   * @param firstColumn the first column the new image takes from this one.
+   * @return the new image.
+   */
+  protected AbstractImage createImageSharing(int firstColumn) {
+    AbstractImage newImage = createImage();
+    if (firstColumn < width) {
+      int[] row = new int[width];
+      for (int i = 0; i < height; i++) {
+        readRow(i, row);
+        newImage.writeRow(i, row);
+      }
+    }
+    return newImage;
+  }
+
+  /**
+   * Applies a pointwise operation with its per-pixel form, or with its row form when the row
+   * kernels are enabled. Both forms must compute the same colors. The result is a
+   * pipeline {@link ImageView}, so consecutive pointwise operations run in a single pass when
+   * the result is read.
+   *
+   * @param pixel      the function from a packed input color to a packed output color.
+   * @param row        the same function applied to a run of pixels, or null if there is none.
+   * @param splitIndex the last column the operation is applied to.
+   * @return a new image holding the result.
+   */
+  private AbstractImage mapPixels(IntUnaryOperator pixel, RowOperator row, int splitIndex) {
+    return wrapView(ImageView.pointwise(this, pixel, row, null, splitIndex));
+  }
+
+  /**
+   * Returns the view this image still reads its pixels through, if it has not been
+   * materialized, so that the next operation on this image can be merged into it.
+   *
+   * @return the view, or null if there is none.
+   */
+  ImageView pendingView() {
+    return null;
+  }
+
+  /**
+   * Returns the pipeline view this image still reads its pixels through, if it has not been
+   * materialized, so that a pointwise operation on this image can be fused with it.
+   *
+   * @return the pipeline, or null if there is none.
+   */
+  final ImageView pendingPipeline() {
+    ImageView view = pendingView();
+    return view != null && view.isPipeline() ? view : null;
+  }
+
+  /**
+   * Applies a pointwise operation to runs of pixels, every column up to and including
+   * {@code splitIndex}, and copies the remaining columns unchanged. Pointwise pipelines whose
+   * stages cover the same columns are materialized through this method, so storage layouts
+   * override it to speed up every pointwise filter. Rows are processed in parallel bands, so
+   * {@code operation} must not have side effects.
+   *
+   * @param operation  the operation applied to each run of pixels.
+   * @param splitIndex the last column the operation is applied to.
+   * @return a new image holding the result.
+   */
+  protected AbstractImage mapRows(RowOperator operation, int splitIndex) {
+    AbstractImage newImage = createImage();
+    int lastColumn = Math.min(splitIndex, width - 1);
+    Parallelism.forEachBand(height, width, (from, to) -> {
+      int[] row = new int[width];
+      for (int i = from; i < to; i++) {
+        readRow(i, row);
+        operation.apply(row, row, lastColumn + 1);
+        newImage.writeRow(i, row);
+      }
+    });
+    return newImage;
+  }
+
+  /**
+   * Applies a tone curve to every column up to and including {@code splitIndex}, through its
+   * row kernel when the row kernels are enabled. The curve is composed with a tone curve
+   * that the pending pipeline ends with.
+   *
+   * @param curve      the compiled tone curve.
+   * @param splitIndex the last column the curve is applied to.
+   * @return a new image holding the result.
+   */
+  private AbstractImage mapTone(ToneCurve curve, int splitIndex) {
+    AbstractImage result =
+            wrapView(ImageView.pointwise(this, curve::apply, curve.kernel(), curve, splitIndex));
+    int lastColumn = Math.min(splitIndex, width - 1);
+    if (histogram == null) {
+      return result;
+    }
+    if (lastColumn == width - 1) {
+      // Every pixel goes through the curve, so every count moves to its mapped bin
+      result.keepHistogram(histogram.remap(curve));
+    } else if (pendingPipeline() == null) {
+      // Only the changed columns are counted, and only when reading them runs no pipeline
+      Histogram changed = histogram(lastColumn);
+      result.keepHistogram(histogram.replace(changed, changed.remap(curve)));
+    }
+    return result;
+  }
+
+  /**
+   * A pointwise operation over a run of packed {@code 0xRRGGBB} pixels.
+   */
+  @FunctionalInterface
+  protected interface RowOperator {
+
+    /**
+     * Computes {@code target[j]} from {@code source[j]} for every {@code j} below
+     * {@code length}. The two arrays may be the same.
+     *
+     * @param source the input pixels.
+     * @param target the output pixels.
+     * @param length the number of pixels.
+     */
+    void apply(int[] source, int[] target, int length);
+  }
+
+  /**
+   * Does nothing, since heap-backed images are reclaimed by the garbage collector. Storage
+   * layouts that hold native memory override this to free it.
+   */
+  @Override
+  public void release() {
+  }
+
+  /**
+   * Converts a split percentage into the index of the last column an effect is applied to.
+   *
+   * @param p the percentage of the image width.
+   * @return the split column index.
+   */
+  protected int splitIndex(int p) {
+    return (int) (width * (p / 100.0));
+  }
+
   /**
    * Visualizes the value of the given pixel.
    */
   public int visualizeValue(Pixel pixel) {
-    return pixel.getPixelData().stream().max(Integer::compareTo)
-            .orElseThrow(() -> new IllegalArgumentException(
-                    "Value of this pixel could not be calculated."));
+    int channels = pixel.channelCount();
+    if (channels == 0) {
+      throw new IllegalArgumentException("Value of this pixel could not be calculated.");
+    }
+    int max = pixel.channel(0);
+    for (int c = 1; c < channels; c++) {
+      max = Math.max(max, pixel.channel(c));
+    }
+    return max;
   }
 
   /**
    * Visualizes the intensity of the given pixel.
    */
   public int visualizeIntensity(Pixel pixel) {
-    int totalSum = pixel.getPixelData().stream().reduce(0, Integer::sum);
-    return Math.round((float) totalSum / pixel.getPixelData().size());
+    int channels = pixel.channelCount();
+    int totalSum = 0;
+    for (int c = 0; c < channels; c++) {
+      totalSum += pixel.channel(c);
+    }
+    return Math.round((float) totalSum / channels);
+  }
+
+  /**
+   * Calculates the luma of the specified pixel.
+   *
+   * @param pixel the pixel for which to calculate the luma
+   * @return the luma value of the pixel
+   * @throws IllegalArgumentException if the pixel is not of type {@link RGBImagePixel}
+   */
+  public int visualizeLuma(Pixel pixel) {
+    if (!(pixel instanceof RGBImagePixel)) {
+      throw new IllegalArgumentException("Invalid RGB pixel type");
+    }
+    return luma(((RGBImagePixel) pixel).toPacked());
   }
 
   /**
-   * Visualizes the luma of the given pixel.
+   * Calculates the luma of a packed {@code 0xRRGGBB} color.
+   *
+   * @param rgb the packed color value.
+   * @return the luma value of the color.
+   */
+  protected static int luma(int rgb) {
+    return Math.round(
+            0.2126f * RGBImagePixel.red(rgb)
+                    + 0.7152f * RGBImagePixel.green(rgb) + 0.0722f * RGBImagePixel.blue(rgb));
+  }
+
+  /**
+   * Converts a packed color to a grey of its luma.
+   */
+  static int lumaGrey(int rgb) {
+    int grayY = luma(rgb);
+    return RGBImagePixel.pack(grayY, grayY, grayY);
+  }
+
+  /**
+   * Applies the sepia tone matrix to a packed {@code 0xRRGGBB} color.
+   *
+   * @param rgb the packed color value.
+   * @return the packed sepia-toned color, clamped to [0, 255] per channel.
+   */
+  static int sepia(int rgb) {
+    int red = RGBImagePixel.red(rgb);
+    int green = RGBImagePixel.green(rgb);
+    int blue = RGBImagePixel.blue(rgb);
+    int newRed = Math.round(red * 0.393f + green * 0.769f + blue * 0.189f);
+    int newGreen = Math.round(red * 0.349f + green * 0.686f + blue * 0.168f);
+    int newBlue = Math.round(red * 0.272f + green * 0.534f + blue * 0.131f);
+    return RGBImagePixel.pack(clamp(newRed), clamp(newGreen), clamp(newBlue));
+  }
+
+  /**
+   * Converts the current image to grayscale.
+   *
+   * @return a new {@link ImageADT} that is a grayscale version of the original image.
+   */
+  public ImageADT convertToGreyScale() {
+    ImageADT greyScaleImage = mapPixels(AbstractImage::lumaGrey, PixelKernels::lumaGrey, width);
+    System.out.println("Converted to Grayscale");
+    return greyScaleImage;
+  }
+
+  /**
+   * Converts the image to grayscale up to a specified width percentage.
+   *
+   * @param p the percentage of the image width to apply grayscale (0-100)
+   */
+  @Override
+  public ImageADT convertToGreyScale(int p) {
+    ImageADT greyScaleImage = mapPixels(AbstractImage::lumaGrey, PixelKernels::lumaGrey,
+            splitIndex(p));
+    System.out.println("Converted to Grayscale " + p + " % of the image");
+    return greyScaleImage;
+  }
+
+  /**
+   * Converts the image to grayscale up to a specified width percentage.
+   *
+   * @param p the percentage of the image width to apply grayscale (0-100)
+   */
+  public ImageADT converttoLuma(int p) {
+    return mapPixels(AbstractImage::lumaGrey, PixelKernels::lumaGrey, splitIndex(p));
+  }
+
+  /**
+   * Converts the current image to sepia tone.
+   *
+   * @return a new {@link ImageADT} that is a sepia version of the original image.
+   */
+  public ImageADT convertToSepia() {
+    ImageADT sepiaImage = mapPixels(AbstractImage::sepia, PixelKernels::sepia, width);
+    System.out.println("Applied Sepia");
+    return sepiaImage;
+  }
+
+  /**
+   * Converts the image to sepia tone up to a specified width percentage.
+   *
+   * @param p the percentage of the image width to apply sepia (0-100)
+   * @return a new partially sepia-toned {@link ImageADT} image
    */
-  public abstract int visualizeLuma(Pixel pixel);
+  public ImageADT convertToSepia(int p) {
+    ImageADT sepiaImage = mapPixels(AbstractImage::sepia, PixelKernels::sepia, splitIndex(p));
+    System.out.println("Applied sepia to " + p + " % of the image.");
+    return sepiaImage;
+  }
+
+  /**
+   * Converts the current image to a value-based image.
+   *
+   * @return a new {@link ImageADT} representing the value-based image.
+   */
+  public ImageADT convertToValue() {
+    ImageADT greyScaleImage = mapPixels(rgb -> {
+      int grayY = Math.max(RGBImagePixel.red(rgb),
+              Math.max(RGBImagePixel.green(rgb), RGBImagePixel.blue(rgb)));
+      return RGBImagePixel.pack(grayY, grayY, grayY);
+    }, null, width);
+    System.out.println("Converted to value");
+    return greyScaleImage;
+  }
+
+  /**
+   * Converts the current image to an intensity-based image.
+   *
+   * @return a new {@link ImageADT} representing the intensity-based image.
+   */
+  public ImageADT convertToIntensity() {
+    ImageADT greyScaleImage = mapPixels(rgb -> {
+      int totalSum = RGBImagePixel.red(rgb) + RGBImagePixel.green(rgb) + RGBImagePixel.blue(rgb);
+      int grayY = Math.round((float) totalSum / 3);
+      return RGBImagePixel.pack(grayY, grayY, grayY);
+    }, null, width);
+    System.out.println("Converted Intensity");
+    return greyScaleImage;
+  }
 
   /**
    * Flips the image horizontally.
    */
   public ImageADT flipHorizontal() {
-    ImageADT newImage = createImage();
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        Pixel pixel = getPixel(i, j);
-        newImage.setPixel(pixel, i, width - j - 1);
-      }
-    }
+    AbstractImage newImage = wrapView(ImageView.flip(this, true));
+    // Moving pixels around leaves the counts as they are
+    newImage.keepHistogram(histogram);
     System.out.println("Image flipped Horizontally");
     return newImage;
   }
@@ -85,17 +579,23 @@ public abstract class AbstractImage implements ImageADT {
    * Flips the image vertically.
    */
   public ImageADT flipVertical() {
-    ImageADT newImage = createImage();
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        Pixel pixel = getPixel(i, j);
-        newImage.setPixel(pixel, height - i - 1, j);
-      }
-    }
+    AbstractImage newImage = wrapView(ImageView.flip(this, false));
+    newImage.keepHistogram(histogram);
     System.out.println("Image flipped vertically");
     return newImage;
   }
 
+  /**
+   * Returns the image that an operation hands out for a lazy view of this image. By default
+   * this is the view itself. Layouts whose memory is freed by {@link #release()} return a copy
+   * instead, since the view would otherwise read this image after it is freed.
+   *
+   * @param view a view over this image.
+   * @return the image to return from the operation.
+   */
+  protected AbstractImage wrapView(ImageView view) {
+    return view;
+  }
 
   @Override
   public ImageADT blur(int p) {
@@ -155,7 +655,9 @@ public abstract class AbstractImage implements ImageADT {
   }
 
   /**
-   * Applies a specified kernel effect on the image, optionally splitting by a percentage.
+   * Applies a specified kernel effect on the image, optionally splitting by a percentage. The
+   * image is read one row at a time by a {@link Convolution}, which applies separable kernels as
+   * two one-dimensional passes.
    *
    * @param kernel the kernel matrix for the effect.
    * @param p      the percentage of the width to apply the effect.
@@ -163,220 +665,609 @@ public abstract class AbstractImage implements ImageADT {
    */
   private ImageADT applyEffectWithSplit(double[][] kernel, int p) {
     int splitIndex = (int) (width * (p / 100.0));
-    ImageADT newImage = createImage();
-
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        if (j <= splitIndex) {
-          applyKernelAtPixel(i, j, kernel, newImage);
-        } else {
-          newImage.setPixel(getPixel(i, j), i, j);
-        }
-      }
-    }
+    int lastColumn = Math.min(splitIndex, width - 1);
+    AbstractImage newImage = createImageSharing(lastColumn + 1);
+    new Convolution(kernel).apply(this, newImage, lastColumn + 1);
     //System.out.println("Applied filter Successfully for " + p + " % of the image");
     return newImage;
   }
 
+
+  /**
+   * Adjusts the brightness of the image by the specified increment.
+   *
+   * @param increment the value by which to adjust the brightness (can be negative)
+   * @return a new {@link ImageADT} with adjusted brightness
+   */
+  public ImageADT brightness(int increment) {
+    ImageADT newImage = mapTone(ToneCurve.offsets(increment, increment, increment), width);
+    System.out.println("Brightened Image");
+    return newImage;
+  }
+
   /**
-   * Applies a given kernel at a specific pixel location in the image.
+   * Applies a tone curve, such as gamma, contrast, curves or invert, to the image up to a
+   * specified width percentage.
    *
-   * @param i        the row index of the pixel.
-   * @param j        the column index of the pixel.
-   * @param kernel   the kernel matrix to apply.
-   * @param newImage the new image where the processed pixel will be set.
+   * @param curve the tone curve to apply.
+   * @param p     the percentage of the image width to apply the curve to (0-100).
+   * @return a new {@link ImageADT} with the curve applied.
    */
-  private void applyKernelAtPixel(int i, int j, double[][] kernel, ImageADT newImage) {
-    double redSum = 0;
-    double greenSum = 0;
-    double blueSum = 0;
-    int kernelRadius = kernel.length / 2;
+  @Override
+  public ImageADT applyTone(ToneCurve curve, int p) {
+    ImageADT newImage = mapTone(curve, splitIndex(p));
+    System.out.println("Applied tone curve to " + p + " % of the image.");
+    return newImage;
+  }
 
-    for (int ki = -kernelRadius; ki <= kernelRadius; ki++) {
-      for (int kj = -kernelRadius; kj <= kernelRadius; kj++) {
-        int ni = i + ki;
-        int nj = j + kj;
+  /**
+   * Combines this image's red channel with the green channel of {@code greenImage} and the blue
+   * channel of {@code blueImage} into a new image of the same type as this one.
+   *
+   * @param greenImage the image supplying the green channel.
+   * @param blueImage  the image supplying the blue channel.
+   * @return the combined image.
+   * @throws IllegalArgumentException if the images do not have the same dimensions.
+   */
+  protected AbstractImage combineChannels(AbstractImage greenImage, AbstractImage blueImage) {
+    if (getWidth() != greenImage.getWidth() || getHeight() != greenImage.getHeight()
+            || getWidth() != blueImage.getWidth() || getHeight() != blueImage.getHeight()) {
+      throw new IllegalArgumentException("All images must have the same dimensions.");
+    }
 
-        if (ni >= 0 && ni < height && nj >= 0 && nj < width) {
-          Pixel neighborPixel = getPixel(ni, nj);
-          double kernelValue = kernel[ki + kernelRadius][kj + kernelRadius];
-          redSum += neighborPixel.getPixelData().get(0) * kernelValue;
-          greenSum += neighborPixel.getPixelData().get(1) * kernelValue;
-          blueSum += neighborPixel.getPixelData().get(2) * kernelValue;
+    AbstractImage combinedImage = createImage();
+    Parallelism.forEachBand(height, width, (from, to) -> {
+      int[] red = new int[width];
+      int[] green = new int[width];
+      int[] blue = new int[width];
+      for (int i = from; i < to; i++) {
+        readRow(i, red);
+        greenImage.readRow(i, green);
+        blueImage.readRow(i, blue);
+        for (int j = 0; j < width; j++) {
+          red[j] = (red[j] & 0xFF0000) | (green[j] & 0x00FF00) | (blue[j] & 0x0000FF);
         }
+        combinedImage.writeRow(i, red);
       }
-    }
+    });
+    return combinedImage;
+  }
 
-    int newRed = (int) Math.round(Math.min(Math.max(redSum, 0), 255));
-    int newGreen = (int) Math.round(Math.min(Math.max(greenSum, 0), 255));
-    int newBlue = (int) Math.round(Math.min(Math.max(blueSum, 0), 255));
+  /**
+   * Creates a new image of the specified color channel.
+   *
+   * @param color the color channel to create (red, green, or blue)
+   * @return a new {@link AbstractImage} of the specified color channel
+   */
+  protected AbstractImage createColorImage(Channel color) {
+    return wrapView(ImageView.channel(this, color));
+  }
 
-    newImage.setPixel(new RGBImagePixel(newRed, newGreen, newBlue), i, j);
+  /**
+   * Creates the greyscale image of one channel, passing on the counts of that channel as the
+   * histogram of all three when they are known.
+   *
+   * @param color the channel to extract.
+   * @return the greyscale image.
+   */
+  private AbstractImage channelImage(Channel color) {
+    AbstractImage image = createColorImage(color);
+    if (histogram != null) {
+      image.keepHistogram(histogram.channel(color));
+    }
+    return image;
   }
 
+  /**
+   * Creates a new image with only the red channel.
+   *
+   * @return a new {@link ImageADT} containing only the red channel
+   */
+  public ImageADT createRed() {
+    System.out.println("Created Red Image");
+    return channelImage(Channel.RED);
+  }
 
   /**
-   * Adjusts the brightness of the image by a specified increment.
+   * Creates a new image with only the green channel.
+   *
+   * @return a new {@link ImageADT} containing only the green channel
    */
-  public abstract ImageADT brightness(int increment);
+  public ImageADT createGreen() {
+    System.out.println("Created Green Image");
+    return channelImage(Channel.GREEN);
+  }
 
-  // HISTOGRAM --->  RGB
-  private RGBImage convertBufferedImageToRGBImage(BufferedImage bufferedImage) {
-    int width = bufferedImage.getWidth();
-    int height = bufferedImage.getHeight();
+  /**
+   * Creates a new image with only the blue channel.
+   *
+   * @return a new {@link ImageADT} containing only the blue channel
+   */
+  public ImageADT createBlue() {
+    System.out.println("Created Blue Image");
+    return channelImage(Channel.BLUE);
+  }
 
-    // Create an RGBImage with the same dimensions
-    RGBImage rgbImage = new RGBImage();
-    rgbImage.height = height;
-    rgbImage.width = width;
-    rgbImage.setImage(new RGBImagePixel[height][width]);
+  /**
+   * Clamps the given value to the range [0, 255].
+   *
+   * @param value the value to clamp
+   * @return the clamped value
+   */
+  public int clampValue(int value) {
+    return clamp(value);
+  }
 
-    // Loop through each pixel in the BufferedImage
-    for (int x = 0; x < width; x++) {
-      for (int y = 0; y < height; y++) {
-        // Get the RGB value of the pixel
-        int rgb = bufferedImage.getRGB(x, y);
+  /**
+   * Helper method to clamp color values between 0 and 255.
+   *
+   * @param value the color value to clamp.
+   * @return the clamped color value.
+   */
+  protected static int clamp(int value) {
+    return Math.max(0, Math.min(255, value));
+  }
 
-        // Extract the red, green, and blue components
-        int red = (rgb >> 16) & 0xFF;
-        int green = (rgb >> 8) & 0xFF;
-        int blue = rgb & 0xFF;
+  /**
+   * Enum representing the primary color channels (RED, GREEN, BLUE).
+   */
+  protected enum Channel {
+    RED(16), GREEN(8), BLUE(0);
 
-        // Create a new RGBImagePixel with the RGB values
-        RGBImagePixel pixel = new RGBImagePixel(red, green, blue);
+    // Bit offset of the channel inside a packed 0xRRGGBB value
+    final int shift;
 
-        // Set this pixel in the RGBImage's pixel array
-        rgbImage.setPixel(pixel, y, x); // Use y as the row and x as the column
-      }
+    Channel(int shift) {
+      this.shift = shift;
     }
-
-    return rgbImage;
   }
 
-
   // Histogram
 
   /**
-   * Generates a histogram for the current image.
+   * Generates a 256x256 histogram graph of the current image.
    *
-   * @return a BufferedImage representing the histogram.
+   * @return an image of this type holding the graph.
    */
-  // In RGBImage (or AbstractImage)
   public ImageADT generateHistogram() {
-    int histogramWidth = 256;  // Width of the histogram canvas
-    int histogramHeight = 256; // Height of the histogram canvas
-
-    int imageWidth = getWidth();
-    int imageHeight = getHeight();
-    System.out.println("Image Dimensions: " + imageWidth + "x" + imageHeight);
-
-    // Calculate histograms for red, green, and blue channels
-    int[] redHistogram = calculateChannelHistogram("red", imageWidth, imageHeight);
-    int[] greenHistogram = calculateChannelHistogram("green", imageWidth, imageHeight);
-    int[] blueHistogram = calculateChannelHistogram("blue", imageWidth, imageHeight);
-
-    // Normalize histograms
-    normalizeHistogram(redHistogram, histogramHeight);
-    normalizeHistogram(greenHistogram, histogramHeight);
-    normalizeHistogram(blueHistogram, histogramHeight);
-
-    // Generate histogram image
-    BufferedImage histogramImage = createHistogramImage(histogramWidth, histogramHeight,
-            redHistogram, greenHistogram, blueHistogram);
-
-    // Convert BufferedImage to RGBImage and return
-    return convertBufferedImageToRGBImage(histogramImage);
-  }
-
-  // Helper method to calculate a specific channel histogram
-  private int[] calculateChannelHistogram(String channel, int imageWidth, int imageHeight) {
-    int[] histogram = new int[256];
-    for (int y = 0; y < imageWidth; y++) {
-      for (int x = 0; x < imageHeight; x++) {
-        RGBImagePixel pixel = (RGBImagePixel) getPixel(x, y);
-        int value = 0;
-        switch (channel) {
-          case "red":
-            value = pixel.getRed();
-            break;
-          case "green":
-            value = pixel.getGreen();
-            break;
-          case "blue":
-            value = pixel.getBlue();
-            break;
-          default:
-            System.out.println("Error in histogram");
-            break;
-        }
-        histogram[value]++;
+    return generateHistogram(new HistogramRenderer(256, 256, false));
+  }
+
+  /**
+   * Generates a histogram graph of the current image. The renderer writes the graph into a
+   * buffer of packed pixels, which becomes the pixels of a packed {@link RGBImage}. The graph is
+   * small, so it is never stored off-heap or in a tiled file, whatever the layout of this image.
+   *
+   * @param renderer the renderer that draws the graph.
+   * @return a packed image holding the graph.
+   */
+  ImageADT generateHistogram(HistogramRenderer renderer) {
+    // Count all three channels in one pass, or reuse the counts if they are already known
+    int[] canvas = renderer.render(histogram());
+    RGBImage image = new RGBImage();
+    image.setWidth(renderer.getWidth());
+    image.setHeight(renderer.getHeight());
+    image.setPixels(canvas);
+    return image;
+  }
+
+
+  // Compression
+
+  /**
+   * Compresses the image: each channel is padded to the next power of 2 in each direction,
+   * transformed, thresholded, cropped back to the image's bounds and transformed back, and the
+   * rounded result is packed into the output pixels. Channels thresholded on their own are
+   * compressed in parallel, each on its own buffers, when more than one thread may be used, and
+   * one at a time through a single buffer otherwise; thresholding them jointly needs all three.
+   *
+   * @param percentile the percentile of coefficients used as the threshold.
+   * @param joint      whether the percentile is taken over all channels together.
+   * @return the compressed image.
+   */
+  private ImageADT applyHaarCompression(double percentile, boolean joint) {
+    int padWidth = c.paddingSize(this.width);
+    int padHeight = c.paddingSize(this.height);
+    int[] pixels = new int[width * height];
+    Channel[] colors = Channel.values();
+    if (joint) {
+      double[][] channels = new double[colors.length][];
+      Parallelism.forEachTask(colors.length, k -> {
+        channels[k] = new double[padWidth * padHeight];
+        transformChannel(channels[k], colors[k], padWidth, padHeight);
+      });
+      c.threshold(percentile, channels);
+      int[][] packed = new int[colors.length][];
+      Parallelism.forEachTask(colors.length, k -> {
+        packed[k] = new int[width * height];
+        invertChannel(channels[k], colors[k], padWidth, padHeight, packed[k]);
+      });
+      merge(packed, pixels);
+    } else if (Parallelism.getThreads() > 1) {
+      int[][] packed = new int[colors.length][];
+      Parallelism.forEachTask(colors.length, k -> {
+        double[] channel = new double[padWidth * padHeight];
+        transformChannel(channel, colors[k], padWidth, padHeight);
+        c.threshold(percentile, channel);
+        packed[k] = new int[width * height];
+        invertChannel(channel, colors[k], padWidth, padHeight, packed[k]);
+      });
+      merge(packed, pixels);
+    } else {
+      double[] channel = new double[padWidth * padHeight];
+      for (Channel color : colors) {
+        Arrays.fill(channel, 0);
+        transformChannel(channel, color, padWidth, padHeight);
+        c.threshold(percentile, channel);
+        invertChannel(channel, color, padWidth, padHeight, pixels);
+      }
+    }
+
+    AbstractImage newImage = createImage();
+    int[] row = new int[width];
+    for (int i = 0; i < height; i++) {
+      System.arraycopy(pixels, i * width, row, 0, width);
+      newImage.writeRow(i, row);
+    }
+    return newImage;
+  }
+
+  /**
+   * Copies one channel into the top-left corner of a zeroed, padded matrix and transforms it.
+   */
+  private void transformChannel(double[] channel, Channel color, int padWidth, int padHeight) {
+    int[] row = new int[width];
+    for (int i = 0; i < height; i++) {
+      readRow(i, row);
+      for (int j = 0; j < width; j++) {
+        channel[i * padWidth + j] = (row[j] >> color.shift) & 0xFF;
+      }
+    }
+    c.haar2DImageTransformation(channel, padWidth, padHeight);
+  }
+
+  /**
+   * Transforms the thresholded coefficients of one channel back and ORs the rounded values into
+   * the channel's bits of the given pixels.
+   */
+  private void invertChannel(double[] channel, Channel color, int padWidth, int padHeight,
+                             int[] pixels) {
+    // Only the coefficients inside the image bounds are carried over to the inverse
+    for (int i = 0; i < padHeight; i++) {
+      int from = i < height ? width : 0;
+      Arrays.fill(channel, i * padWidth + from, (i + 1) * padWidth, 0);
+    }
+    c.haar2DImageInverse(channel, padWidth, padHeight);
+
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        pixels[i * width + j] |= clamp((int) Math.round(channel[i * padWidth + j])) << color.shift;
       }
     }
-    return histogram;
   }
 
-  // Helper method to normalize histogram values
-  private void normalizeHistogram(int[] histogram, int maxHeight) {
-    int maxFrequency = getMaxValue(histogram);
-    for (int i = 0; i < histogram.length; i++) {
-      histogram[i] = (histogram[i] * maxHeight) / (maxFrequency == 0 ? 1 : maxFrequency);
+  /**
+   * ORs the channels, each packed into pixels of its own, into the output pixels.
+   */
+  private static void merge(int[][] packed, int[] pixels) {
+    for (int[] channel : packed) {
+      for (int k = 0; k < pixels.length; k++) {
+        pixels[k] |= channel[k];
+      }
     }
   }
 
-  // Helper method to create histogram image
-  private BufferedImage createHistogramImage(int width, int height, int[] redHistogram,
-                                             int[] greenHistogram, int[] blueHistogram) {
-    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-    Graphics2D g = image.createGraphics();
+  public ImageADT compressImage(int threshold) {
+    return compressImage(threshold, false);
+  }
+
+  public ImageADT compressImage(int threshold, boolean joint) {
+    return applyHaarCompression(90, joint);
+  }
 
-    // Fill background and draw grid
-    drawBackgroundAndGrid(g, width, height);
+  /**
+   * Applies color correction to the current image by aligning color channels.
+   */
+  public ImageADT colorCorrection() {
+    ImageADT correctedImage = applyColorCorrection(width);
+    System.out.println("Color correction applied successfully.");
+    return correctedImage; // Return the new corrected image
+  }
 
-    // Draw histograms for each channel
-    drawChannelHistogram(g, Color.RED, redHistogram, height);
-    drawChannelHistogram(g, Color.GREEN, greenHistogram, height);
-    drawChannelHistogram(g, Color.BLUE, blueHistogram, height);
+  /**
+   * Applies color correction to the image up to a specified width percentage.
+   *
+   * @param p the percentage of the image width to apply color correction (0-100)
+   * @return a new ImageADT with color correction applied
+   */
+  @Override
+  public ImageADT colorCorrection(int p) {
+    ImageADT correctedImage = applyColorCorrection(splitIndex(p));
+    System.out.println("Color correction applied successfully.");
+    return correctedImage;
+  }
 
-    g.dispose();
-    return image;
+  /**
+   * Aligns the histogram peaks of the three channels over the columns up to
+   * {@code splitIndex} and shifts those columns by the resulting offsets.
+   *
+   * @param splitIndex the last column that is measured and corrected.
+   * @return the corrected image.
+   */
+  private AbstractImage applyColorCorrection(int splitIndex) {
+    int lastColumn = Math.min(splitIndex, width - 1);
+
+    // Measure the whole image from its kept histogram, or count just the measured columns
+    Histogram counts = lastColumn == width - 1 ? histogram() : histogram(lastColumn);
+
+    // Find the peak values and the average peak position
+    int redPeak = counts.redPeak();
+    int greenPeak = counts.greenPeak();
+    int bluePeak = counts.bluePeak();
+    int averagePeak = (redPeak + greenPeak + bluePeak) / 3;
+
+    // Calculate offsets to align each channel's peak with the average peak
+    int redOffset = averagePeak - redPeak;
+    int greenOffset = averagePeak - greenPeak;
+    int blueOffset = averagePeak - bluePeak;
+
+    return mapTone(ToneCurve.offsets(redOffset, greenOffset, blueOffset), splitIndex);
+  }
+
+  //LevelsAdjustment method
+
+  /**
+   * Sets the shadow, mid, and highlight values used for levels adjustment. These values define the
+   * range of shadows, midtones, and highlights to be adjusted.
+   *
+   * @param shadow    the shadow level, representing the darkest value in the image.
+   * @param mid       the midtone level, representing the middle point of the image's brightness
+   *                  range.
+   * @param highlight the highlight level, representing the lightest value in the image.
+   * @throws IllegalArgumentException if highlight is less than or equal to shadow.
+   */
+  public void setLevels(int shadow, int mid, int highlight) {
+    this.shadow = shadow;
+    this.mid = mid;
+    this.highlight = highlight;
+  }
+
+  /**
+   * Adjusts the levels of the image based on the set shadow, mid, and highlight values. This method
+   * modifies the brightness and contrast of the image according to the specified levels for
+   * shadows, midtones, and highlights.
+   *
+   * @return a new image with the adjusted pixel values.
+   * @throws IllegalArgumentException if the highlight value is less than or equal to the shadow
+   *                                  value.
+   */
+  @Override
+  public ImageADT adjustLevels() {
+    ImageADT adjustedImage = applyLevels(width);
+    System.out.println("Levels adjustment applied successfully.");
+    return adjustedImage;
+  }
+
+  @Override
+  public ImageADT adjustLevels(int p) {
+    ImageADT adjustedImage = applyLevels(splitIndex(p));
+    System.out.println("Levels adjustment applied successfully.");
+    return adjustedImage;
   }
 
-  // Helper method to draw background and grid
-  private void drawBackgroundAndGrid(Graphics2D g, int width, int height) {
-    g.setColor(Color.WHITE);
-    g.fillRect(0, 0, width, height);
+  // Helper Methods
+
+  private AbstractImage applyLevels(int splitIndex) {
+    validateHighlightAndShadow(); // Validation for highlight and shadow range
+
+    double scale = computeScale();
+    double midPoint = computeMidPoint(scale);
 
-    g.setColor(Color.LIGHT_GRAY);
-    for (int i = 0; i <= width; i += 10) {
-      g.drawLine(i, 0, i, height);
-      g.drawLine(0, i, width, i);
+    return mapTone(ToneCurve.of(value -> applyLevelsAdjustment(value, scale, midPoint)),
+            splitIndex);
+  }
+
+  private void validateHighlightAndShadow() {
+    if (highlight <= shadow) {
+      throw new IllegalArgumentException("Highlight must be greater than shadow for "
+              + "levels adjustment.");
     }
   }
 
-  // Helper method to draw a specific channel histogram
-  private void drawChannelHistogram(Graphics2D g, Color color, int[] histogram, int height) {
-    g.setColor(color);
-    for (int i = 0; i < 255; i++) {
-      g.drawLine(i, height - histogram[i], i + 1, height - histogram[i + 1]);
+  private double computeScale() {
+    return 255.0 / (highlight - shadow);
+  }
+
+  private double computeMidPoint(double scale) {
+    return (mid - shadow) * scale;
+  }
+
+  // Helper method to apply the levels adjustment
+  private int applyLevelsAdjustment(int value, double scale, double midPoint) {
+    // Adjust the value based on shadow, scale, and mid-point
+    double adjustedValue = (value - shadow) * scale;
+
+    // Adjust for the mid-point
+    if (adjustedValue < midPoint) {
+      adjustedValue = adjustedValue * (midPoint / (midPoint - shadow));
+    } else {
+      adjustedValue = adjustedValue * (255.0 - midPoint) / (255.0 - mid);
     }
+
+    adjustedValue = Math.min(255, Math.max(0, adjustedValue));
+    return (int) adjustedValue;
   }
 
+  /**
+   * Downscales this image.
+   *
+   * @param newWidth  The desired width of the downscaled image.
+   * @param newHeight The desired height of the downscaled image.
+   * @return A new image of the same type containing the downscaled image.
+   */
+  @Override
+  public ImageADT downscale(int newWidth, int newHeight) {
+    if (newWidth <= 0 || newHeight <= 0) {
+      throw new IllegalArgumentException("New dimensions must be greater than zero.");
+    }
 
-  // Utility method to find the maximum value in an array
-  private static int getMaxValue(int[] histogramArray) {
-    int max = 0;
-    for (int value : histogramArray) {
-      if (value > max) {
-        max = value;
-      }
+    if (newWidth > getWidth() || newHeight > getHeight()) {
+      throw new IllegalArgumentException("New dimensions cannot exceed original image dimensions.");
     }
-    return max;
+
+    AbstractImage downscaledImage = createImage(newWidth, newHeight);
+
+    double xProportion = (double) this.getWidth() / newWidth;
+    double yProportion = (double) this.getHeight() / newHeight;
+
+    Parallelism.forEachBand(newHeight, newWidth, (from, to) -> {
+      int[] row = new int[newWidth];
+      for (int yDash = from; yDash < to; yDash++) {
+        for (int xDash = 0; xDash < newWidth; xDash++) {
+          row[xDash] = computeDownscaledPixel(xDash, yDash, xProportion, yProportion);
+        }
+        downscaledImage.writeRow(yDash, row);
+      }
+    });
+
+    return downscaledImage;
+  }
+
+  /**
+   * Computes the downscaled pixel for the specified position in the new image.
+   *
+   * @param xDash       The x-coordinate in the downscaled image.
+   * @param yDash       The y-coordinate in the downscaled image.
+   * @param xProportion The ratio of original width to downscaled width.
+   * @param yProportion The ratio of original height to downscaled height.
+   * @return The packed color of the interpolated pixel in the downscaled image.
+   */
+  private int computeDownscaledPixel(int xDash, int yDash, double xProportion,
+                                     double yProportion) {
+
+    double x = xDash * xProportion;
+    double y = yDash * yProportion;
+
+    int xFloor = (int) Math.floor(x);
+    int xCeil = Math.min((int) x + 1, this.getWidth() - 1);
+    int yFloor = (int) Math.floor(y);
+    int yCeil = Math.min((int) y + 1, this.getHeight() - 1);
+
+    int cA = this.getRGB(yFloor, xFloor);
+    int cB = this.getRGB(yFloor, xCeil);
+    int cC = this.getRGB(yCeil, xFloor);
+    int cD = this.getRGB(yCeil, xCeil);
+
+    int red = computePForSingleColor(RGBImagePixel.red(cA), RGBImagePixel.red(cB),
+            RGBImagePixel.red(cC), RGBImagePixel.red(cD), x, y, xFloor, xCeil, yFloor, yCeil);
+    int green = computePForSingleColor(RGBImagePixel.green(cA), RGBImagePixel.green(cB),
+            RGBImagePixel.green(cC), RGBImagePixel.green(cD), x, y, xFloor, xCeil, yFloor, yCeil);
+    int blue = computePForSingleColor(RGBImagePixel.blue(cA), RGBImagePixel.blue(cB),
+            RGBImagePixel.blue(cC), RGBImagePixel.blue(cD), x, y, xFloor, xCeil, yFloor, yCeil);
+
+    return RGBImagePixel.pack(red, green, blue);
+  }
+
+  /**
+   * Performs soft pixel value calculation for a single color component.
+   *
+   * @param cA     Color at (xFloor, yFloor)
+   * @param cB     Color at (xCeil, yFloor)
+   * @param cC     Color at (xFloor, yCeil)
+   * @param cD     Color at (xCeil, yCeil)
+   * @param x      Mapped x-coordinate in the original image
+   * @param y      Mapped y-coordinate in the original image
+   * @param xFloor Floor value of x
+   * @param xCeil  Ceiling value of x
+   * @param yFloor Floor value of y
+   * @param yCeil  Ceiling value of y
+   * @return Interpolated color value
+   */
+  private int computePForSingleColor(int cA, int cB, int cC, int cD, double x, double y, int xFloor,
+                                     int xCeil, int yFloor, int yCeil) {
+    double m = cB * (x - xFloor) + cA * (xCeil - x);
+    double n = cD * (x - xFloor) + cC * (xCeil - x);
+    double cP = n * (y - yFloor) + m * (yCeil - y);
+
+    return (int) Math.round(cP);
   }
 
+  @Override
+  public ImageADT applyPartialWithMasking(ImageADT maskingImage, String effectType) {
+    // Validate masking image dimensions
+    AbstractImage newMask = (AbstractImage) maskingImage;
+    if (newMask.getWidth() != this.getWidth() || newMask.getHeight() != this.getHeight()) {
+      throw new IllegalArgumentException("Masking image dimensions must match the current "
+              + "image dimensions");
+    }
+
+    // casting needed to fit in the model.
+    AbstractImage transformedImage = (AbstractImage) getTransformedImage(effectType);
+    AbstractImage newImage = createImage();
+    // The counts of the masked pixels before and after, to update a known histogram
+    Histogram.Counter removed = new Histogram.Counter();
+    Histogram.Counter added = new Histogram.Counter();
 
-  public abstract ImageADT converttoLuma(int p);
+    Parallelism.forEachBand(height, width, (from, to) -> {
+      int[] row = new int[width];
+      int[] maskRow = new int[width];
+      int[] transformedRow = new int[width];
+      Histogram.Counter bandRemoved = new Histogram.Counter();
+      Histogram.Counter bandAdded = new Histogram.Counter();
+      for (int i = from; i < to; i++) {
+        readRow(i, row);
+        newMask.readRow(i, maskRow);
+        transformedImage.readRow(i, transformedRow);
+        for (int j = 0; j < width; j++) {
+          // A pure black mask pixel selects the transformed value
+          if (maskRow[j] == 0) {
+            bandRemoved.add(row[j]);
+            bandAdded.add(transformedRow[j]);
+            row[j] = transformedRow[j];
+          }
+        }
+        newImage.writeRow(i, row);
+      }
+      synchronized (removed) {
+        removed.add(bandRemoved);
+        added.add(bandAdded);
+      }
+    });
+    if (histogram != null) {
+      newImage.keepHistogram(histogram.replace(removed.toHistogram(), added.toHistogram()));
+    }
+    // Only the masked pixels were copied out of the transformed image, so its storage can go now
+    transformedImage.release();
 
-  public abstract ImageADT colorCorrection(int p);
+    System.out.println("Applied " + effectType + " partially using masking.");
+    return newImage;
+  }
 
-  public abstract ImageADT adjustLevels(int p);
+  /**
+   * Returns the transformed image based on the specified effect type.
+   *
+   * @param effectType The type of effect to apply.
+   * @return The transformed ImageADT object.
+   * @throws IllegalArgumentException if the effect type is unsupported.
+   */
+  private ImageADT getTransformedImage(String effectType) {
+    switch (effectType.toLowerCase()) {
+      case "blur":
+        return this.blur();
+      case "sharpen":
+        return this.sharpen();
+      case "sepia":
+        return this.convertToSepia();
+      case "grayscale":
+        return this.convertToGreyScale();
+      case "red-component":
+      case "green-component":
+      case "blue-component":
+        return this.createColorImage(
+                Channel.valueOf(effectType.substring(
+                        0, effectType.lastIndexOf('-')).toUpperCase()));
+      default:
+        throw new IllegalArgumentException("Unsupported effect: " + effectType);
+    }
+  }
 }
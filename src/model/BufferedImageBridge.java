@@ -0,0 +1,125 @@
+package model;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Converts between {@link BufferedImage} rasters and packed {@code 0xRRGGBB} pixel rows.
+ *
+ * <p>{@code BufferedImage.getRGB} and {@code setRGB} convert every pixel through the color
+ * model, even in their bulk forms. For the layouts that {@code javax.imageio} and this
+ * application produce ({@code TYPE_INT_RGB}, {@code TYPE_INT_ARGB}, {@code TYPE_3BYTE_BGR} and
+ * {@code TYPE_4BYTE_ABGR}) this class reads the backing {@code int[]} or {@code byte[]} directly
+ * instead. Any other layout falls back to {@code getRGB}, so the results are always identical.
+ */
+final class BufferedImageBridge {
+
+  private BufferedImageBridge() {
+  }
+
+  /**
+   * Reads one row of an image as packed {@code 0xRRGGBB} values.
+   *
+   * @param image the image to read.
+   * @param y     the row index.
+   * @param row   the destination buffer, at least {@code image.getWidth()} long.
+   */
+  static void readRow(BufferedImage image, int y, int[] row) {
+    int width = image.getWidth();
+    if (!hasDirectLayout(image)) {
+      image.getRGB(0, y, width, 1, row, 0, width);
+      for (int x = 0; x < width; x++) {
+        row[x] &= 0xFFFFFF;
+      }
+      return;
+    }
+    Raster raster = image.getRaster();
+    SampleModel sampleModel = raster.getSampleModel();
+    int rasterX = -raster.getSampleModelTranslateX();
+    int rasterY = y - raster.getSampleModelTranslateY();
+
+    if (sampleModel instanceof SinglePixelPackedSampleModel) {
+      DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+      int[] data = buffer.getData();
+      int start = buffer.getOffset()
+              + ((SinglePixelPackedSampleModel) sampleModel).getOffset(rasterX, rasterY);
+      for (int x = 0; x < width; x++) {
+        row[x] = data[start + x] & 0xFFFFFF;
+      }
+    } else {
+      ComponentSampleModel components = (ComponentSampleModel) sampleModel;
+      DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+      byte[] data = buffer.getData();
+      int pixelStride = components.getPixelStride();
+      int[] bandOffsets = components.getBandOffsets();
+      int start = buffer.getOffset() + rasterY * components.getScanlineStride()
+              + rasterX * pixelStride;
+      int red = start + bandOffsets[0];
+      int green = start + bandOffsets[1];
+      int blue = start + bandOffsets[2];
+      for (int x = 0; x < width; x++) {
+        int index = x * pixelStride;
+        row[x] = ((data[red + index] & 0xFF) << 16) | ((data[green + index] & 0xFF) << 8)
+                | (data[blue + index] & 0xFF);
+      }
+    }
+  }
+
+  /**
+   * Overwrites one row of an image created by {@link #newImage} with packed pixels.
+   *
+   * @param image the destination image.
+   * @param y     the row index.
+   * @param row   the packed pixels, at least {@code image.getWidth()} long.
+   */
+  static void writeRow(BufferedImage image, int y, int[] row) {
+    int width = image.getWidth();
+    System.arraycopy(row, 0, pixelData(image), y * width, width);
+  }
+
+  /**
+   * Creates a black {@code TYPE_INT_RGB} image to be filled with {@link #writeRow}.
+   *
+   * @param width  the width of the image.
+   * @param height the height of the image.
+   * @return the new image.
+   */
+  static BufferedImage newImage(int width, int height) {
+    return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+  }
+
+  /**
+   * Returns the pixel array of a freshly created {@code TYPE_INT_RGB} image, whose rows are
+   * stored back to back without padding.
+   */
+  private static int[] pixelData(BufferedImage image) {
+    WritableRaster raster = image.getRaster();
+    return ((DataBufferInt) raster.getDataBuffer()).getData();
+  }
+
+  /**
+   * Checks whether the pixels of an image can be read straight from its data buffer, which holds
+   * for the standard packed-int and interleaved-byte RGB types.
+   */
+  private static boolean hasDirectLayout(BufferedImage image) {
+    Raster raster = image.getRaster();
+    switch (image.getType()) {
+      case BufferedImage.TYPE_INT_RGB:
+      case BufferedImage.TYPE_INT_ARGB:
+        return raster.getDataBuffer() instanceof DataBufferInt
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel;
+      case BufferedImage.TYPE_3BYTE_BGR:
+      case BufferedImage.TYPE_4BYTE_ABGR:
+        return raster.getDataBuffer() instanceof DataBufferByte
+                && raster.getSampleModel() instanceof ComponentSampleModel;
+      default:
+        return false;
+    }
+  }
+}
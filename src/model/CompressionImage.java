@@ -1,80 +1,21 @@
 package model;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * The {@code CompressionImage} class provides functionality for compressing images.
  * by reducing the amount of data needed to represent the image.
+ *
+ * <p>A channel is held as one row-major {@code double[]} matrix whose sides are powers of two.
+ * The Haar transforms work on it in place and keep full precision from one level to the
+ * next; values are only rounded once the inverse transform is complete. Each level transforms
+ * the rows and the columns of two rows at a time in a single pass, in parallel over bands of row
+ * pairs with one scratch row per band, and then moves the rows of averages above the rows of
+ * differences. No objects are allocated per sample.
  */
 public class CompressionImage {
 
-  /**
-   * Transforms a given list of doubles by performing a wavelet-like transformation.
-   * This method takes an input list and splits it into averages and differences of.
-   * adjacent elements, producing a new list that contains all averages followed by.
-   * all differences. If the input list's size is not a power of 2, it is padded to.
-   * the nearest power of 2 length.
-   * represents averages and the second half represents differences of adjacent.
-   * elements from the input list.
-   */
-  public List<Double> transform(List<Double> s) {
-
-    // if there isn't sufficient padding for the sequence to have a length = power of 2
-    if (s.size() % 2 != 0) {
-      s = paddedSequence(s);
-      System.out.println(s);
-    }
-
-    List<Double> result = new ArrayList<>();
-    ArrayList<Double> a = new ArrayList<>();
-    ArrayList<Double> b = new ArrayList<>();
-    double avg;
-    double diff;
-    for (int i = 0; i < s.size() - 1; i += 2) {
-      avg = (s.get(i) + s.get(i + 1)) / Math.sqrt(2);
-      diff = (s.get(i) - s.get(i + 1)) / Math.sqrt(2);
-      a.add(avg);
-      b.add(diff);
-    }
-    result.addAll(a);
-    result.addAll(b);
-    return result;
-  }
-
-  /**
-   * Inverts a transformed list of doubles by reconstructing the original list
-   * from averaged and differenced values.
-   * This method takes a list that has been transformed into averages and differences
-   * of adjacent elements (with all averages in the first half and all differences in the
-   * second half of the list) and reconstructs the original list. If the input list's
-   * length is not a power of 2, it is padded to the nearest power of 2 length.
-   *
-   * @param s the transformed list of doubles, consisting of averages followed by differences.
-   * @return a new list of doubles representing the reconstructed original values.
-   */
-  public List<Double> invert(List<Double> s) {
-
-    //remove this code post testing.
-    // if there isn't sufficient padding.
-    if (s.size() % 2 != 0) {
-      s = paddedSequence(s);
-      System.out.println(s);
-    }
-
-    List<Double> result = new ArrayList<>();
-    double a;
-    double b;
-    for (int i = 0, j = s.size() / 2; i < s.size() / 2; i++, j++) {
-      a = (s.get(i) + s.get(j)) / Math.sqrt(2);
-      b = (s.get(i) - s.get(j)) / Math.sqrt(2);
-      result.add(a);
-      result.add(b);
-    }
-    return result;
-  }
-
+  private static final double INV_SQRT2 = 1 / Math.sqrt(2);
 
   /**
    * Calculates the nearest power of 2 that is greater than or equal to the given size.
@@ -96,157 +37,285 @@ public class CompressionImage {
     return i;
   }
 
-  private List<Double> paddedSequence(List<Double> s) {
-    int padSize = paddingSize(s.size());
-    List<Double> paddedList = new ArrayList<>(s);
-    while (paddedList.size() < padSize) {
-      paddedList.add(0.0);
-    }
-    return paddedList;
+  /**
+   * Performs a 2D Haar wavelet transformation on a square channel, in place.
+   *
+   * @param channel the row-major {@code size x size} matrix to transform.
+   * @param size    the side of the matrix, a power of 2.
+   * @see #haar2DImageTransformation(double[], int, int)
+   */
+  public void haar2DImageTransformation(double[] channel, int size) {
+    haar2DImageTransformation(channel, size, size);
   }
 
-
   /**
-   * Performs a 2D Haar wavelet transformation on an image.
-   * This method applies the Haar transformation in both row-wise and column-wise directions
-   * iteratively to reduce the size of the region being transformed at each step.
-   * The transformation is followed by thresholding to remove small values below certain threshold.
+   * Performs a 2D Haar wavelet transformation on a channel, in place.
+   * The rows and then the columns of the top-left {@code w x h} region are split into the
+   * averages and the differences of adjacent values, after which both sides are halved, until
+   * one side is a single value. The averages left along the other side are then transformed as
+   * a vector.
    *
-   * @param image     the 2D array representing the image to be transformed.
-   * @param size      the size of the image (assuming it is square).
-   * @param threshold the percentile threshold used to eliminate.
-   *                  small values in the transformed image.
-   * @return a 2D array representing the transformed image, with small values thresholded to zero.
+   * @param channel the row-major {@code width x height} matrix to transform.
+   * @param width   the width of the matrix, a power of 2.
+   * @param height  the height of the matrix, a power of 2.
    */
-  public int[][] haar2DImageTransformation(int[][] image, int size, int threshold) {
-
-    int[][] paddedImage = image;
-
-    int c = size;
-
-    while (c > 1) {
-      // Converting int[] to List<double>
-      for (int i = 0; i < c; i++) {
-        List<Double> row = new ArrayList<>();
-        for (int j = 0; j < c; j++) {
-          row.add((double) paddedImage[i][j]);
+  public void haar2DImageTransformation(double[] channel, int width, int height) {
+    int w = width;
+    int h = height;
+    for (; w > 1 && h > 1; w /= 2, h /= 2) {
+      int regionWidth = w;
+      Parallelism.forEachBand(h / 2, w, (from, to) -> {
+        double[] row = new double[regionWidth];
+        for (int r = from; r < to; r++) {
+          splitRows(channel, width, row, regionWidth, r);
         }
-        // Row-wise transformation
-        List<Double> transformedRow = transform(row);
-        // Converting List<double> to int[]
-        for (int j = 0; j < c; j++) {
-          paddedImage[i][j] = (int) Math.round(transformedRow.get(j));
-        }
-      }
-
-      for (int j = 0; j < c; j++) {
-        List<Double> column = new ArrayList<>();
-        for (int i = 0; i < c; i++) {
-          column.add((double) paddedImage[i][j]);
-        }
-
-        // Column-wise transformation
-        List<Double> transformedColumn = transform(column);
-
-        for (int i = 0; i < c; i++) {
-          paddedImage[i][j] = (int) Math.round(transformedColumn.get(i));
-        }
-      }
-
-      // Reduce the size of the region to be transformed
-      c /= 2;
+      });
+      permuteRows(channel, width, w, h, false, new double[w]);
     }
-
-    threshold = calculatePercentile(paddedImage, threshold);
-    for (int i = 0; i < size; i++) {
-      for (int j = 0; j < size; j++) {
-        if (Math.abs(paddedImage[i][j]) < threshold) {
-          paddedImage[i][j] = 0;
-        }
-      }
+    if (w > 1) {
+      splitVector(channel, 1, w, new double[w]);
+    } else if (h > 1) {
+      splitVector(channel, width, h, new double[h]);
     }
+  }
 
-    return paddedImage;
+  /**
+   * Performs the inverse 2D Haar wavelet transformation on a square channel, in place.
+   *
+   * @param channel the row-major {@code size x size} matrix of coefficients.
+   * @param size    the side of the matrix, a power of 2.
+   * @see #haar2DImageInverse(double[], int, int)
+   */
+  public void haar2DImageInverse(double[] channel, int size) {
+    haar2DImageInverse(channel, size, size);
   }
 
   /**
-   * Performs the inverse 2D Haar wavelet transformation on an image.
-   * This method applies the inverse Haar transformation iteratively, first in column-wise direction
-   * and then in row-wise direction, progressively increasing.
-   * the region being transformed at each step.
-   * to reconstruct the image from its transformed state.
+   * Performs the inverse 2D Haar wavelet transformation on a channel, in place, undoing
+   * {@link #haar2DImageTransformation(double[], int, int)} from the smallest region up.
    *
-   * @param image the 2D array representing the transformed image to be inverted.
-   * @param size  the size of the image (assuming it is square).
-   * @return a 2D array representing the reconstructed image after the inverse Haar transformation.
+   * @param channel the row-major {@code width x height} matrix of coefficients.
+   * @param width   the width of the matrix, a power of 2.
+   * @param height  the height of the matrix, a power of 2.
    */
-  public int[][] haar2DImageInverse(int[][] image, int size) {
-    int c = 2;
-
-    while (c <= size) {
-      // Inverse Column-wise transformation
-      for (int j = 0; j < c; j++) {
-        List<Double> column = new ArrayList<>();
-        for (int i = 0; i < c; i++) {
-          column.add((double) image[i][j]);
-        }
-        // Apply the inverse Haar transformation on this column
-        List<Double> invertedColumn = invert(column);
-        for (int i = 0; i < c; i++) {
-          image[i][j] = (int) Math.round(invertedColumn.get(i));
+  public void haar2DImageInverse(double[] channel, int width, int height) {
+    int levels = Integer.numberOfTrailingZeros(Math.min(width, height));
+    int w = width >> levels;
+    int h = height >> levels;
+    if (w > 1) {
+      mergeVector(channel, 1, w, new double[w]);
+    } else if (h > 1) {
+      mergeVector(channel, width, h, new double[h]);
+    }
+    for (w *= 2, h *= 2; w <= width; w *= 2, h *= 2) {
+      int regionWidth = w;
+      permuteRows(channel, width, w, h, true, new double[w]);
+      Parallelism.forEachBand(h / 2, w, (from, to) -> {
+        double[] row = new double[regionWidth];
+        for (int r = from; r < to; r++) {
+          mergeRows(channel, width, row, regionWidth, r);
         }
-      }
+      });
+    }
+  }
 
-      // Inverse Row-wise transformation
-      for (int i = 0; i < c; i++) {
-        List<Double> row = new ArrayList<>();
-        for (int j = 0; j < c; j++) {
-          row.add((double) image[i][j]);
-        }
-        // Apply the inverse Haar transformation on this row
-        List<Double> invertedRow = invert(row);
-        for (int j = 0; j < c; j++) {
-          image[i][j] = (int) Math.round(invertedRow.get(j));
+  /**
+   * Zeroes small coefficients. The threshold is the given percentile of the coefficients ranked
+   * by their signed values, as the original implementation ranked them, and a coefficient is
+   * zeroed when its absolute value is below that threshold. Negative coefficients therefore
+   * count towards the rank without raising the threshold, and a threshold that is itself
+   * negative zeroes nothing. Given several channels, the percentile is taken over all of their
+   * coefficients together, so that a channel with little detail gives up more of its
+   * coefficients than one with a lot.
+   *
+   * @param percentile the percentile, from 0 to 100, that picks the threshold.
+   * @param channels   the coefficients of each channel.
+   */
+  public void threshold(double percentile, double[]... channels) {
+    long count = 0;
+    for (double[] channel : channels) {
+      count += channel.length;
+    }
+    long index = (long) Math.ceil((percentile / 100.0) * count) - 1;
+    index = Math.max(0, Math.min(index, count - 1));
+    double threshold = select(channels, index);
+    for (double[] channel : channels) {
+      for (int i = 0; i < channel.length; i++) {
+        if (Math.abs(channel[i]) < threshold) {
+          channel[i] = 0;
         }
       }
+    }
+  }
 
-      c *= 2;
+  /**
+   * Transforms rows {@code 2r} and {@code 2r + 1} of a region {@code w} wide, first along the
+   * rows and then down the columns, leaving the averages and row differences in row {@code 2r}
+   * and the column and double differences in row {@code 2r + 1}. Doing both directions in one
+   * pass computes the same values as two passes, with half the memory traffic. The two factors of
+   * {@code 1 / sqrt(2)} combine into an exact halving, so integer samples give exact coefficients
+   * instead of ones that drift in the last bit. The row differences are gathered in the scratch
+   * row, since they land on values not yet read.
+   */
+  private static void splitRows(double[] channel, int stride, double[] row, int w, int r) {
+    int half = w / 2;
+    int top = 2 * r * stride;
+    int bottom = top + stride;
+    for (int k = 0; k < half; k++) {
+      double a = channel[top + 2 * k];
+      double b = channel[top + 2 * k + 1];
+      double d = channel[bottom + 2 * k];
+      double e = channel[bottom + 2 * k + 1];
+      channel[top + k] = (a + b + d + e) * 0.5;
+      row[k] = (a - b + d - e) * 0.5;
+      channel[bottom + k] = (a + b - d - e) * 0.5;
+      row[half + k] = (a - b - d + e) * 0.5;
     }
+    System.arraycopy(row, 0, channel, top + half, half);
+    System.arraycopy(row, half, channel, bottom + half, half);
+  }
 
-    return image;  // Return the fully reconstructed image
+  /**
+   * Undoes {@link #splitRows(double[], int, double[], int, int)} on rows {@code 2r} and
+   * {@code 2r + 1}, undoing the columns and then the rows in one pass with an exact halving.
+   * Working from the right leaves only the row differences to be saved in the scratch row first.
+   */
+  private static void mergeRows(double[] channel, int stride, double[] row, int w, int r) {
+    int half = w / 2;
+    int top = 2 * r * stride;
+    int bottom = top + stride;
+    System.arraycopy(channel, top + half, row, 0, half);
+    System.arraycopy(channel, bottom + half, row, half, half);
+    for (int k = half - 1; k >= 0; k--) {
+      double averages = channel[top + k];
+      double rowDifferences = row[k];
+      double columnDifferences = channel[bottom + k];
+      double bothDifferences = row[half + k];
+      channel[top + 2 * k] =
+              (averages + rowDifferences + columnDifferences + bothDifferences) * 0.5;
+      channel[top + 2 * k + 1] =
+              (averages - rowDifferences + columnDifferences - bothDifferences) * 0.5;
+      channel[bottom + 2 * k] =
+              (averages + rowDifferences - columnDifferences - bothDifferences) * 0.5;
+      channel[bottom + 2 * k + 1] =
+              (averages - rowDifferences - columnDifferences + bothDifferences) * 0.5;
+    }
   }
 
+  /**
+   * Moves the first {@code w} values of the {@code h} rows of the region so that the even rows
+   * come first and the odd rows after them, or back again when {@code interleave} is set. Each
+   * cycle of the permutation is followed with the one scratch row, so every row moves once.
+   */
+  private static void permuteRows(double[] channel, int stride, int w, int h, boolean interleave,
+                                  double[] row) {
+    boolean[] placed = new boolean[h];
+    for (int start = 0; start < h; start++) {
+      if (placed[start]) {
+        continue;
+      }
+      System.arraycopy(channel, start * stride, row, 0, w);
+      int to = start;
+      for (int from = sourceRow(to, h, interleave); from != start;
+           from = sourceRow(to, h, interleave)) {
+        System.arraycopy(channel, from * stride, channel, to * stride, w);
+        placed[to] = true;
+        to = from;
+      }
+      System.arraycopy(row, 0, channel, to * stride, w);
+      placed[to] = true;
+    }
+  }
 
-  //temp
+  /**
+   * Returns the row whose values {@link #permuteRows} moves into row {@code to}.
+   */
+  private static int sourceRow(int to, int h, boolean interleave) {
+    if (interleave) {
+      return to % 2 == 0 ? to / 2 : h / 2 + to / 2;
+    }
+    return to < h / 2 ? 2 * to : 2 * (to - h / 2) + 1;
+  }
 
   /**
-   * Converts a 2D array representation of an image into a string format.
+   * Transforms the first {@code length} values of a row or column, {@code step} apart, as a
+   * 1D vector, halving its length each level. The vector is what is left of a rectangular
+   * channel once its shorter side is a single value, so it is short.
    */
-  public String toString(int[][] image) {
-    StringBuilder sb = new StringBuilder();
-    for (int[] row : image) {
-      for (int pixel : row) {
-        sb.append(pixel).append(" ");
+  private static void splitVector(double[] channel, int step, int length, double[] scratch) {
+    for (int c = length; c > 1; c /= 2) {
+      int half = c / 2;
+      for (int k = 0; k < half; k++) {
+        double a = channel[2 * k * step];
+        double b = channel[(2 * k + 1) * step];
+        scratch[k] = (a + b) * INV_SQRT2;
+        scratch[half + k] = (a - b) * INV_SQRT2;
+      }
+      for (int k = 0; k < c; k++) {
+        channel[k * step] = scratch[k];
       }
-      sb.append("\n");  // New line after each row
     }
-    return sb.toString();
   }
 
-  private static int calculatePercentile(int[][] matrix, double percentile) {
-
-    List<Integer> values = new ArrayList<>();
-    for (int[] row : matrix) {
-      for (int value : row) {
-        values.add(value);
+  /**
+   * Undoes {@link #splitVector(double[], int, int, double[])}.
+   */
+  private static void mergeVector(double[] channel, int step, int length, double[] scratch) {
+    for (int c = 2; c <= length; c *= 2) {
+      int half = c / 2;
+      for (int k = 0; k < half; k++) {
+        double averages = channel[k * step];
+        double differences = channel[(half + k) * step];
+        scratch[2 * k] = (averages + differences) * INV_SQRT2;
+        scratch[2 * k + 1] = (averages - differences) * INV_SQRT2;
+      }
+      for (int k = 0; k < c; k++) {
+        channel[k * step] = scratch[k];
       }
     }
-    Collections.sort(values);
+  }
 
-    int index = (int) Math.ceil((percentile / 100.0) * values.size()) - 1;
-    index = Math.max(0, Math.min(index, values.size() - 1));
+  /**
+   * Returns the {@code k}-th smallest of the values of all the arrays without moving or copying
+   * them. Each value is mapped to a 64-bit key that orders like the value, and the key of the
+   * answer is found 16 bits at a time from a count of the keys that share the bits found so far.
+   */
+  private static double select(double[][] arrays, long k) {
+    long prefix = 0;
+    long prefixMask = 0;
+    long rank = k;
+    long[] counts = new long[1 << 16];
+    for (int shift = 48; shift >= 0; shift -= 16) {
+      Arrays.fill(counts, 0);
+      for (double[] values : arrays) {
+        for (double value : values) {
+          long key = key(value);
+          if ((key & prefixMask) == prefix) {
+            counts[(int) (key >>> shift) & 0xFFFF]++;
+          }
+        }
+      }
+      int digit = 0;
+      while (rank >= counts[digit]) {
+        rank -= counts[digit];
+        digit++;
+      }
+      prefix |= (long) digit << shift;
+      prefixMask |= 0xFFFFL << shift;
+    }
+    return value(prefix);
+  }
 
-    return values.get(index);
+  /**
+   * Maps a value to a key whose unsigned order is the order of the values.
+   */
+  private static long key(double value) {
+    long bits = Double.doubleToRawLongBits(value);
+    return bits ^ ((bits >> 63) | Long.MIN_VALUE);
   }
 
+  private static double value(long key) {
+    long bits = key < 0 ? key ^ Long.MIN_VALUE : ~key;
+    return Double.longBitsToDouble(bits);
+  }
 }
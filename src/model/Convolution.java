@@ -0,0 +1,459 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Applies a square convolution kernel to an image, one row at a time. Taps that fall outside the
+ * image are skipped, and every output channel is clamped to [0, 255] and rounded.
+ *
+ * <p>A kernel that is the outer product of a column and a row vector, such as the blur kernel
+ * {@code [1,2,1]^T [1,2,1] / 16}, is detected when the engine is created and applied as a
+ * horizontal pass followed by a vertical pass. That costs {@code 2n} taps per pixel instead of
+ * {@code n^2}. Any other kernel is applied directly. Both paths unpack each source row into
+ * channel arrays once and accumulate whole rows, so the inner loops have no bounds checks or
+ * per-tap unpacking.
+ *
+ * <p>When {@link PixelKernels} are enabled and every tap is a multiple of {@code 2^-k} for a
+ * small {@code k}, as the blur and sharpen taps are, the sums are computed in {@code int}
+ * lanes with taps scaled by {@code 2^k}, and the result is rounded with a shift. Sums of such
+ * taps are exact in {@code double} as well, so both forms give the same colors.
+ *
+ * <p>Rows are convolved in parallel bands. Each band reads the source rows its kernel reaches
+ * on its own, so the result is the same for any number of threads.
+ */
+final class Convolution {
+
+  // Largest k tried when scaling taps by 2^k to integers
+  private static final int MAX_SHIFT = 16;
+
+  private final double[][] kernel;
+  private final int size;
+  private final int radius;
+  // The kernel is columnFactors[i] * rowFactors[j]; both are null if it is not separable
+  private final double[] columnFactors;
+  private final double[] rowFactors;
+  // Taps scaled to integers, with the total scale 2^shift; null if the taps are not dyadic
+  private int[][] weights;
+  private int[] columnWeights;
+  private int[] rowWeights;
+  private int shift;
+
+  /**
+   * Prepares a kernel for convolution and checks whether it is separable.
+   *
+   * @param kernel a square kernel with an odd number of rows.
+   */
+  Convolution(double[][] kernel) {
+    this.kernel = kernel;
+    this.size = kernel.length;
+    this.radius = size / 2;
+
+    // Factor the kernel around its largest entry and keep the factors only if their outer
+    // product reproduces every entry exactly
+    int pivotRow = 0;
+    int pivotColumn = 0;
+    for (int i = 0; i < size; i++) {
+      for (int j = 0; j < size; j++) {
+        if (Math.abs(kernel[i][j]) > Math.abs(kernel[pivotRow][pivotColumn])) {
+          pivotRow = i;
+          pivotColumn = j;
+        }
+      }
+    }
+    double pivot = kernel[pivotRow][pivotColumn];
+    double[] column = new double[size];
+    double[] row = kernel[pivotRow].clone();
+    boolean separable = pivot != 0;
+    for (int i = 0; i < size && separable; i++) {
+      column[i] = kernel[i][pivotColumn] / pivot;
+      for (int j = 0; j < size; j++) {
+        if (column[i] * row[j] != kernel[i][j]) {
+          separable = false;
+          break;
+        }
+      }
+    }
+    this.columnFactors = separable ? column : null;
+    this.rowFactors = separable ? row : null;
+
+    if (separable) {
+      int columnShift = fixedPointShift(new double[][]{column});
+      int rowShift = fixedPointShift(new double[][]{row});
+      if (columnShift >= 0 && rowShift >= 0) {
+        columnWeights = scale(column, columnShift);
+        rowWeights = scale(row, rowShift);
+        shift = columnShift + rowShift;
+        if (255L * magnitude(rowWeights) * magnitude(columnWeights) > Integer.MAX_VALUE) {
+          columnWeights = null;
+          rowWeights = null;
+        }
+      }
+    } else {
+      int kernelShift = fixedPointShift(kernel);
+      if (kernelShift >= 0) {
+        weights = new int[size][];
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+          weights[i] = scale(kernel[i], kernelShift);
+          total += magnitude(weights[i]);
+        }
+        shift = kernelShift;
+        if (255L * total > Integer.MAX_VALUE) {
+          weights = null;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the smallest {@code k} up to {@link #MAX_SHIFT} for which every value times
+   * {@code 2^k} is an integer, or -1 if there is none.
+   */
+  private static int fixedPointShift(double[][] values) {
+    for (int k = 0; k <= MAX_SHIFT; k++) {
+      double factor = 1 << k;
+      boolean integral = true;
+      for (double[] row : values) {
+        for (double value : row) {
+          double scaled = value * factor;
+          if (scaled != Math.rint(scaled) || Math.abs(scaled) > Integer.MAX_VALUE) {
+            integral = false;
+          }
+        }
+      }
+      if (integral) {
+        return k;
+      }
+    }
+    return -1;
+  }
+
+  private static int[] scale(double[] values, int shift) {
+    int[] scaled = new int[values.length];
+    for (int i = 0; i < values.length; i++) {
+      scaled[i] = (int) (values[i] * (1 << shift));
+    }
+    return scaled;
+  }
+
+  private static long magnitude(int[] weights) {
+    long total = 0;
+    for (int weight : weights) {
+      total += Math.abs((long) weight);
+    }
+    return total;
+  }
+
+  /**
+   * Checks whether the kernel is applied as two one-dimensional passes.
+   *
+   * @return true if the kernel is separable.
+   */
+  boolean isSeparable() {
+    return rowFactors != null;
+  }
+
+  /**
+   * Convolves the first {@code columns} columns of {@code source} and writes them to the same
+   * columns of {@code target}, which must have the same size. The other columns of
+   * {@code target} are not touched.
+   *
+   * @param source  the image to read.
+   * @param target  the image to write.
+   * @param columns the number of leading columns to convolve.
+   */
+  void apply(AbstractImage source, AbstractImage target, int columns) {
+    boolean fixedPoint = PixelKernels.isRowKernels();
+    Parallelism.forEachBand(source.getHeight(), source.getWidth(), (from, to) -> {
+      if (isSeparable() && fixedPoint && rowWeights != null) {
+        applySeparableFixed(source, target, columns, from, to);
+      } else if (isSeparable()) {
+        applySeparable(source, target, columns, from, to);
+      } else if (fixedPoint && weights != null) {
+        applyDirectFixed(source, target, columns, from, to);
+      } else {
+        applyDirect(source, target, columns, from, to);
+      }
+    });
+  }
+
+  private void applySeparable(AbstractImage source, AbstractImage target, int columns,
+                              int from, int to) {
+    int width = source.getWidth();
+    int height = source.getHeight();
+    RowChannels channels = new RowChannels(width);
+    // Horizontal results for source row r are kept in slot r % size while the kernel covers it
+    double[][] red = new double[size][columns];
+    double[][] green = new double[size][columns];
+    double[][] blue = new double[size][columns];
+    Sums sums = new Sums(columns);
+    int[] out = new int[columns];
+
+    for (int r = Math.max(0, from - radius); r < Math.min(from + radius, height); r++) {
+      channels.read(source, r);
+      horizontalPass(channels, width, columns, red[r % size], green[r % size], blue[r % size]);
+    }
+    for (int i = from; i < to; i++) {
+      int next = i + radius;
+      if (next < height) {
+        channels.read(source, next);
+        horizontalPass(channels, width, columns,
+                red[next % size], green[next % size], blue[next % size]);
+      }
+      sums.clear();
+      for (int ni = Math.max(0, i - radius); ni <= Math.min(height - 1, i + radius); ni++) {
+        double factor = columnFactors[ni - i + radius];
+        double[] r = red[ni % size];
+        double[] g = green[ni % size];
+        double[] b = blue[ni % size];
+        for (int j = 0; j < columns; j++) {
+          sums.red[j] += r[j] * factor;
+          sums.green[j] += g[j] * factor;
+          sums.blue[j] += b[j] * factor;
+        }
+      }
+      sums.pack(out);
+      target.writeRow(i, out, columns);
+    }
+  }
+
+  private void horizontalPass(RowChannels channels, int width, int columns,
+                              double[] red, double[] green, double[] blue) {
+    Arrays.fill(red, 0);
+    Arrays.fill(green, 0);
+    Arrays.fill(blue, 0);
+    for (int kj = -radius; kj <= radius; kj++) {
+      double factor = rowFactors[kj + radius];
+      int end = Math.min(columns, width - kj);
+      for (int j = Math.max(0, -kj); j < end; j++) {
+        red[j] += channels.red[j + kj] * factor;
+        green[j] += channels.green[j + kj] * factor;
+        blue[j] += channels.blue[j + kj] * factor;
+      }
+    }
+  }
+
+  private void applyDirect(AbstractImage source, AbstractImage target, int columns,
+                           int from, int to) {
+    int width = source.getWidth();
+    int height = source.getHeight();
+    // Source row r is kept unpacked in slot r % size while the kernel covers it
+    RowChannels[] rows = new RowChannels[size];
+    for (int r = 0; r < size; r++) {
+      rows[r] = new RowChannels(width);
+    }
+    Sums sums = new Sums(columns);
+    int[] out = new int[columns];
+
+    for (int r = Math.max(0, from - radius); r < Math.min(from + radius, height); r++) {
+      rows[r % size].read(source, r);
+    }
+    for (int i = from; i < to; i++) {
+      int next = i + radius;
+      if (next < height) {
+        rows[next % size].read(source, next);
+      }
+      sums.clear();
+      for (int ni = Math.max(0, i - radius); ni <= Math.min(height - 1, i + radius); ni++) {
+        RowChannels row = rows[ni % size];
+        double[] factors = kernel[ni - i + radius];
+        for (int kj = -radius; kj <= radius; kj++) {
+          double factor = factors[kj + radius];
+          int end = Math.min(columns, width - kj);
+          for (int j = Math.max(0, -kj); j < end; j++) {
+            sums.red[j] += row.red[j + kj] * factor;
+            sums.green[j] += row.green[j + kj] * factor;
+            sums.blue[j] += row.blue[j + kj] * factor;
+          }
+        }
+      }
+      sums.pack(out);
+      target.writeRow(i, out, columns);
+    }
+  }
+
+  private void applySeparableFixed(AbstractImage source, AbstractImage target, int columns,
+                                   int from, int to) {
+    int width = source.getWidth();
+    int height = source.getHeight();
+    RowChannels channels = new RowChannels(width);
+    // Horizontal results for source row r are kept in slot r % size while the kernel covers it
+    int[][] red = new int[size][columns];
+    int[][] green = new int[size][columns];
+    int[][] blue = new int[size][columns];
+    FixedSums sums = new FixedSums(columns);
+    int[] out = new int[columns];
+
+    for (int r = Math.max(0, from - radius); r < Math.min(from + radius, height); r++) {
+      channels.read(source, r);
+      horizontalPassFixed(channels, width, columns, red[r % size], green[r % size],
+              blue[r % size]);
+    }
+    for (int i = from; i < to; i++) {
+      int next = i + radius;
+      if (next < height) {
+        channels.read(source, next);
+        horizontalPassFixed(channels, width, columns,
+                red[next % size], green[next % size], blue[next % size]);
+      }
+      sums.clear();
+      for (int ni = Math.max(0, i - radius); ni <= Math.min(height - 1, i + radius); ni++) {
+        int weight = columnWeights[ni - i + radius];
+        int[] r = red[ni % size];
+        int[] g = green[ni % size];
+        int[] b = blue[ni % size];
+        for (int j = 0; j < columns; j++) {
+          sums.red[j] += r[j] * weight;
+          sums.green[j] += g[j] * weight;
+          sums.blue[j] += b[j] * weight;
+        }
+      }
+      sums.pack(out, shift);
+      target.writeRow(i, out, columns);
+    }
+  }
+
+  private void horizontalPassFixed(RowChannels channels, int width, int columns,
+                                   int[] red, int[] green, int[] blue) {
+    Arrays.fill(red, 0);
+    Arrays.fill(green, 0);
+    Arrays.fill(blue, 0);
+    for (int kj = -radius; kj <= radius; kj++) {
+      int weight = rowWeights[kj + radius];
+      int end = Math.min(columns, width - kj);
+      for (int j = Math.max(0, -kj); j < end; j++) {
+        red[j] += channels.red[j + kj] * weight;
+        green[j] += channels.green[j + kj] * weight;
+        blue[j] += channels.blue[j + kj] * weight;
+      }
+    }
+  }
+
+  private void applyDirectFixed(AbstractImage source, AbstractImage target, int columns,
+                                int from, int to) {
+    int width = source.getWidth();
+    int height = source.getHeight();
+    RowChannels[] rows = new RowChannels[size];
+    for (int r = 0; r < size; r++) {
+      rows[r] = new RowChannels(width);
+    }
+    FixedSums sums = new FixedSums(columns);
+    int[] out = new int[columns];
+
+    for (int r = Math.max(0, from - radius); r < Math.min(from + radius, height); r++) {
+      rows[r % size].read(source, r);
+    }
+    for (int i = from; i < to; i++) {
+      int next = i + radius;
+      if (next < height) {
+        rows[next % size].read(source, next);
+      }
+      sums.clear();
+      for (int ni = Math.max(0, i - radius); ni <= Math.min(height - 1, i + radius); ni++) {
+        RowChannels row = rows[ni % size];
+        int[] taps = weights[ni - i + radius];
+        for (int kj = -radius; kj <= radius; kj++) {
+          int weight = taps[kj + radius];
+          int end = Math.min(columns, width - kj);
+          for (int j = Math.max(0, -kj); j < end; j++) {
+            sums.red[j] += row.red[j + kj] * weight;
+            sums.green[j] += row.green[j + kj] * weight;
+            sums.blue[j] += row.blue[j + kj] * weight;
+          }
+        }
+      }
+      sums.pack(out, shift);
+      target.writeRow(i, out, columns);
+    }
+  }
+
+  /**
+   * One source row split into its channels.
+   */
+  private static final class RowChannels {
+    private final int[] packed;
+    private final int[] red;
+    private final int[] green;
+    private final int[] blue;
+
+    private RowChannels(int width) {
+      packed = new int[width];
+      red = new int[width];
+      green = new int[width];
+      blue = new int[width];
+    }
+
+    private void read(AbstractImage source, int x) {
+      source.readRow(x, packed);
+      for (int j = 0; j < packed.length; j++) {
+        red[j] = RGBImagePixel.red(packed[j]);
+        green[j] = RGBImagePixel.green(packed[j]);
+        blue[j] = RGBImagePixel.blue(packed[j]);
+      }
+    }
+  }
+
+  /**
+   * Per-channel accumulators for one output row.
+   */
+  private static final class Sums {
+    private final double[] red;
+    private final double[] green;
+    private final double[] blue;
+
+    private Sums(int columns) {
+      red = new double[columns];
+      green = new double[columns];
+      blue = new double[columns];
+    }
+
+    private void clear() {
+      Arrays.fill(red, 0);
+      Arrays.fill(green, 0);
+      Arrays.fill(blue, 0);
+    }
+
+    private void pack(int[] out) {
+      for (int j = 0; j < red.length; j++) {
+        out[j] = RGBImagePixel.pack(round(red[j]), round(green[j]), round(blue[j]));
+      }
+    }
+
+    private static int round(double sum) {
+      return (int) Math.round(Math.min(Math.max(sum, 0), 255));
+    }
+  }
+
+  /**
+   * Per-channel integer accumulators for one output row, holding sums scaled by
+   * {@code 2^shift}.
+   */
+  private static final class FixedSums {
+    private final int[] red;
+    private final int[] green;
+    private final int[] blue;
+
+    private FixedSums(int columns) {
+      red = new int[columns];
+      green = new int[columns];
+      blue = new int[columns];
+    }
+
+    private void clear() {
+      Arrays.fill(red, 0);
+      Arrays.fill(green, 0);
+      Arrays.fill(blue, 0);
+    }
+
+    private void pack(int[] out, int shift) {
+      // Math.round(sum / 2^shift) is floor((sum + 2^(shift - 1)) / 2^shift)
+      int half = (1 << shift) >> 1;
+      for (int j = 0; j < red.length; j++) {
+        int newRed = Math.max(0, Math.min(255, (red[j] + half) >> shift));
+        int newGreen = Math.max(0, Math.min(255, (green[j] + half) >> shift));
+        int newBlue = Math.max(0, Math.min(255, (blue[j] + half) >> shift));
+        out[j] = (newRed << 16) | (newGreen << 8) | newBlue;
+      }
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package model;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Allocates and frees the direct (off-heap) buffers used by {@link OffHeapRGBImage}, and unmaps
+ * the file mappings used by {@link MappedTiledRGBImage}.
+ *
+ * <p>A direct buffer is normally freed only after the garbage collector notices that it is
+ * unreachable, which may be much later than the image holding it is discarded. {@link #free}
+ * releases the native memory right away through the JDK's buffer cleaner. If the cleaner cannot
+ * be reached on the running JVM, the buffer is left to the garbage collector instead.
+ */
+final class DirectBuffers {
+
+  private static final Object UNSAFE;
+  private static final Method INVOKE_CLEANER;
+
+  // Bytes currently held by buffers from allocate() that have not been passed to free()
+  private static final AtomicLong ALLOCATED = new AtomicLong();
+
+  static {
+    Object unsafe = null;
+    Method invokeCleaner = null;
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field field = unsafeClass.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      unsafe = field.get(null);
+      invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      unsafe = null;
+      invokeCleaner = null;
+    }
+    UNSAFE = unsafe;
+    INVOKE_CLEANER = invokeCleaner;
+  }
+
+  private DirectBuffers() {
+  }
+
+  /**
+   * Allocates a zero-filled direct buffer in native byte order.
+   *
+   * @param bytes the capacity of the buffer.
+   * @return the new buffer.
+   */
+  static ByteBuffer allocate(int bytes) {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    ALLOCATED.addAndGet(bytes);
+    return buffer;
+  }
+
+  /**
+   * Frees the native memory of a buffer returned by {@link #allocate}. The buffer, and every view
+   * of it, must not be used afterwards.
+   *
+   * @param buffer the buffer to free.
+   */
+  static void free(ByteBuffer buffer) {
+    ALLOCATED.addAndGet(-buffer.capacity());
+    clean(buffer);
+  }
+
+  /**
+   * Unmaps a buffer returned by {@code FileChannel.map}. The buffer, and every view of it, must
+   * not be used afterwards.
+   *
+   * @param buffer the mapped buffer to unmap.
+   */
+  static void unmap(ByteBuffer buffer) {
+    clean(buffer);
+  }
+
+  private static void clean(ByteBuffer buffer) {
+    if (INVOKE_CLEANER != null) {
+      try {
+        INVOKE_CLEANER.invoke(UNSAFE, buffer);
+      } catch (ReflectiveOperationException e) {
+        // The garbage collector will free the buffer once it becomes unreachable
+      }
+    }
+  }
+
+  /**
+   * Returns the number of bytes held by buffers that have been allocated but not yet freed.
+   *
+   * @return the outstanding off-heap bytes.
+   */
+  static long allocatedBytes() {
+    return ALLOCATED.get();
+  }
+}
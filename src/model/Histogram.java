@@ -0,0 +1,271 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * The {@code Histogram} class holds the number of pixels of an image at each of the 256 values of
+ * its red, green and blue channels. All three channels are counted in a single row-major pass
+ * over the image. Each band of rows counts into bins of its own, which are added up once the band
+ * is done, so threads never contend on a shared bin.
+ *
+ * <p>Histograms are immutable. The counts are returned as copies.
+ */
+public final class Histogram {
+
+  private static final int LEVELS = 256;
+
+  private final int[] red;
+  private final int[] green;
+  private final int[] blue;
+
+  /**
+   * Counts pixels as they go by, for code that already reads every row, such as loading an
+   * image. A counter is used by one thread only.
+   */
+  static final class Counter {
+    private final int[] red = new int[LEVELS];
+    private final int[] green = new int[LEVELS];
+    private final int[] blue = new int[LEVELS];
+
+    /**
+     * Counts the first pixels of a row.
+     *
+     * @param row    the packed {@code 0xRRGGBB} pixels.
+     * @param length the number of pixels to count.
+     */
+    void add(int[] row, int length) {
+      for (int j = 0; j < length; j++) {
+        add(row[j]);
+      }
+    }
+
+    /**
+     * Counts one pixel.
+     *
+     * @param rgb the packed {@code 0xRRGGBB} pixel.
+     */
+    void add(int rgb) {
+      red[RGBImagePixel.red(rgb)]++;
+      green[RGBImagePixel.green(rgb)]++;
+      blue[RGBImagePixel.blue(rgb)]++;
+    }
+
+    /**
+     * Adds the counts of another counter to this one.
+     *
+     * @param other the counter to add.
+     */
+    void add(Counter other) {
+      Histogram.add(red, other.red);
+      Histogram.add(green, other.green);
+      Histogram.add(blue, other.blue);
+    }
+
+    /**
+     * Returns the histogram of the pixels counted so far.
+     *
+     * @return the histogram.
+     */
+    Histogram toHistogram() {
+      return new Histogram(red.clone(), green.clone(), blue.clone());
+    }
+  }
+
+  Histogram(int[] red, int[] green, int[] blue) {
+    this.red = red;
+    this.green = green;
+    this.blue = blue;
+  }
+
+  /**
+   * Counts the values of the first columns of an image.
+   *
+   * @param image      the image to count.
+   * @param lastColumn the last column that is counted.
+   * @return the histogram of those columns.
+   */
+  static Histogram of(AbstractImage image, int lastColumn) {
+    int width = image.getWidth();
+    int columns = Math.min(lastColumn, width - 1) + 1;
+    Counter total = new Counter();
+    Parallelism.forEachBand(image.getHeight(), width, (from, to) -> {
+      Counter band = new Counter();
+      int[] row = new int[width];
+      for (int i = from; i < to; i++) {
+        image.readRow(i, row);
+        band.add(row, columns);
+      }
+      synchronized (total) {
+        total.add(band);
+      }
+    });
+    return total.toHistogram();
+  }
+
+  /**
+   * Adds the counts of one band to the totals.
+   *
+   * @param total the totals.
+   * @param band  the counts of the band.
+   */
+  static void add(int[] total, int[] band) {
+    for (int v = 0; v < LEVELS; v++) {
+      total[v] += band[v];
+    }
+  }
+
+  /**
+   * Returns the histogram of the image after a tone curve is applied to every pixel: each count
+   * moves to the bin its value is mapped to, so no pixel is read.
+   *
+   * @param curve the curve applied to the image.
+   * @return the histogram of the result.
+   */
+  Histogram remap(ToneCurve curve) {
+    int[][] tables = curve.tables();
+    return new Histogram(remap(red, tables[0]), remap(green, tables[1]), remap(blue, tables[2]));
+  }
+
+  private static int[] remap(int[] counts, int[] table) {
+    int[] result = new int[LEVELS];
+    for (int v = 0; v < LEVELS; v++) {
+      result[table[v]] += counts[v];
+    }
+    return result;
+  }
+
+  /**
+   * Returns the histogram of the image after some of its pixels are replaced, given the counts
+   * of the pixels before and after the change.
+   *
+   * @param removed the counts of the replaced pixels.
+   * @param added   the counts of the pixels that replaced them.
+   * @return the histogram of the result.
+   */
+  Histogram replace(Histogram removed, Histogram added) {
+    return new Histogram(replace(red, removed.red, added.red),
+            replace(green, removed.green, added.green), replace(blue, removed.blue, added.blue));
+  }
+
+  private static int[] replace(int[] counts, int[] removed, int[] added) {
+    int[] result = counts.clone();
+    for (int v = 0; v < LEVELS; v++) {
+      result[v] += added[v] - removed[v];
+    }
+    return result;
+  }
+
+  /**
+   * Returns the histogram of the greyscale image made from one channel, in which every channel
+   * holds that channel's values.
+   *
+   * @param color the extracted channel.
+   * @return the histogram of the greyscale image.
+   */
+  Histogram channel(AbstractImage.Channel color) {
+    int[] counts;
+    switch (color) {
+      case RED:
+        counts = red;
+        break;
+      case GREEN:
+        counts = green;
+        break;
+      default:
+        counts = blue;
+        break;
+    }
+    return new Histogram(counts, counts, counts);
+  }
+
+  /**
+   * Returns the counts of the red channel.
+   *
+   * @return 256 counts, indexed by value.
+   */
+  public int[] getRed() {
+    return red.clone();
+  }
+
+  /**
+   * Returns the counts of the green channel.
+   *
+   * @return 256 counts, indexed by value.
+   */
+  public int[] getGreen() {
+    return green.clone();
+  }
+
+  /**
+   * Returns the counts of the blue channel.
+   *
+   * @return 256 counts, indexed by value.
+   */
+  public int[] getBlue() {
+    return blue.clone();
+  }
+
+  /**
+   * Formats the counts as CSV, with a header row and then one row per value.
+   *
+   * @return the CSV text, ending with a newline.
+   */
+  public String toCsv() {
+    StringBuilder sb = new StringBuilder("value,red,green,blue\n");
+    for (int v = 0; v < LEVELS; v++) {
+      sb.append(v).append(',').append(red[v]).append(',').append(green[v]).append(',')
+              .append(blue[v]).append('\n');
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Formats the counts as a JSON object with one array of 256 counts per channel.
+   *
+   * @return the JSON text.
+   */
+  public String toJson() {
+    return "{\"red\":" + Arrays.toString(red).replace(" ", "")
+            + ",\"green\":" + Arrays.toString(green).replace(" ", "")
+            + ",\"blue\":" + Arrays.toString(blue).replace(" ", "") + "}";
+  }
+
+  /**
+   * Returns the most frequent value of the red channel, the lowest one if several are tied.
+   *
+   * @return the peak value.
+   */
+  int redPeak() {
+    return peak(red);
+  }
+
+  /**
+   * Returns the most frequent value of the green channel, the lowest one if several are tied.
+   *
+   * @return the peak value.
+   */
+  int greenPeak() {
+    return peak(green);
+  }
+
+  /**
+   * Returns the most frequent value of the blue channel, the lowest one if several are tied.
+   *
+   * @return the peak value.
+   */
+  int bluePeak() {
+    return peak(blue);
+  }
+
+  private static int peak(int[] counts) {
+    int maxCount = 0;
+    int peak = 0;
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] > maxCount) {
+        maxCount = counts[i];
+        peak = i;
+      }
+    }
+    return peak;
+  }
+}
@@ -0,0 +1,145 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * The {@code HistogramRenderer} class draws a {@link Histogram} as a line graph of its red, green
+ * and blue channels over a light grid on a white canvas. It rasterizes the lines itself, straight
+ * into a buffer of packed {@code 0xRRGGBB} pixels, so the graph is written into an image of the
+ * source's layout without going through a {@code Graphics2D} canvas and copying it back.
+ *
+ * <p>Each channel is scaled so that its most frequent value reaches the top of the canvas, either
+ * linearly or, in log-scale mode, by the logarithm of one more than each count, which keeps rare
+ * values visible next to a tall peak.
+ */
+final class HistogramRenderer {
+
+  private static final int BACKGROUND = 0xFFFFFF;
+  private static final int GRID = 0xC0C0C0;
+  private static final int GRID_SPACING = 10;
+  private static final int LEVELS = 256;
+
+  private final int width;
+  private final int height;
+  private final boolean logScale;
+
+  /**
+   * Constructs a renderer for canvases of the given size.
+   *
+   * @param width    the width of the canvas, at least 2.
+   * @param height   the height of the canvas, at least 1.
+   * @param logScale whether counts are scaled by their logarithm.
+   * @throws IllegalArgumentException if the canvas is too small.
+   */
+  HistogramRenderer(int width, int height, boolean logScale) {
+    if (width < 2 || height < 1) {
+      throw new IllegalArgumentException("Histogram canvas must be at least 2x1 pixels");
+    }
+    this.width = width;
+    this.height = height;
+    this.logScale = logScale;
+  }
+
+  /**
+   * Returns the width of the canvas.
+   *
+   * @return the width in pixels.
+   */
+  int getWidth() {
+    return width;
+  }
+
+  /**
+   * Returns the height of the canvas.
+   *
+   * @return the height in pixels.
+   */
+  int getHeight() {
+    return height;
+  }
+
+  /**
+   * Draws the histogram.
+   *
+   * @param histogram the counts to draw.
+   * @return the row-major canvas, one packed {@code 0xRRGGBB} value per pixel.
+   */
+  int[] render(Histogram histogram) {
+    int[] canvas = new int[width * height];
+    Arrays.fill(canvas, BACKGROUND);
+    for (int x = 0; x < width; x += GRID_SPACING) {
+      line(canvas, x, 0, x, height - 1, GRID);
+    }
+    for (int y = 0; y < height; y += GRID_SPACING) {
+      line(canvas, 0, y, width - 1, y, GRID);
+    }
+    graph(canvas, histogram.getRed(), 0xFF0000);
+    graph(canvas, histogram.getGreen(), 0x00FF00);
+    graph(canvas, histogram.getBlue(), 0x0000FF);
+    return canvas;
+  }
+
+  /**
+   * Draws one channel as a line through the scaled count of each value.
+   */
+  private void graph(int[] canvas, int[] counts, int color) {
+    int max = 0;
+    for (int count : counts) {
+      max = Math.max(max, count);
+    }
+    int previousX = 0;
+    int previousY = y(counts[0], max);
+    for (int v = 1; v < LEVELS; v++) {
+      int x = (int) ((long) v * (width - 1) / (LEVELS - 1));
+      int y = y(counts[v], max);
+      line(canvas, previousX, previousY, x, y, color);
+      previousX = x;
+      previousY = y;
+    }
+  }
+
+  /**
+   * Returns the row a count is drawn at, the bottom row for no pixels and the top row for the
+   * most frequent value.
+   */
+  private int y(int count, int max) {
+    if (max == 0) {
+      return height - 1;
+    }
+    double scaled = logScale
+            ? Math.log1p(count) / Math.log1p(max)
+            : (double) count / max;
+    return height - 1 - (int) Math.round(scaled * (height - 1));
+  }
+
+  /**
+   * Draws a one pixel wide line between two points with Bresenham's algorithm, skipping any
+   * pixels outside the canvas.
+   */
+  private void line(int[] canvas, int x0, int y0, int x1, int y1, int color) {
+    int dx = Math.abs(x1 - x0);
+    int dy = -Math.abs(y1 - y0);
+    int stepX = x0 < x1 ? 1 : -1;
+    int stepY = y0 < y1 ? 1 : -1;
+    int error = dx + dy;
+    int x = x0;
+    int y = y0;
+    while (true) {
+      if (x >= 0 && x < width && y >= 0 && y < height) {
+        canvas[y * width + x] = color;
+      }
+      if (x == x1 && y == y1) {
+        return;
+      }
+      int doubled = 2 * error;
+      if (doubled >= dy) {
+        error += dy;
+        x += stepX;
+      }
+      if (doubled <= dx) {
+        error += dx;
+        y += stepY;
+      }
+    }
+  }
+}
@@ -2,6 +2,7 @@ package model;
 
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.util.function.Supplier;
 
 /**
  * The {@code IModel} interface represents the model component in the MVC architecture.
@@ -30,6 +31,43 @@ public interface IModel {
    */
   BufferedImage getImage(String imageName) throws IOException;
 
+  /**
+   * Loads an image directly from a file and stores it under the specified name. Images that are
+   * too large for the heap are decoded band by band into a memory-mapped tiled store instead of
+   * being read into a single {@link BufferedImage}.
+   *
+   * @param filePath  the path of the image file.
+   * @param imageName the name to associate with the loaded image.
+   * @throws IOException if the file cannot be read.
+   */
+  void loadImageFile(String filePath, String imageName) throws IOException;
+
+  /**
+   * Loads an image from a file at a reduced size and stores it under the specified name. Only
+   * {@code .haar} files can be reduced; they are decoded from their coarse coefficients only, so
+   * the cost follows the size of the result.
+   *
+   * @param filePath  the path of the image file.
+   * @param imageName the name to associate with the loaded image.
+   * @param reduction the factor the width and height are divided by: 1, 2, 4, 8 or another power
+   *                  of 2.
+   * @throws IOException              if the file cannot be read.
+   * @throws IllegalArgumentException if the reduction is not a power of 2, or the file cannot be
+   *                                  reduced by it.
+   */
+  void loadImageFile(String filePath, String imageName, int reduction) throws IOException;
+
+  /**
+   * Saves a stored image to a file, picking the format from the file extension. Formats whose
+   * writer requests the image one row at a time are written without copying the whole image.
+   *
+   * @param imageName  the name of the image to save.
+   * @param outputPath the path of the file to write.
+   * @return true if the image exists and was handed to a writer, false otherwise.
+   * @throws IOException if the file cannot be written.
+   */
+  boolean saveImageFile(String imageName, String outputPath) throws IOException;
+
   /**
    * Adjusts the brightness of a stored image by the given value.
    *
@@ -61,6 +99,28 @@ public interface IModel {
    */
   void createHistogram(String sourceImageName, String targetImageName) throws IOException;
 
+  /**
+   * Generates a histogram graph of the specified image on a canvas of the given size.
+   *
+   * @param sourceImageName the name of the source image.
+   * @param targetImageName the name under which the histogram will be stored.
+   * @param width           the width of the canvas, at least 2.
+   * @param height          the height of the canvas, at least 1.
+   * @param logScale        whether counts are drawn on a logarithmic scale.
+   * @throws IOException if an error occurs while generating the histogram.
+   */
+  void createHistogram(String sourceImageName, String targetImageName, int width, int height,
+                       boolean logScale) throws IOException;
+
+  /**
+   * Returns the counts of each red, green and blue value of the specified image.
+   *
+   * @param imageName the name of the image.
+   * @return the histogram of the image.
+   * @throws IllegalArgumentException if no image has that name.
+   */
+  Histogram getHistogram(String imageName);
+
   /**
    * Applies color correction to the specified image and stores it under a new name.
    *
@@ -83,6 +143,18 @@ public interface IModel {
   void adjustLevels(int shadow, int mid, int highlight, String sourceImageName,
                     String targetImageName, int splitPercentage);
 
+  /**
+   * Applies a tone curve, such as gamma, contrast, curves or invert, to the specified image and
+   * stores the result under the target name.
+   *
+   * @param curve           the tone curve to apply.
+   * @param sourceImageName the name of the source image.
+   * @param targetImageName the name under which the adjusted image will be stored.
+   * @param splitPercentage the split percentage for the tone curve.
+   */
+  void applyTone(ToneCurve curve, String sourceImageName, String targetImageName,
+                 int splitPercentage);
+
   /**
    * Combines the RGB components into a single image and stores the result.
    *
@@ -114,6 +186,30 @@ public interface IModel {
    */
   void compress(int percentage, String imageName, String outputPath);
 
+  /**
+   * Compresses an image by a given percentage and stores the result under a specified path,
+   * taking the threshold either for each channel on its own or over all channels together.
+   *
+   * @param percentage the percentage to compress the image by.
+   * @param imageName  the name of the image to compress.
+   * @param outputPath the path where the compressed image will be saved.
+   * @param joint      whether the threshold is taken over all channels together.
+   */
+  void compress(int percentage, String imageName, String outputPath, boolean joint);
+
+  /**
+   * Compresses an image like {@link #compress(int, String, String)}, in steps, so that the
+   * compression itself can run off the thread that uses the model. The image is evaluated on the
+   * calling thread. The returned compression only reads that image, so it may run on any thread,
+   * and returns the step that stores its result, which must run on the calling thread.
+   *
+   * @param percentage the percentage to compress the image by.
+   * @param imageName  the name of the image to compress.
+   * @param outputPath the name to store the compressed image under.
+   * @return the compression.
+   */
+  Supplier<Runnable> prepareCompress(int percentage, String imageName, String outputPath);
+
   void downscale(String sourceImageName, String targetImageName, int newWidth,
                  int newHeight);
 
@@ -121,4 +217,18 @@ public interface IModel {
                                   String maskImage, String destImage);
 
   void resetToOriginal(String imageName, String originalImage);
+
+  /**
+   * Returns the number of operations whose result was found in the cache.
+   *
+   * @return the cache hit count.
+   */
+  long getCacheHits();
+
+  /**
+   * Returns the number of operations whose result was looked up in the cache and not found.
+   *
+   * @return the cache miss count.
+   */
+  long getCacheMisses();
 }
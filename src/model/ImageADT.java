@@ -183,6 +183,16 @@ public interface ImageADT {
    */
   public ImageADT compressImage(int threshold);
 
+  /**
+   * Compresses the image based on a given threshold, taking the threshold either for each
+   * channel on its own or over the coefficients of all channels together.
+   *
+   * @param threshold the compression threshold.
+   * @param joint     whether the threshold is taken over all channels together.
+   * @return a new {@code ImageADT} instance representing the compressed image.
+   */
+  public ImageADT compressImage(int threshold, boolean joint);
+
   /**
    * Applies color correction to the image by adjusting the color balance
    * across all channels (red, green, and blue) to produce a more accurate or
@@ -215,7 +225,24 @@ public interface ImageADT {
 
   public ImageADT adjustLevels(int p);
 
+  /**
+   * Applies a tone curve to each channel of the image up to a specified width percentage. Tone
+   * curves compile brightness-style operations such as gamma, contrast, curves and invert to
+   * lookup tables.
+   *
+   * @param curve the tone curve to apply.
+   * @param p     the percentage of the image width to apply the curve to (0-100).
+   * @return a new {@code ImageADT} instance with the curve applied.
+   */
+  public ImageADT applyTone(ToneCurve curve, int p);
+
   public ImageADT downscale(int newWidth, int newHeight);
 
   public ImageADT applyPartialWithMasking(ImageADT maskingImage, String effectType);
+
+  /**
+   * Frees any memory this image holds outside the Java heap. The image must not be used after it
+   * has been released. Images stored on the heap have nothing to free and ignore this call.
+   */
+  public void release();
 }
@@ -1,9 +1,30 @@
 package model;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 
 /**
  * The ImageModel class represents a model for handling images.
@@ -11,16 +32,134 @@ import java.util.Map;
  * and manipulate images stored in the model's internal map.
  * The images are stored in a map with their associated names, and operations can be
  * performed on these images based on their names.
+ *
+ * <p>Each named image is an {@link ImageNode}: a loaded image, or an operation with its parameters
+ * applied to other nodes. By default every operation is evaluated as soon as it is given. In
+ * deferred mode operations are only recorded, and a node is evaluated when its image is read with
+ * {@link #getImage(String)} or saved, together with the nodes it depends on. Images a script never
+ * reads are then never computed, consecutive pointwise operations run as one pipeline, and an
+ * operation given again with the same parameters and sources reuses the existing node. Errors
+ * raised by an operation itself, rather than by the checks made here, surface when the image is
+ * evaluated.
+ *
+ * <p>In both modes the results of operations are kept in a {@link ResultCache} of bounded size,
+ * keyed by the pixel hashes of the loaded images they derive from and the operations and
+ * parameters that produced them. An operation whose result is cached is not computed again,
+ * however its sources were named.
  */
 public class ImageModel implements IModel {
 
-  private final Map<String, ImageADT> images;
+  /**
+   * The default number of pixels at which loaded images are moved off the Java heap. At four
+   * bytes per pixel this is 256 MiB of pixel data.
+   */
+  public static final long DEFAULT_OFF_HEAP_THRESHOLD = 64L * 1024 * 1024;
+
+  /**
+   * The default number of pixels at which loaded images are kept in a memory-mapped tiled file
+   * instead of in memory. At four bytes per pixel this is 2 GiB of pixel data.
+   */
+  public static final long DEFAULT_TILED_THRESHOLD = 512L * 1024 * 1024;
+
+  /**
+   * The default total size of the operation results the model caches, counted at four bytes per
+   * pixel: 256 MiB.
+   */
+  public static final long DEFAULT_CACHE_BYTES = 256L * 1024 * 1024;
+
+  private final Map<String, ImageNode> images;
+  // BufferedImage copies handed out by getImage, keyed by image identity
+  private final Map<ImageADT, BufferedImage> renderedImages;
+  // Nodes of deferred mode by key, so that repeated operations reuse them
+  private final Map<ImageNode.Key, ImageNode> subexpressions;
+  private final ResultCache cache;
+  // Nodes no longer stored under a name that unevaluated nodes may still need
+  private final Set<ImageNode> detached;
+  private final ImageStorage storage;
+  private final long offHeapThreshold;
+  private final long tiledThreshold;
+  private final boolean deferred;
 
   /**
    * Constructs an empty ImageModel object, initializing an empty map to store images.
+   * Loaded images use the packed storage layout.
    */
   public ImageModel() {
+    this(ImageStorage.PACKED);
+  }
+
+  /**
+   * Constructs an empty ImageModel object whose loaded images use the given storage layout.
+   * Images of {@link #DEFAULT_OFF_HEAP_THRESHOLD} pixels or more are stored off-heap instead.
+   *
+   * @param storage the pixel storage layout for loaded images.
+   */
+  public ImageModel(ImageStorage storage) {
+    this(storage, DEFAULT_OFF_HEAP_THRESHOLD);
+  }
+
+  /**
+   * Constructs an empty ImageModel object whose loaded images use the given storage layout,
+   * except that images with at least {@code offHeapThreshold} pixels are stored off-heap.
+   *
+   * @param storage          the pixel storage layout for loaded images.
+   * @param offHeapThreshold the pixel count from which images are stored off-heap.
+   */
+  public ImageModel(ImageStorage storage, long offHeapThreshold) {
+    this(storage, offHeapThreshold, DEFAULT_TILED_THRESHOLD);
+  }
+
+  /**
+   * Constructs an empty ImageModel object whose loaded images use the given storage layout,
+   * except that images with at least {@code offHeapThreshold} pixels are stored off-heap, and
+   * images with at least {@code tiledThreshold} pixels in a memory-mapped tiled file.
+   *
+   * @param storage          the pixel storage layout for loaded images.
+   * @param offHeapThreshold the pixel count from which images are stored off-heap.
+   * @param tiledThreshold   the pixel count from which images are stored in a tiled file.
+   */
+  public ImageModel(ImageStorage storage, long offHeapThreshold, long tiledThreshold) {
+    this(storage, offHeapThreshold, tiledThreshold, false);
+  }
+
+  /**
+   * Constructs an empty ImageModel object like
+   * {@link #ImageModel(ImageStorage, long, long)}, which evaluates operations only when their
+   * images are read or saved if {@code deferred} is set.
+   *
+   * @param storage          the pixel storage layout for loaded images.
+   * @param offHeapThreshold the pixel count from which images are stored off-heap.
+   * @param tiledThreshold   the pixel count from which images are stored in a tiled file.
+   * @param deferred         whether operations are evaluated only when needed.
+   */
+  public ImageModel(ImageStorage storage, long offHeapThreshold, long tiledThreshold,
+                    boolean deferred) {
+    this(storage, offHeapThreshold, tiledThreshold, deferred, DEFAULT_CACHE_BYTES);
+  }
+
+  /**
+   * Constructs an empty ImageModel object like
+   * {@link #ImageModel(ImageStorage, long, long, boolean)}, whose operation results are cached up
+   * to a total of {@code cacheBytes}.
+   *
+   * @param storage          the pixel storage layout for loaded images.
+   * @param offHeapThreshold the pixel count from which images are stored off-heap.
+   * @param tiledThreshold   the pixel count from which images are stored in a tiled file.
+   * @param deferred         whether operations are evaluated only when needed.
+   * @param cacheBytes       the total size of cached results at four bytes per pixel, or 0 to
+   *                         cache nothing.
+   */
+  public ImageModel(ImageStorage storage, long offHeapThreshold, long tiledThreshold,
+                    boolean deferred, long cacheBytes) {
     this.images = new HashMap<>();
+    this.renderedImages = new IdentityHashMap<>();
+    this.subexpressions = new HashMap<>();
+    this.cache = new ResultCache(cacheBytes);
+    this.detached = Collections.newSetFromMap(new IdentityHashMap<>());
+    this.storage = storage;
+    this.offHeapThreshold = offHeapThreshold;
+    this.tiledThreshold = tiledThreshold;
+    this.deferred = deferred;
   }
 
   /**
@@ -31,27 +170,177 @@ public class ImageModel implements IModel {
    * @throws IOException if an error occurs while reading the image.
    */
   public void loadImage(BufferedImage bf, String imageName) throws IOException {
-    ImageADT image = new RGBImage();
+    ImageADT image = storageFor(bf.getWidth(), bf.getHeight()).newImage();
     image.loadImage(bf); // Delegate reading data to the image's loadImage method
-    images.put(imageName, image); // Store in model’s map with the associated name
+    store(imageName, new ImageNode(image)); // Store in model’s map with the associated name
+  }
+
+  /**
+   * Returns the layout a loaded image of the given size is kept in.
+   *
+   * @param width  the width of the image.
+   * @param height the height of the image.
+   * @return the tiled or off-heap layout for large images, the model's layout otherwise.
+   */
+  private ImageStorage storageFor(int width, int height) {
+    long pixelCount = (long) width * height;
+    if (pixelCount >= tiledThreshold) {
+      return ImageStorage.TILED;
+    } else if (pixelCount >= offHeapThreshold) {
+      return ImageStorage.OFFHEAP;
+    }
+    return storage;
   }
 
   /**
    * Saves an image to an Appendable (such as a Writer) based on the given image name.
+   * Stored images never change, so the {@link BufferedImage} built for an image is cached and
+   * returned again by later calls. Callers must not modify it.
    *
    * @param imageName the name of the image to save.
    * @return the BufferedImage object of the saved image.
    * @throws IOException if an error occurs while saving the image.
    */
   public BufferedImage getImage(String imageName) throws IOException {
-    ImageADT image = images.get(imageName);
-    if (image == null) {
+    ImageNode node = images.get(imageName);
+    if (node == null) {
       System.out.println("Error: Image with name '" + imageName + "' does not exist.");
       return null;  // Return null if the image doesn't exist
     }
-    return image.getImage(imageName);
+    return render(evaluate(node), imageName);
   }
 
+  /**
+   * Returns the {@link BufferedImage} for a stored image, building it on first use. Images large
+   * enough to be kept off-heap are not cached, as the copy would bring them back onto the heap.
+   *
+   * @param image     the stored image.
+   * @param imageName the name of the image.
+   * @return the image as a {@link BufferedImage}.
+   * @throws IOException if the image cannot be converted.
+   */
+  private BufferedImage render(ImageADT image, String imageName) throws IOException {
+    BufferedImage rendered = renderedImages.get(image);
+    if (rendered == null) {
+      rendered = image.getImage(imageName);
+      if ((long) rendered.getWidth() * rendered.getHeight() < offHeapThreshold) {
+        renderedImages.put(image, rendered);
+      }
+    }
+    return rendered;
+  }
+
+
+  /**
+   * Loads an image directly from a file and stores it under the specified name. PPM files are
+   * read with {@link ImageUtil}, and {@code .haar} files are decoded by {@link WaveletCodec} into
+   * the layout a loaded image of their size would use. For other formats the image size is read
+   * from the file header first: an image with at least the tiled threshold of pixels is decoded
+   * band by band into a {@link MappedTiledRGBImage}, and any other image is decoded whole and
+   * loaded as usual.
+   *
+   * @param filePath  the path of the image file.
+   * @param imageName the name to associate with the loaded image.
+   * @throws IOException if the file cannot be read.
+   */
+  public void loadImageFile(String filePath, String imageName) throws IOException {
+    if (filePath.contains(".ppm")) {
+      loadImage(ImageUtil.readPPM(filePath), imageName);
+      return;
+    }
+    if (filePath.toLowerCase().endsWith(WaveletCodec.EXTENSION)) {
+      loadImageFile(filePath, imageName, 1);
+      return;
+    }
+    BufferedImage bufferedImage = null;
+    try (ImageInputStream input = ImageIO.createImageInputStream(new File(filePath))) {
+      Iterator<ImageReader> readers = input == null
+              ? null
+              : ImageIO.getImageReaders(input);
+      if (readers != null && readers.hasNext()) {
+        ImageReader reader = readers.next();
+        try {
+          // Not seek-forward-only: a tiled load decodes the file once per band
+          reader.setInput(input, false, true);
+          if ((long) reader.getWidth(0) * reader.getHeight(0) >= tiledThreshold) {
+            store(imageName, new ImageNode(MappedTiledRGBImage.read(reader)));
+            return;
+          }
+          bufferedImage = reader.read(0, reader.getDefaultReadParam());
+        } finally {
+          reader.dispose();
+        }
+      }
+    }
+    loadImage(bufferedImage, imageName);
+  }
+
+  /**
+   * Loads an image from a file at a reduced size and stores it under the specified name. Only
+   * {@code .haar} files can be reduced: {@link WaveletCodec} reads just the coefficients of the
+   * reduced image, whose pixels are the averages of the blocks of the full image they cover.
+   *
+   * @param filePath  the path of the image file.
+   * @param imageName the name to associate with the loaded image.
+   * @param reduction the factor the width and height are divided by, a power of 2.
+   * @throws IOException              if the file cannot be read.
+   * @throws IllegalArgumentException if the reduction is not a power of 2, or the file cannot be
+   *                                  reduced by it.
+   */
+  public void loadImageFile(String filePath, String imageName, int reduction)
+          throws IOException {
+    if (reduction < 1 || Integer.bitCount(reduction) != 1) {
+      throw new IllegalArgumentException("Reduction must be a power of 2");
+    }
+    if (!filePath.toLowerCase().endsWith(WaveletCodec.EXTENSION)) {
+      if (reduction != 1) {
+        throw new IllegalArgumentException("Only " + WaveletCodec.EXTENSION
+                + " files can be loaded at a reduced size");
+      }
+      loadImageFile(filePath, imageName);
+      return;
+    }
+    try (InputStream input = new BufferedInputStream(
+            Files.newInputStream(Paths.get(filePath)))) {
+      store(imageName, new ImageNode(WaveletCodec.read(input,
+          (width, height) -> storageFor(width, height).newImage(width, height),
+          Integer.numberOfTrailingZeros(reduction))));
+    }
+  }
+
+  /**
+   * Saves a stored image to a file, picking the format from the file extension. {@code .haar}
+   * files are encoded by {@link WaveletCodec} straight from the image's rows. Images in a
+   * {@link MappedTiledRGBImage} are handed to the writer as a {@link RowRenderedImage}, so writers
+   * that request one row at a time never need the whole image in memory; other images are
+   * converted to a {@link BufferedImage} first.
+   *
+   * @param imageName  the name of the image to save.
+   * @param outputPath the path of the file to write.
+   * @return true if the image exists and was handed to a writer, false otherwise.
+   * @throws IOException if the file cannot be written.
+   */
+  public boolean saveImageFile(String imageName, String outputPath) throws IOException {
+    ImageNode node = images.get(imageName);
+    if (node == null) {
+      System.out.println("Error: Image with name '" + imageName + "' does not exist.");
+      return false;
+    }
+    ImageADT image = evaluate(node);
+    if (outputPath.toLowerCase().endsWith(WaveletCodec.EXTENSION)) {
+      try (OutputStream output = new BufferedOutputStream(
+              Files.newOutputStream(Paths.get(outputPath)))) {
+        WaveletCodec.write((AbstractImage) image, output);
+      }
+      return true;
+    }
+    RenderedImage rendered = image instanceof MappedTiledRGBImage
+            ? new RowRenderedImage((AbstractImage) image)
+            : render(image, imageName);
+    String filetype = outputPath.substring(outputPath.lastIndexOf('.') + 1).toLowerCase();
+    ImageIO.write(rendered, filetype, new File(outputPath));
+    return true;
+  }
 
   /**
    * Adjusts the brightness of a stored image by the given value and stores the result
@@ -62,7 +351,7 @@ public class ImageModel implements IModel {
    * @param targetImageName the name under which the brightened image will be stored.
    */
   public void brightenImage(String value, String sourceImageName, String targetImageName) {
-    ImageADT sourceImage = images.get(sourceImageName);
+    ImageNode sourceImage = images.get(sourceImageName);
     if (sourceImage == null) {
       // Throw a custom exception or print an error message and return
       System.out.println("Error: Source image '" + sourceImageName + "' not found.");
@@ -70,8 +359,8 @@ public class ImageModel implements IModel {
     }
 
     int brightnessValue = Integer.parseInt(value); // Parse brightness adjustment value
-    ImageADT brightenedImage = sourceImage.brightness(brightnessValue); // Adjust brightness
-    images.put(targetImageName, brightenedImage); // Store the brightened image
+    define(targetImageName, Arrays.asList("brighten", brightnessValue),
+        sources -> sources[0].brightness(brightnessValue), sourceImage);
   }
 
   /**
@@ -88,66 +377,63 @@ public class ImageModel implements IModel {
     if (splitPercentage < 0 || splitPercentage > 100) {
       throw new IllegalArgumentException("Percentage must be within 0 - 100");
     }
-    ImageADT sourceImage = images.get(sourceImageName);
+    ImageNode sourceImage = images.get(sourceImageName);
     if (sourceImage == null) {
       //throw new IllegalArgumentException("Source image '" + sourceImageName + "' not found.");
       System.out.println("Error: Source image '" + sourceImageName + "' not found.");
       return;
     }
 
-    ImageADT filteredImage;
+    ImageNode.Operation filteredImage;
     switch (filter) {
       case "sepia":
-        filteredImage = (splitPercentage != null)
-                ? sourceImage.convertToSepia(splitPercentage)
-                : sourceImage.convertToSepia();
+        filteredImage = sources -> (splitPercentage != null)
+                ? sources[0].convertToSepia(splitPercentage)
+                : sources[0].convertToSepia();
         break;
       case "grayscale":
-        filteredImage = (splitPercentage != null)
-                ? sourceImage.convertToGreyScale(splitPercentage)
-                : sourceImage.convertToGreyScale();
-        break;
       case "luma-component":
-        filteredImage = (splitPercentage != null)
-                ? sourceImage.convertToGreyScale(splitPercentage)
-                : sourceImage.convertToGreyScale();
+        filteredImage = sources -> (splitPercentage != null)
+                ? sources[0].convertToGreyScale(splitPercentage)
+                : sources[0].convertToGreyScale();
         break;
       case "blur":
-        filteredImage = (splitPercentage != null)
-                ? sourceImage.blur(splitPercentage)
-                : sourceImage.blur();
+        filteredImage = sources -> (splitPercentage != null)
+                ? sources[0].blur(splitPercentage)
+                : sources[0].blur();
         break;
       case "sharpen":
-        filteredImage = (splitPercentage != null)
-                ? sourceImage.sharpen(splitPercentage)
-                : sourceImage.sharpen();
+        filteredImage = sources -> (splitPercentage != null)
+                ? sources[0].sharpen(splitPercentage)
+                : sources[0].sharpen();
         break;
       case "flip":
-        filteredImage = sourceImage.flipVertical();
+        filteredImage = sources -> sources[0].flipVertical();
         break;
       case "value-component":
-        filteredImage = sourceImage.convertToValue();
+        filteredImage = sources -> sources[0].convertToValue();
         break;
       case "intensity-component":
-        filteredImage = sourceImage.convertToIntensity();
+        filteredImage = sources -> sources[0].convertToIntensity();
         break;
       case "horizontal-flip":
-        filteredImage = sourceImage.flipHorizontal();
+        filteredImage = sources -> sources[0].flipHorizontal();
         break;
       case "red-component":
-        filteredImage = sourceImage.createRed();
+        filteredImage = sources -> sources[0].createRed();
         break;
       case "green-component":
-        filteredImage = sourceImage.createGreen();
+        filteredImage = sources -> sources[0].createGreen();
         break;
       case "blue-component":
-        filteredImage = sourceImage.createBlue();
+        filteredImage = sources -> sources[0].createBlue();
         break;
       default:
         throw new UnsupportedOperationException("Invalid filter command: " + filter);
     }
 
-    images.put(targetImageName, filteredImage); // Store the filtered image
+    // Store the filtered image
+    define(targetImageName, Arrays.asList(filter, splitPercentage), filteredImage, sourceImage);
   }
 
   /**
@@ -158,6 +444,22 @@ public class ImageModel implements IModel {
    * @throws IOException if an error occurs while generating the histogram.
    */
   public void createHistogram(String sourceImageName, String targetImageName) throws IOException {
+    createHistogram(sourceImageName, targetImageName, 256, 256, false);
+  }
+
+  /**
+   * Generates a histogram graph of the specified image on a canvas of the given size. The graph
+   * is drawn straight into an image of the source's layout.
+   *
+   * @param sourceImageName the name of the source image.
+   * @param targetImageName the name under which the histogram will be stored.
+   * @param width           the width of the canvas, at least 2.
+   * @param height          the height of the canvas, at least 1.
+   * @param logScale        whether counts are drawn on a logarithmic scale.
+   * @throws IOException if an error occurs while generating the histogram.
+   */
+  public void createHistogram(String sourceImageName, String targetImageName, int width,
+                              int height, boolean logScale) throws IOException {
     if (!images.containsKey(sourceImageName)) {
       throw new IllegalArgumentException("Source image '" + sourceImageName + "' not found.");
     }
@@ -167,13 +469,31 @@ public class ImageModel implements IModel {
       System.out.println("Error: Source image '" + sourceImageName + "' not found.");
       return;
     }
-    ImageADT image = images.get(sourceImageName);
-    ImageADT hist = image.generateHistogram();
-    images.put(targetImageName, hist);
+    HistogramRenderer renderer = new HistogramRenderer(width, height, logScale);
+    define(targetImageName, Arrays.asList("histogram", width, height, logScale),
+        sources -> ((AbstractImage) sources[0]).generateHistogram(renderer),
+        images.get(sourceImageName));
 
     System.out.println("Histogram generated for image: " + sourceImageName);
   }
 
+  /**
+   * Returns the counts of each red, green and blue value of the specified image. The counts are
+   * kept with the image, so drawing its histogram or color correcting it afterwards does not
+   * count the pixels again.
+   *
+   * @param imageName the name of the image.
+   * @return the histogram of the image.
+   * @throws IllegalArgumentException if no image has that name.
+   */
+  public Histogram getHistogram(String imageName) {
+    ImageNode node = images.get(imageName);
+    if (node == null) {
+      throw new IllegalArgumentException("Image '" + imageName + "' not found.");
+    }
+    return ((AbstractImage) evaluate(node)).histogram();
+  }
+
   /**
    * Applies color correction to the specified image and stores it under a new name.
    *
@@ -192,16 +512,11 @@ public class ImageModel implements IModel {
       return;
     }
 
-    ImageADT inputImage = images.get(sourceImageName);
-    ImageADT colorImage;
-
-    if (splitPercentage == 100) {
-      colorImage = inputImage.colorCorrection();
-    } else {
-      colorImage = inputImage.colorCorrection(splitPercentage);
-    }
-
-    images.put(targetImageName, colorImage);
+    define(targetImageName, Arrays.asList("color-correct", splitPercentage),
+        sources -> splitPercentage == 100
+                ? sources[0].colorCorrection()
+                : sources[0].colorCorrection(splitPercentage),
+        images.get(sourceImageName));
     System.out.println("Color correction applied to image: "
             + targetImageName + " with split percentage: " + splitPercentage + "%");
   }
@@ -227,19 +542,41 @@ public class ImageModel implements IModel {
       throw new IllegalArgumentException("Percentage must be within 0 - 100");
     }
 
-    RGBImage inputImage = (RGBImage) images.get(sourceImageName);
-    ImageADT adjusted;
+    define(targetImageName, Arrays.asList("levels-adjust", shadow, mid, highlight, splitPercentage),
+        sources -> {
+          AbstractImage inputImage = (AbstractImage) sources[0];
+          inputImage.setLevels(shadow, mid, highlight);
+          return splitPercentage == 100
+                  ? inputImage.adjustLevels()
+                  : inputImage.adjustLevels(splitPercentage);
+        }, images.get(sourceImageName));
+    System.out.println("Levels adjustment applied to image: "
+            + targetImageName + " with split percentage: " + splitPercentage + "%");
+  }
 
-    inputImage.setLevels(shadow, mid, highlight);
+  /**
+   * Applies a tone curve, such as gamma, contrast, curves or invert, to the specified image and
+   * stores the result under the target name.
+   *
+   * @param curve           the tone curve to apply.
+   * @param sourceImageName the name of the source image.
+   * @param targetImageName the name under which the adjusted image will be stored.
+   * @param splitPercentage the split percentage for the tone curve.
+   */
+  public void applyTone(ToneCurve curve, String sourceImageName, String targetImageName,
+                        int splitPercentage) {
+    if (splitPercentage < 0 || splitPercentage > 100) {
+      throw new IllegalArgumentException("Percentage must be within 0 - 100");
+    }
 
-    if (splitPercentage == 100) {
-      adjusted = inputImage.adjustLevels();
-    } else {
-      adjusted = inputImage.adjustLevels(splitPercentage);
+    if (!images.containsKey(sourceImageName)) {
+      System.out.println("Error: Source image '" + sourceImageName + "' not found.");
+      return;
     }
 
-    images.put(targetImageName, adjusted);
-    System.out.println("Levels adjustment applied to image: "
+    define(targetImageName, Arrays.asList("tone", curve, splitPercentage),
+        sources -> sources[0].applyTone(curve, splitPercentage), images.get(sourceImageName));
+    System.out.println("Tone curve applied to image: "
             + targetImageName + " with split percentage: " + splitPercentage + "%");
   }
 
@@ -255,9 +592,9 @@ public class ImageModel implements IModel {
   public void rgbCombine(String targetImageName, String redImageName, String greenImageName,
                          String blueImageName) throws IllegalArgumentException {
 
-    RGBImage redImage = (RGBImage) images.get(redImageName);
-    RGBImage greenImage = (RGBImage) images.get(greenImageName);
-    RGBImage blueImage = (RGBImage) images.get(blueImageName);
+    ImageNode redImage = images.get(redImageName);
+    ImageNode greenImage = images.get(greenImageName);
+    ImageNode blueImage = images.get(blueImageName);
 
     if (redImage == null || greenImage == null || blueImage == null) {
       //throw new IllegalArgumentException("One or more component images not found.");
@@ -265,7 +602,10 @@ public class ImageModel implements IModel {
       return;
     }
 
-    images.put(targetImageName, RGBImage.rgbCombine(redImage, greenImage, blueImage));
+    define(targetImageName, Arrays.asList("rgb-combine"),
+        sources -> ((AbstractImage) sources[0]).combineChannels((AbstractImage) sources[1],
+                (AbstractImage) sources[2]),
+        redImage, greenImage, blueImage);
     System.out.println("RGB combine completed.");
   }
 
@@ -285,10 +625,13 @@ public class ImageModel implements IModel {
       System.out.println("Error: Source image '" + sourceImageName + "' not found.");
       return;
     }
-    ImageADT inputImage = images.get(sourceImageName);
-    images.put(redImageName, inputImage.createRed());
-    images.put(greenImageName, inputImage.createGreen());
-    images.put(blueImageName, inputImage.createBlue());
+    ImageNode inputImage = images.get(sourceImageName);
+    define(redImageName, Arrays.asList("red-component", null),
+        sources -> sources[0].createRed(), inputImage);
+    define(greenImageName, Arrays.asList("green-component", null),
+        sources -> sources[0].createGreen(), inputImage);
+    define(blueImageName, Arrays.asList("blue-component", null),
+        sources -> sources[0].createBlue(), inputImage);
     System.out.println("RGB split completed.");
   }
 
@@ -302,18 +645,58 @@ public class ImageModel implements IModel {
    */
   public void compress(int percentage, String imageName,
                        String outputPath) throws IllegalArgumentException {
+    compress(percentage, imageName, outputPath, false);
+  }
+
+  /**
+   * Compresses an image by a given percentage and stores the result under a specified path,
+   * taking the threshold either for each channel on its own or over all channels together.
+   *
+   * @param percentage the percentage to compress the image by.
+   * @param imageName  the name of the image to compress.
+   * @param outputPath the path where the compressed image will be saved.
+   * @param joint      whether the threshold is taken over all channels together.
+   * @throws IllegalArgumentException if the percentage is out of bounds or if image is not found.
+   */
+  public void compress(int percentage, String imageName,
+                       String outputPath, boolean joint) throws IllegalArgumentException {
 
     if (illegalArgumentChecks(percentage, imageName)) {
       return;
     }
 
-    ImageADT inputImage = images.get(imageName);
-    ImageADT compressed = inputImage.compressImage(percentage);
-
-    images.put(outputPath, compressed);
+    define(outputPath, Arrays.asList("compress", percentage, joint),
+        sources -> sources[0].compressImage(percentage, joint), images.get(imageName));
     System.out.println("Compression applied to image: " + outputPath);
   }
 
+  @Override
+  public Supplier<Runnable> prepareCompress(int percentage, String imageName,
+                                            String outputPath) {
+    if (illegalArgumentChecks(percentage, imageName)) {
+      return () -> () -> {
+      };
+    }
+    ImageNode source = images.get(imageName);
+    ImageADT image = evaluate(source);
+    return () -> {
+      ImageADT compressed = image.compressImage(percentage, false);
+      return () -> {
+        boolean[] used = new boolean[1];
+        define(outputPath, Arrays.asList("compress", percentage, false), sources -> {
+          used[0] = true;
+          return compressed;
+        }, source);
+        evaluate(images.get(outputPath));
+        if (!used[0]) {
+          // A cached or equal result was stored instead
+          compressed.release();
+        }
+        System.out.println("Compression applied to image: " + outputPath);
+      };
+    };
+  }
+
   private boolean illegalArgumentChecks(int percentage, String imageName) {
     if (percentage < 0 || percentage > 100) {
       throw new IllegalArgumentException("Percentage must be within 0 - 100");
@@ -342,27 +725,183 @@ public class ImageModel implements IModel {
    */
   public void downscale(String sourceImageName, String targetImageName, int newWidth,
                         int newHeight) {
-    try {
-      ImageADT toBeDownscaled = images.get(sourceImageName);
-      ImageADT downscaledImage = toBeDownscaled.downscale(newWidth, newHeight);
-      images.put(targetImageName, downscaledImage);
-      System.out.println("Image has been downscaled");
-    } catch (Exception e) {
-      throw new RuntimeException("Downscaling failed", e);
+    ImageNode toBeDownscaled = images.get(sourceImageName);
+    if (toBeDownscaled == null) {
+      throw new RuntimeException("Downscaling failed",
+              new IllegalArgumentException("Source image '" + sourceImageName + "' not found."));
     }
+    define(targetImageName, Arrays.asList("downscale", newWidth, newHeight), sources -> {
+      try {
+        return sources[0].downscale(newWidth, newHeight);
+      } catch (Exception e) {
+        throw new RuntimeException("Downscaling failed", e);
+      }
+    }, toBeDownscaled);
+    System.out.println("Image has been downscaled");
   }
 
   @Override
   public void applyPartialTransformation(String filterOperation, String sourceImage,
                                          String maskImage, String destImage) {
-    ImageADT inputImage = images.get(sourceImage);
-    ImageADT maskImageGiven = images.get(maskImage);
-    ImageADT transformed = inputImage.applyPartialWithMasking(maskImageGiven, filterOperation);
-    images.put(destImage, transformed);
+    define(destImage, Arrays.asList("partial", filterOperation),
+        sources -> sources[0].applyPartialWithMasking(sources[1], filterOperation),
+        images.get(sourceImage), images.get(maskImage));
   }
 
   public void resetToOriginal(String imageName, String originalImage) {
-    images.put(imageName, images.get(originalImage));
+    store(imageName, images.get(originalImage));
+  }
+
+  @Override
+  public long getCacheHits() {
+    return cache.hits();
+  }
+
+  @Override
+  public long getCacheMisses() {
+    return cache.misses();
+  }
+
+  /**
+   * Adds a node that applies an operation to the given source nodes and stores it under the
+   * given name. A cached result is used if there is one. Otherwise the node is evaluated right
+   * away, and its result cached, unless the model is in deferred mode, where an existing node
+   * with the same key is stored instead of a new one. Building the key hashes the pixels of
+   * loaded sources, so outside deferred mode it is skipped when the result could not be cached;
+   * the node is then keyed by its own pixels if a later operation needs its key.
+   *
+   * @param imageName the name to store the result under.
+   * @param key       the operation name and its parameters.
+   * @param operation the operation.
+   * @param sources   the nodes the operation is applied to.
+   */
+  private void define(String imageName, List<Object> key, ImageNode.Operation operation,
+                      ImageNode... sources) {
+    ImageNode.Key nodeKey = deferred || cache.mayHold(sources)
+            ? ImageNode.Key.of(key, sources) : null;
+    ImageNode node = deferred ? subexpressions.get(nodeKey) : null;
+    if (node == null) {
+      ImageADT cached = nodeKey == null ? null : cache.get(nodeKey);
+      if (cached != null) {
+        node = new ImageNode(nodeKey, cached);
+      } else {
+        node = new ImageNode(nodeKey, inputs -> {
+          ImageADT result = operation.apply(inputs);
+          if (nodeKey != null) {
+            releaseUnneeded(cache.put(nodeKey, result));
+          }
+          return result;
+        }, sources);
+      }
+      if (deferred) {
+        subexpressions.put(nodeKey, node);
+      } else {
+        node.evaluate();
+      }
+    }
+    store(imageName, node);
+  }
+
+  /**
+   * Evaluates a node, then releases the images that evaluation left unneeded.
+   *
+   * @param node the node to evaluate.
+   * @return the image of the node.
+   */
+  private ImageADT evaluate(ImageNode node) {
+    ImageADT image = node.evaluate();
+    if (!detached.isEmpty()) {
+      prune();
+    }
+    return image;
+  }
+
+  /**
+   * Stores a node under the given name. The node previously stored under that name is kept
+   * while unevaluated nodes still need it; once nothing needs it, its image is released and
+   * dropped from the rendered-image cache, unless another stored node holds the same image.
+   *
+   * @param imageName the name to store the node under.
+   * @param node      the node to store.
+   */
+  private void store(String imageName, ImageNode node) {
+    ImageNode previous = images.put(imageName, node);
+    if (previous == null || previous == node) {
+      return;
+    }
+    detached.add(previous);
+    prune();
+  }
+
+  /**
+   * Drops the detached nodes and reusable subexpressions that no stored node needs any more,
+   * and releases their images unless they are cached.
+   */
+  private void prune() {
+    Set<ImageNode> needed = Collections.newSetFromMap(new IdentityHashMap<>());
+    Set<ImageADT> neededImages = Collections.newSetFromMap(new IdentityHashMap<>());
+    collectNeeded(needed, neededImages);
+    subexpressions.values().removeIf(node -> !needed.contains(node));
+    Iterator<ImageNode> iterator = detached.iterator();
+    while (iterator.hasNext()) {
+      ImageNode node = iterator.next();
+      if (needed.contains(node)) {
+        continue;
+      }
+      iterator.remove();
+      ImageADT image = node.image();
+      if (image != null && !neededImages.contains(image) && !cache.contains(image)) {
+        renderedImages.remove(image);
+        image.release();
+      }
+    }
+  }
+
+  /**
+   * Releases results evicted from the cache that no stored node needs.
+   *
+   * @param evicted the evicted results.
+   */
+  private void releaseUnneeded(List<ImageADT> evicted) {
+    if (evicted.isEmpty()) {
+      return;
+    }
+    Set<ImageNode> needed = Collections.newSetFromMap(new IdentityHashMap<>());
+    Set<ImageADT> neededImages = Collections.newSetFromMap(new IdentityHashMap<>());
+    collectNeeded(needed, neededImages);
+    for (ImageADT image : evicted) {
+      if (!neededImages.contains(image)) {
+        renderedImages.remove(image);
+        image.release();
+      }
+    }
+  }
+
+  /**
+   * Collects the stored nodes, the nodes unevaluated ones depend on, and their images.
+   *
+   * @param needed       the set the needed nodes are added to.
+   * @param neededImages the set the images of the needed nodes are added to.
+   */
+  private void collectNeeded(Set<ImageNode> needed, Set<ImageADT> neededImages) {
+    Deque<ImageNode> pending = new ArrayDeque<>();
+    for (ImageNode stored : images.values()) {
+      if (stored != null) {
+        pending.push(stored);
+      }
+    }
+    while (!pending.isEmpty()) {
+      ImageNode node = pending.pop();
+      if (!needed.add(node)) {
+        continue;
+      }
+      if (node.image() != null) {
+        neededImages.add(node.image());
+      }
+      for (ImageNode source : node.sources()) {
+        pending.push(source);
+      }
+    }
   }
 
 }
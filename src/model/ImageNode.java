@@ -0,0 +1,199 @@
+package model;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * The {@code ImageNode} class is one named image of an {@link ImageModel}: either an image that
+ * was loaded, or an operation with parameters applied to the images of other nodes. Nodes form
+ * an expression graph. A node is evaluated at most once, after which it keeps its image and drops
+ * the references to its sources, so images that are no longer named or needed can be collected.
+ *
+ * <p>Every node has a key that identifies its content. The key of a loaded image holds its size
+ * and a 64-bit hash of its pixels; the key of an operation node is its operation name and
+ * parameters followed by the keys of its sources. An operation node whose result could not be
+ * cached is keyed like a loaded image, and only if its key is needed. Two nodes with equal keys
+ * compute the same image, which lets the model reuse a node or a cached result instead of
+ * computing it again, without reading the pixels of intermediate results to hash them.
+ */
+final class ImageNode {
+
+  /**
+   * Computes the image of a node from the images of its sources.
+   */
+  @FunctionalInterface
+  interface Operation {
+
+    /**
+     * Applies the operation.
+     *
+     * @param sources the images of the node's sources, in order.
+     * @return the resulting image.
+     */
+    ImageADT apply(ImageADT[] sources);
+  }
+
+  /**
+   * The key of a node: its operation name and parameters followed by the keys of its sources.
+   * Keys share the keys of their sources and cache their hash codes, so comparing and hashing
+   * them does not walk the whole graph.
+   */
+  static final class Key {
+    private final Object[] parts;
+    private final int hash;
+
+    private Key(Object[] parts) {
+      this.parts = parts;
+      this.hash = Arrays.hashCode(parts);
+    }
+
+    /**
+     * Returns the key of an operation applied to the given nodes.
+     *
+     * @param operation the operation name and parameters.
+     * @param sources   the nodes the operation is applied to.
+     * @return the key.
+     */
+    static Key of(List<Object> operation, ImageNode... sources) {
+      Object[] parts = Arrays.copyOf(operation.toArray(), operation.size() + sources.length);
+      for (int i = 0; i < sources.length; i++) {
+        parts[operation.size() + i] = sources[i].key();
+      }
+      return new Key(parts);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return hash == other.hash && Arrays.equals(parts, other.parts);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  private Key key;
+  private ImageNode[] sources;
+  private Operation operation;
+  private ImageADT image;
+
+  /**
+   * Constructs a node holding a loaded image. Its key is computed from its pixels when it is
+   * first needed.
+   *
+   * @param image the image.
+   */
+  ImageNode(ImageADT image) {
+    this(null, image);
+  }
+
+  /**
+   * Constructs a node holding an image that is already computed, such as a cached result.
+   *
+   * @param key   the key of the image.
+   * @param image the image.
+   */
+  ImageNode(Key key, ImageADT image) {
+    this.key = key;
+    this.image = image;
+    this.sources = new ImageNode[0];
+  }
+
+  /**
+   * Constructs a node that applies an operation to the images of other nodes when evaluated.
+   *
+   * @param key       the key of the operation and its sources, or null for a node that is
+   *                  evaluated right away and keyed by its pixels if that is ever needed.
+   * @param operation the operation.
+   * @param sources   the nodes whose images the operation is applied to.
+   */
+  ImageNode(Key key, Operation operation, ImageNode... sources) {
+    this.key = key;
+    this.operation = operation;
+    this.sources = sources;
+  }
+
+  /**
+   * Returns the key of this node, hashing the pixels of its image the first time if the node was
+   * made without a key, as loaded images and results the model did not key are.
+   *
+   * @return the key.
+   */
+  Key key() {
+    if (key == null) {
+      AbstractImage loaded = (AbstractImage) image;
+      key = new Key(new Object[]{"image", loaded.getWidth(), loaded.getHeight(),
+          loaded.contentHash()});
+    }
+    return key;
+  }
+
+  /**
+   * Returns the nodes this node still needs to compute its image.
+   *
+   * @return the sources, empty once the node has been evaluated.
+   */
+  ImageNode[] sources() {
+    return sources;
+  }
+
+  /**
+   * Returns the image of this node if it has been evaluated.
+   *
+   * @return the image, or null if the node has not been evaluated yet.
+   */
+  ImageADT image() {
+    return image;
+  }
+
+  /**
+   * Returns the image of this node, first evaluating the nodes it depends on that have not been
+   * evaluated yet. Sources are evaluated before the nodes that use them, without recursion, so
+   * long chains of operations do not exhaust the stack.
+   *
+   * @return the image.
+   */
+  ImageADT evaluate() {
+    Deque<ImageNode> pending = new ArrayDeque<>();
+    pending.push(this);
+    while (!pending.isEmpty()) {
+      ImageNode node = pending.peek();
+      if (node.image != null) {
+        pending.pop();
+        continue;
+      }
+      boolean ready = true;
+      for (ImageNode source : node.sources) {
+        if (source.image == null) {
+          pending.push(source);
+          ready = false;
+        }
+      }
+      if (ready) {
+        pending.pop();
+        node.compute();
+      }
+    }
+    return image;
+  }
+
+  private void compute() {
+    ImageADT[] inputs = new ImageADT[sources.length];
+    for (int i = 0; i < sources.length; i++) {
+      inputs[i] = sources[i].image;
+    }
+    image = operation.apply(inputs);
+    operation = null;
+    sources = new ImageNode[0];
+  }
+}
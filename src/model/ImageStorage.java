@@ -0,0 +1,53 @@
+package model;
+
+/**
+ * Represents the pixel storage layouts the model can use for the images it loads.
+ * {@code PACKED} keeps one {@code 0xRRGGBB} int per pixel in an {@link RGBImage};
+ * {@code PLANAR} keeps one byte plane per channel in a {@link PlanarRGBImage};
+ * {@code OFFHEAP} keeps packed pixels outside the Java heap in an {@link OffHeapRGBImage};
+ * {@code TILED} keeps packed pixels in a memory-mapped scratch file in a
+ * {@link MappedTiledRGBImage}.
+ */
+public enum ImageStorage {
+  PACKED, PLANAR, OFFHEAP, TILED;
+
+  /**
+   * Creates a new, empty image that uses this storage layout.
+   *
+   * @return an empty image ready to be loaded.
+   */
+  ImageADT newImage() {
+    switch (this) {
+      case PLANAR:
+        return new PlanarRGBImage();
+      case OFFHEAP:
+        return new OffHeapRGBImage();
+      case TILED:
+        return new MappedTiledRGBImage();
+      case PACKED:
+      default:
+        return new RGBImage();
+    }
+  }
+
+  /**
+   * Creates a new, black image of the given size that uses this storage layout.
+   *
+   * @param width  the width of the image.
+   * @param height the height of the image.
+   * @return a blank image ready to be written row by row.
+   */
+  AbstractImage newImage(int width, int height) {
+    switch (this) {
+      case PLANAR:
+        return new PlanarRGBImage(width, height);
+      case OFFHEAP:
+        return new OffHeapRGBImage(width, height);
+      case TILED:
+        return new MappedTiledRGBImage(width, height);
+      case PACKED:
+      default:
+        return new RGBImage().createImage(width, height);
+    }
+  }
+}
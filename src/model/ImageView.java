@@ -0,0 +1,426 @@
+package model;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The {@code ImageView} class is a lazy image that remaps the pixels of a source image instead of
+ * copying them. Flips remap the row or column index and channel extraction picks one channel of
+ * each pixel, both on every read. Flips and channel extraction on a view that has not been
+ * materialized are merged into one remapping of the same source, so flipping an image and then
+ * extracting a channel reads the original pixels once, and any number of flips reads them
+ * through a single view. Other stacks of views are materialized once they are
+ * {@value #MAX_DEPTH} deep, so reads never recurse further than that.
+ *
+ * <p>Pointwise operations, such as brightness, levels, sepia and greyscale, return a pipeline
+ * view that holds the operations as a list of stages. A pointwise operation on a pipeline that
+ * has not been materialized adds a stage to a new pipeline over the same source rather than
+ * stacking another view, so a chain of them runs in a single pass over the source pixels. Each
+ * stage still rounds and clamps its own results, so the pixels match running the operations one
+ * at a time. Consecutive tone curves over the same columns are composed into one table. A
+ * pipeline keeps its result once it has been read whole, so that showing or saving it does not
+ * run the stages again.
+ *
+ * <p>The view keeps a reference to its source and relies on stored images never being modified
+ * in place. The first write copies the mapped pixels into an image of the source's layout, after
+ * which the view reads and writes that copy.
+ */
+final class ImageView extends AbstractImage {
+
+  /**
+   * The remappings a view can apply to its source: flips and channel extraction, or a pipeline
+   * of pointwise operations.
+   */
+  enum Mapping {
+    REMAP, POINTWISE
+  }
+
+  // The deepest stack of unmaterialized views a new view may be put on
+  static final int MAX_DEPTH = 8;
+
+  // The shift of a REMAP view that extracts no channel
+  private static final int NO_CHANNEL = -1;
+
+  /**
+   * One pointwise operation of a pipeline, applied to the first {@code length} columns.
+   */
+  private static final class Stage {
+    private final IntUnaryOperator pixel;
+    // The row form of the operation, or null if it only has a per-pixel form
+    private final RowOperator row;
+    // The compiled table of a tone operation, or null for any other operation
+    private final ToneCurve curve;
+    private final int length;
+
+    private Stage(IntUnaryOperator pixel, RowOperator row, ToneCurve curve, int length) {
+      this.pixel = pixel;
+      this.row = row;
+      this.curve = curve;
+      this.length = length;
+    }
+
+    /**
+     * Applies the operation to the first {@code length} pixels of a row, with its row form when
+     * the row kernels are enabled.
+     */
+    private void apply(int[] source, int[] target, int length) {
+      if (row != null && PixelKernels.isRowKernels()) {
+        row.apply(source, target, length);
+        return;
+      }
+      for (int j = 0; j < length; j++) {
+        target[j] = pixel.applyAsInt(source[j]);
+      }
+    }
+  }
+
+  private final AbstractImage source;
+  private final Mapping mapping;
+  // Whether a REMAP view reverses the columns of each row and the order of the rows
+  private final boolean mirrorColumns;
+  private final boolean mirrorRows;
+  // Bit offset of the channel a REMAP view extracts, or NO_CHANNEL
+  private final int shift;
+  // The operations of a POINTWISE view, in the order they are applied
+  private final Stage[] stages;
+  // The number of unmaterialized views read through, this one included, when it was made
+  private final int depth;
+  // The copy that replaces the mapping once the view is written to
+  private AbstractImage materialized;
+
+  private ImageView(AbstractImage source, Mapping mapping, boolean mirrorColumns,
+                    boolean mirrorRows, int shift, Stage[] stages) {
+    this.source = source;
+    this.mapping = mapping;
+    this.mirrorColumns = mirrorColumns;
+    this.mirrorRows = mirrorRows;
+    this.shift = shift;
+    this.stages = stages;
+    this.width = source.getWidth();
+    this.height = source.getHeight();
+    ImageView below = source.pendingView();
+    this.depth = below == null ? 1 : below.depth + 1;
+  }
+
+  /**
+   * Constructs a flipped view of the given image. If the image is itself a flip or channel view
+   * that has not been materialized, the flip is merged into that view's remapping instead.
+   *
+   * @param image      the image to flip.
+   * @param horizontal true to reverse the columns, false to reverse the rows.
+   * @return the flipped view.
+   */
+  static ImageView flip(AbstractImage image, boolean horizontal) {
+    ImageView view = remapOf(image);
+    if (view == null) {
+      return new ImageView(shallow(image), Mapping.REMAP, horizontal, !horizontal, NO_CHANNEL,
+              null);
+    }
+    return new ImageView(view.source, Mapping.REMAP, view.mirrorColumns ^ horizontal,
+            view.mirrorRows ^ !horizontal, view.shift, null);
+  }
+
+  /**
+   * Constructs a greyscale view of one channel of the given image. If the image is itself a flip
+   * or channel view that has not been materialized, the channel is merged into that view's
+   * remapping instead. A view that already extracts a channel is grey, so every channel of it is
+   * that same channel.
+   *
+   * @param image the image the view reads from.
+   * @param color the channel to extract.
+   * @return the channel view.
+   */
+  static ImageView channel(AbstractImage image, Channel color) {
+    ImageView view = remapOf(image);
+    if (view == null) {
+      return new ImageView(shallow(image), Mapping.REMAP, false, false, color.shift, null);
+    }
+    int merged = view.shift == NO_CHANNEL ? color.shift : view.shift;
+    return new ImageView(view.source, Mapping.REMAP, view.mirrorColumns, view.mirrorRows,
+            merged, null);
+  }
+
+  /**
+   * Returns the flip or channel view the image still reads through, or null if there is none.
+   */
+  private static ImageView remapOf(AbstractImage image) {
+    ImageView view = image.pendingView();
+    return view != null && view.mapping == Mapping.REMAP ? view : null;
+  }
+
+  /**
+   * Returns the image a new view may read from, first materializing the view it reads through
+   * if that stack of views is already {@link #MAX_DEPTH} deep.
+   */
+  private static AbstractImage shallow(AbstractImage image) {
+    ImageView view = image.pendingView();
+    if (view != null && view.depth >= MAX_DEPTH) {
+      view.materialize();
+    }
+    return image;
+  }
+
+  /**
+   * Constructs a pipeline view that applies a pointwise operation to the first columns of an
+   * image. If the image is itself a pipeline that has not been materialized, the operation is
+   * added as a stage of a new pipeline over that pipeline's source.
+   *
+   * @param image     the image the operation is applied to.
+   * @param pixel     the function from a packed input color to a packed output color.
+   * @param row       the same function applied to a run of pixels, or null if there is none.
+   * @param curve     the table the function was compiled to, or null if it is not a tone curve.
+   * @param lastIndex the last column the operation is applied to.
+   * @return the pipeline view.
+   */
+  static ImageView pointwise(AbstractImage image, IntUnaryOperator pixel, RowOperator row,
+                             ToneCurve curve, int lastIndex) {
+    int length = Math.min(lastIndex, image.getWidth() - 1) + 1;
+    Stage stage = new Stage(pixel, row, curve, length);
+    ImageView pipeline = image.pendingPipeline();
+    if (pipeline == null) {
+      return new ImageView(shallow(image), Mapping.POINTWISE, false, false, NO_CHANNEL,
+              new Stage[]{stage});
+    }
+    Stage[] previous = pipeline.stages;
+    Stage last = previous[previous.length - 1];
+    Stage[] stages;
+    if (curve != null && last.curve != null && last.length == length) {
+      ToneCurve composed = last.curve.then(curve);
+      stages = Arrays.copyOf(previous, previous.length);
+      stages[stages.length - 1] = new Stage(composed::apply, composed.kernel(), composed, length);
+    } else {
+      stages = Arrays.copyOf(previous, previous.length + 1);
+      stages[stages.length - 1] = stage;
+    }
+    return new ImageView(pipeline.source, Mapping.POINTWISE, false, false, NO_CHANNEL, stages);
+  }
+
+  /**
+   * Returns this view if it has not been materialized, so that the next operation can be merged
+   * into it.
+   *
+   * @return this view, or null.
+   */
+  @Override
+  ImageView pendingView() {
+    return materialized == null ? this : null;
+  }
+
+  /**
+   * Returns whether this view is a pipeline of pointwise operations.
+   *
+   * @return true for a pipeline view.
+   */
+  boolean isPipeline() {
+    return mapping == Mapping.POINTWISE;
+  }
+
+  /**
+   * Copies the mapped pixels into an image of the source's layout, if that has not happened yet.
+   * A pipeline whose stages all cover the same columns runs through the source's
+   * {@link #mapRows}, so layouts that share unchanged columns still do.
+   *
+   * @return the copy backing this view from now on.
+   */
+  AbstractImage materialize() {
+    if (materialized == null) {
+      if (mapping == Mapping.POINTWISE && sameLength()) {
+        materialized = source.mapRows((in, out, length) -> {
+          stages[0].apply(in, out, length);
+          for (int k = 1; k < stages.length; k++) {
+            stages[k].apply(out, out, length);
+          }
+        }, stages[0].length - 1);
+      } else {
+        AbstractImage copy = source.createImage(width, height);
+        Parallelism.forEachBand(height, width, (from, to) -> {
+          int[] row = new int[width];
+          for (int i = from; i < to; i++) {
+            readRow(i, row);
+            copy.writeRow(i, row);
+          }
+        });
+        materialized = copy;
+      }
+    }
+    return materialized;
+  }
+
+  private boolean sameLength() {
+    for (Stage stage : stages) {
+      if (stage.length != stages[0].length) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  protected int getWidth() {
+    return width;
+  }
+
+  @Override
+  protected int getHeight() {
+    return height;
+  }
+
+  @Override
+  protected AbstractImage createImage() {
+    return source.createImage(width, height);
+  }
+
+  @Override
+  protected AbstractImage createImage(int width, int height) {
+    return source.createImage(width, height);
+  }
+
+  @Override
+  protected RGBImagePixel getPixel(int x, int y) {
+    return RGBImagePixel.fromPacked(getRGB(x, y));
+  }
+
+  @Override
+  public void setPixel(Pixel obj, int x, int y) {
+    pixelsChanged();
+    materialize().setPixel(obj, x, y);
+  }
+
+  @Override
+  protected int getRGB(int x, int y) {
+    if (materialized != null) {
+      return materialized.getRGB(x, y);
+    }
+    if (mapping == Mapping.POINTWISE) {
+      int rgb = source.getRGB(x, y);
+      for (Stage stage : stages) {
+        if (y < stage.length) {
+          rgb = stage.pixel.applyAsInt(rgb);
+        }
+      }
+      return rgb;
+    }
+    int rgb = source.getRGB(mirrorRows ? height - x - 1 : x, mirrorColumns ? width - y - 1 : y);
+    return shift == NO_CHANNEL ? rgb : channel(rgb);
+  }
+
+  @Override
+  protected void setRGB(int x, int y, int rgb) {
+    pixelsChanged();
+    materialize().setRGB(x, y, rgb);
+  }
+
+  @Override
+  protected void readRow(int x, int[] row) {
+    if (materialized != null) {
+      materialized.readRow(x, row);
+      return;
+    }
+    if (mapping == Mapping.POINTWISE) {
+      source.readRow(x, row);
+      for (Stage stage : stages) {
+        stage.apply(row, row, stage.length);
+      }
+      return;
+    }
+    source.readRow(mirrorRows ? height - x - 1 : x, row);
+    if (mirrorColumns) {
+      for (int j = 0, k = width - 1; j < k; j++, k--) {
+        int swap = row[j];
+        row[j] = row[k];
+        row[k] = swap;
+      }
+    }
+    if (shift != NO_CHANNEL) {
+      for (int j = 0; j < width; j++) {
+        row[j] = channel(row[j]);
+      }
+    }
+  }
+
+  @Override
+  protected void writeRow(int x, int[] row, int length) {
+    pixelsChanged();
+    materialize().writeRow(x, row, length);
+  }
+
+  /**
+   * Returns the greyscale color of the channel this view extracts.
+   */
+  private int channel(int rgb) {
+    int value = (rgb >> shift) & 0xFF;
+    return RGBImagePixel.pack(value, value, value);
+  }
+
+  @Override
+  public void loadImage(BufferedImage bufferedImage) throws IOException {
+    AbstractImage image = source.createImage(0, 0);
+    image.loadImage(bufferedImage);
+    pixelsChanged();
+    materialized = image;
+    width = image.getWidth();
+    height = image.getHeight();
+  }
+
+  @Override
+  public BufferedImage getImage(String imageName) throws IllegalStateException {
+    if (this.width <= 0 || this.height <= 0) {
+      throw new IllegalStateException("Image dimensions must be set before saving");
+    }
+    if (mapping == Mapping.POINTWISE) {
+      // Keep the result, so that later reads do not run the pipeline again
+      materialize();
+    }
+    BufferedImage bufferedImage = BufferedImageBridge.newImage(width, height);
+    int[] row = new int[width];
+    for (int i = 0; i < height; i++) {
+      readRow(i, row);
+      BufferedImageBridge.writeRow(bufferedImage, i, row);
+    }
+    return bufferedImage;
+  }
+
+  /**
+   * Releases the copy made when the view was written to. The source is not owned by the view and
+   * is left alone.
+   */
+  @Override
+  public void release() {
+    if (materialized != null) {
+      materialized.release();
+    }
+  }
+
+  /**
+   * Checks if this view is equal to another object.
+   *
+   * @param obj the object to compare.
+   * @return true if the object is a view with the same dimensions and pixels.
+   */
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof ImageView)) {
+      return false;
+    }
+    return samePixels((ImageView) obj);
+  }
+
+  /**
+   * Computes a hash code for this view.
+   *
+   * @return a hash code value for this view
+   */
+  @Override
+  public int hashCode() {
+    int hash = 7;
+    hash = 31 * hash + width;
+    hash = 31 * hash + height;
+    hash = 31 * hash + Long.hashCode(contentHash());
+    return hash;
+  }
+}
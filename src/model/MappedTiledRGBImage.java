@@ -0,0 +1,335 @@
+package model;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+
+/**
+ * The {@code MappedTiledRGBImage} class is an RGB image whose pixels live in a scratch file and
+ * are accessed through memory mappings, so it can hold images larger than physical memory. The
+ * image is cut into square tiles of {@value #TILE_SIZE} by {@value #TILE_SIZE} packed
+ * {@code 0xRRGGBB} pixels, each stored contiguously in the file.
+ *
+ * <p>Only the most recently used tiles stay mapped. The operating system pages them in on first
+ * access and writes dirty pages back to the scratch file under memory pressure. Row-based access
+ * through {@link #readRow} and {@link #writeRow} touches one row of tiles at a time, which is how
+ * all pointwise filters and kernels in {@link AbstractImage} traverse an image.
+ *
+ * <p>The scratch file is deleted when the image is released, or when the JVM exits.
+ */
+public class MappedTiledRGBImage extends AbstractImage {
+
+  /**
+   * The width and height of a tile in pixels.
+   */
+  static final int TILE_SIZE = 512;
+
+  private static final int TILE_BYTES = TILE_SIZE * TILE_SIZE * Integer.BYTES;
+
+  // Default number of tiles kept mapped, 256 MiB worth of pixels
+  private static final int DEFAULT_RESIDENT_TILES = 256;
+
+  // Rows read from an ImageReader per decode pass when streaming a file in
+  private static final int LOAD_BAND_PIXELS = 16 * 1024 * 1024;
+
+  private FileChannel channel;
+  private int tilesAcross;
+  private Map<Integer, Tile> residentTiles;
+
+  /**
+   * A mapped tile: the mapping itself, kept so it can be unmapped, and its int view.
+   */
+  private static final class Tile {
+    private final MappedByteBuffer mapping;
+    private final IntBuffer pixels;
+
+    private Tile(MappedByteBuffer mapping) {
+      this.mapping = mapping;
+      this.pixels = mapping.order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+  }
+
+  /**
+   * Constructs an empty tiled image, backed by a new scratch file.
+   *
+   * @throws UncheckedIOException if the scratch file cannot be created.
+   */
+  public MappedTiledRGBImage() {
+    this(0, 0);
+  }
+
+  /**
+   * Constructs a black tiled image with the given dimensions, backed by a new scratch file.
+   *
+   * @param width  the width of the image.
+   * @param height the height of the image.
+   * @throws UncheckedIOException if the scratch file cannot be created.
+   */
+  public MappedTiledRGBImage(int width, int height) {
+    allocate(width, height);
+  }
+
+  private void allocate(int width, int height) {
+    this.width = width;
+    this.height = height;
+    tilesAcross = (width + TILE_SIZE - 1) / TILE_SIZE;
+    int residentLimit = Math.max(DEFAULT_RESIDENT_TILES, 3 * tilesAcross);
+    residentTiles = new LinkedHashMap<Integer, Tile>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, Tile> eldest) {
+        // Dropped mappings are unmapped by the garbage collector; another thread may still be
+        // reading through one, so they are not unmapped here
+        return size() > residentLimit;
+      }
+    };
+    try {
+      Path file = Files.createTempFile("image-tiles", ".bin");
+      channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+              StandardOpenOption.DELETE_ON_CLOSE);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not create image scratch file", e);
+    }
+  }
+
+  /**
+   * Reads the first image of {@code reader} into a new tiled image. The image is decoded in
+   * horizontal bands, so only one band is held in memory at a time. The reader's input must be
+   * seekable, since each band is a separate decode pass.
+   *
+   * @param reader an image reader whose input has been set.
+   * @return the tiled image.
+   * @throws IOException if the image cannot be decoded.
+   */
+  static MappedTiledRGBImage read(ImageReader reader) throws IOException {
+    int width = reader.getWidth(0);
+    int height = reader.getHeight(0);
+    MappedTiledRGBImage image = new MappedTiledRGBImage(width, height);
+    int bandRows = Math.max(1, LOAD_BAND_PIXELS / width);
+    Histogram.Counter counts = new Histogram.Counter();
+    int[] row = new int[width];
+    for (int top = 0; top < height; top += bandRows) {
+      int rows = Math.min(bandRows, height - top);
+      ImageReadParam param = reader.getDefaultReadParam();
+      param.setSourceRegion(new Rectangle(0, top, width, rows));
+      BufferedImage band = reader.read(0, param);
+      for (int i = 0; i < rows; i++) {
+        BufferedImageBridge.readRow(band, i, row);
+        image.writeRow(top + i, row);
+        counts.add(row, width);
+      }
+    }
+    image.keepHistogram(counts.toHistogram());
+    return image;
+  }
+
+  /**
+   * Unmaps the resident tiles and deletes the scratch file. The image must not be used
+   * afterwards; any further access throws {@link IllegalStateException}. Releasing an image
+   * twice has no effect.
+   */
+  @Override
+  public synchronized void release() {
+    if (channel == null) {
+      return;
+    }
+    List<Tile> mapped = new ArrayList<>(residentTiles.values());
+    residentTiles.clear();
+    try {
+      channel.close();
+    } catch (IOException e) {
+      // The file was opened with DELETE_ON_CLOSE, so it does not outlive the channel
+    }
+    channel = null;
+    for (Tile tile : mapped) {
+      DirectBuffers.unmap(tile.mapping);
+    }
+  }
+
+  /**
+   * Copies the view, since it would otherwise read this image after {@link #release()} has freed
+   * it.
+   */
+  @Override
+  protected AbstractImage wrapView(ImageView view) {
+    return view.materialize();
+  }
+
+  @Override
+  protected int getWidth() {
+    return width;
+  }
+
+  @Override
+  protected int getHeight() {
+    return height;
+  }
+
+  @Override
+  protected MappedTiledRGBImage createImage() {
+    return new MappedTiledRGBImage(width, height);
+  }
+
+  @Override
+  protected MappedTiledRGBImage createImage(int width, int height) {
+    return new MappedTiledRGBImage(width, height);
+  }
+
+  @Override
+  protected RGBImagePixel getPixel(int x, int y) {
+    return RGBImagePixel.fromPacked(getRGB(x, y));
+  }
+
+  @Override
+  public void setPixel(Pixel obj, int x, int y) {
+    if (x < 0 || x >= height || y < 0 || y >= width) {
+      throw new IndexOutOfBoundsException("Pixel coordinates are out of bounds");
+    }
+    if (!(obj instanceof RGBImagePixel)) {
+      throw new IllegalArgumentException("Not a RGBPixel data");
+    }
+    setRGB(x, y, ((RGBImagePixel) obj).toPacked());
+  }
+
+  @Override
+  protected int getRGB(int x, int y) {
+    IntBuffer tile = tile((x / TILE_SIZE) * tilesAcross + y / TILE_SIZE);
+    return tile.get((x % TILE_SIZE) * TILE_SIZE + y % TILE_SIZE);
+  }
+
+  @Override
+  protected void setRGB(int x, int y, int rgb) {
+    pixelsChanged();
+    IntBuffer tile = tile((x / TILE_SIZE) * tilesAcross + y / TILE_SIZE);
+    tile.put((x % TILE_SIZE) * TILE_SIZE + y % TILE_SIZE, rgb);
+  }
+
+  @Override
+  protected void readRow(int x, int[] row) {
+    int firstTile = (x / TILE_SIZE) * tilesAcross;
+    int offset = (x % TILE_SIZE) * TILE_SIZE;
+    for (int t = 0; t < tilesAcross; t++) {
+      IntBuffer view = tile(firstTile + t).duplicate();
+      view.position(offset);
+      view.get(row, t * TILE_SIZE, Math.min(TILE_SIZE, width - t * TILE_SIZE));
+    }
+  }
+
+  @Override
+  protected void writeRow(int x, int[] row, int length) {
+    pixelsChanged();
+    int firstTile = (x / TILE_SIZE) * tilesAcross;
+    int offset = (x % TILE_SIZE) * TILE_SIZE;
+    for (int t = 0; t * TILE_SIZE < length; t++) {
+      IntBuffer view = tile(firstTile + t).duplicate();
+      view.position(offset);
+      view.put(row, t * TILE_SIZE, Math.min(TILE_SIZE, length - t * TILE_SIZE));
+    }
+  }
+
+  /**
+   * Returns the pixels of a tile, mapping it if it is not resident.
+   *
+   * @param index the tile index, row-major over the tile grid.
+   * @return the int view of the tile.
+   * @throws IllegalStateException if the image has been released.
+   * @throws UncheckedIOException  if the tile cannot be mapped.
+   */
+  private synchronized IntBuffer tile(int index) {
+    if (channel == null) {
+      throw new IllegalStateException("Image memory has been released");
+    }
+    Tile tile = residentTiles.get(index);
+    if (tile == null) {
+      try {
+        tile = new Tile(channel.map(FileChannel.MapMode.READ_WRITE, (long) index * TILE_BYTES,
+                TILE_BYTES));
+      } catch (IOException e) {
+        throw new UncheckedIOException("Could not map image tile " + index, e);
+      }
+      residentTiles.put(index, tile);
+    }
+    return tile.pixels;
+  }
+
+  @Override
+  public void loadImage(BufferedImage bufferedImage) throws IOException {
+    release();
+    allocate(bufferedImage.getWidth(), bufferedImage.getHeight());
+
+    // Count the histogram while the rows go by, so that it never needs a pass of its own
+    Histogram.Counter counts = new Histogram.Counter();
+    int[] row = new int[width];
+    for (int i = 0; i < height; i++) {
+      BufferedImageBridge.readRow(bufferedImage, i, row);
+      writeRow(i, row);
+      counts.add(row, width);
+    }
+    keepHistogram(counts.toHistogram());
+  }
+
+  /**
+   * Copies this image into a new {@link BufferedImage}. This needs the whole image in memory; use
+   * {@link RowRenderedImage} to write a large image to a file row by row instead.
+   *
+   * @param imageName the name of the image.
+   * @return the image as a {@link BufferedImage}.
+   */
+  @Override
+  public BufferedImage getImage(String imageName) throws IllegalStateException {
+    if (this.width <= 0 || this.height <= 0) {
+      throw new IllegalStateException("Image dimensions must be set before saving");
+    }
+    BufferedImage bufferedImage = BufferedImageBridge.newImage(width, height);
+    int[] row = new int[width];
+    for (int i = 0; i < height; i++) {
+      readRow(i, row);
+      BufferedImageBridge.writeRow(bufferedImage, i, row);
+    }
+    return bufferedImage;
+  }
+
+  /**
+   * Checks if this image is equal to another object.
+   *
+   * @param obj the object to compare.
+   * @return true if the object is a tiled image with the same dimensions and pixels.
+   */
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof MappedTiledRGBImage)) {
+      return false;
+    }
+    return samePixels((MappedTiledRGBImage) obj);
+  }
+
+  /**
+   * Computes a hash code for this image.
+   *
+   * @return a hash code value for this image
+   */
+  @Override
+  public int hashCode() {
+    int hash = 7;
+    hash = 31 * hash + width;
+    hash = 31 * hash + height;
+    hash = 31 * hash + Long.hashCode(contentHash());
+    return hash;
+  }
+}
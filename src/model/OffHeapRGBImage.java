@@ -0,0 +1,229 @@
+package model;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * The {@code OffHeapRGBImage} class is an RGB image whose pixels live outside the Java heap, in
+ * direct buffers. Pixels are packed as {@code 0xRRGGBB} ints, row-major, in the same layout as
+ * {@link RGBImage}. A direct buffer holds at most {@code 2^31 - 1} bytes, so the rows are
+ * split over as many buffers as the image needs.
+ *
+ * <p>Very large images can be kept here without growing the heap. The memory is not reclaimed by
+ * the garbage collector in time to matter, so the owner of the image calls {@link #release()}
+ * once the image is no longer used.
+ */
+public class OffHeapRGBImage extends AbstractImage {
+
+  // Upper bound for a single buffer; a power of two keeps whole rows well under the 2 GiB limit
+  private static final int MAX_CHUNK_BYTES = 1 << 30;
+
+  private ByteBuffer[] chunks;
+  private IntBuffer[] chunkPixels;
+  private int rowsPerChunk;
+
+  /**
+   * Constructs an empty off-heap image. The image holds no memory until it is loaded.
+   */
+  public OffHeapRGBImage() {
+    this(0, 0);
+  }
+
+  /**
+   * Constructs a black off-heap image with the given dimensions.
+   *
+   * @param width  the width of the image.
+   * @param height the height of the image.
+   */
+  public OffHeapRGBImage(int width, int height) {
+    allocate(width, height);
+  }
+
+  private void allocate(int width, int height) {
+    this.width = width;
+    this.height = height;
+    rowsPerChunk = Math.max(1, MAX_CHUNK_BYTES / (Math.max(width, 1) * Integer.BYTES));
+    int chunkCount = (height + rowsPerChunk - 1) / rowsPerChunk;
+    chunks = new ByteBuffer[chunkCount];
+    chunkPixels = new IntBuffer[chunkCount];
+    for (int c = 0; c < chunkCount; c++) {
+      int rows = Math.min(rowsPerChunk, height - c * rowsPerChunk);
+      chunks[c] = DirectBuffers.allocate(rows * width * Integer.BYTES);
+      chunkPixels[c] = chunks[c].asIntBuffer();
+    }
+  }
+
+  /**
+   * Frees the off-heap memory of this image. The image must not be used afterwards; any further
+   * access throws {@link IllegalStateException}. Releasing an image twice has no effect.
+   */
+  @Override
+  public void release() {
+    if (chunks == null) {
+      return;
+    }
+    ByteBuffer[] released = chunks;
+    chunks = null;
+    chunkPixels = null;
+    for (ByteBuffer chunk : released) {
+      DirectBuffers.free(chunk);
+    }
+  }
+
+  /**
+   * Copies the view, since it would otherwise read this image after {@link #release()} has freed
+   * it.
+   */
+  @Override
+  protected AbstractImage wrapView(ImageView view) {
+    return view.materialize();
+  }
+
+  @Override
+  protected int getWidth() {
+    return width;
+  }
+
+  @Override
+  protected int getHeight() {
+    return height;
+  }
+
+  @Override
+  protected OffHeapRGBImage createImage() {
+    return new OffHeapRGBImage(width, height);
+  }
+
+  @Override
+  protected OffHeapRGBImage createImage(int width, int height) {
+    return new OffHeapRGBImage(width, height);
+  }
+
+  @Override
+  protected RGBImagePixel getPixel(int x, int y) {
+    return RGBImagePixel.fromPacked(getRGB(x, y));
+  }
+
+  @Override
+  public void setPixel(Pixel obj, int x, int y) {
+    if (x < 0 || x >= height || y < 0 || y >= width) {
+      throw new IndexOutOfBoundsException("Pixel coordinates are out of bounds");
+    }
+    if (!(obj instanceof RGBImagePixel)) {
+      throw new IllegalArgumentException("Not a RGBPixel data");
+    }
+    setRGB(x, y, ((RGBImagePixel) obj).toPacked());
+  }
+
+  @Override
+  protected int getRGB(int x, int y) {
+    return chunk(x).get((x % rowsPerChunk) * width + y);
+  }
+
+  @Override
+  protected void setRGB(int x, int y, int rgb) {
+    pixelsChanged();
+    chunk(x).put((x % rowsPerChunk) * width + y, rgb);
+  }
+
+  @Override
+  protected void readRow(int x, int[] row) {
+    IntBuffer view = chunk(x).duplicate();
+    view.position((x % rowsPerChunk) * width);
+    view.get(row, 0, width);
+  }
+
+  @Override
+  protected void writeRow(int x, int[] row, int length) {
+    pixelsChanged();
+    IntBuffer view = chunk(x).duplicate();
+    view.position((x % rowsPerChunk) * width);
+    view.put(row, 0, length);
+  }
+
+  /**
+   * Returns the buffer holding row {@code x}.
+   *
+   * @param x the row index.
+   * @return the int view of the chunk containing that row.
+   * @throws IllegalStateException if the image has been released.
+   */
+  private IntBuffer chunk(int x) {
+    if (chunkPixels == null) {
+      throw new IllegalStateException("Image memory has been released");
+    }
+    return chunkPixels[x / rowsPerChunk];
+  }
+
+  @Override
+  public void loadImage(BufferedImage bufferedImage) throws IOException {
+    release();
+    allocate(bufferedImage.getWidth(), bufferedImage.getHeight());
+
+    // Count the histogram while the rows go by, so that it never needs a pass of its own
+    Histogram.Counter counts = new Histogram.Counter();
+    int[] row = new int[width];
+    for (int i = 0; i < height; i++) {
+      BufferedImageBridge.readRow(bufferedImage, i, row);
+      writeRow(i, row);
+      counts.add(row, width);
+    }
+    keepHistogram(counts.toHistogram());
+  }
+
+  @Override
+  public BufferedImage getImage(String imageName) throws IllegalStateException {
+    if (this.width <= 0 || this.height <= 0) {
+      throw new IllegalStateException("Image dimensions must be set before saving");
+    }
+    BufferedImage bufferedImage = BufferedImageBridge.newImage(width, height);
+    int[] row = new int[width];
+    for (int i = 0; i < height; i++) {
+      readRow(i, row);
+      BufferedImageBridge.writeRow(bufferedImage, i, row);
+    }
+    return bufferedImage;
+  }
+
+  /**
+   * Checks if this image is equal to another object.
+   *
+   * @param obj the object to compare.
+   * @return true if the object is an off-heap image with the same dimensions and pixels.
+   */
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof OffHeapRGBImage)) {
+      return false;
+    }
+    OffHeapRGBImage other = (OffHeapRGBImage) obj;
+    if (width != other.width || height != other.height) {
+      return false;
+    }
+    for (int c = 0; c < chunkPixels.length; c++) {
+      if (!chunkPixels[c].equals(other.chunkPixels[c])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Computes a hash code for this image.
+   *
+   * @return a hash code value for this image
+   */
+  @Override
+  public int hashCode() {
+    int hash = 7;
+    hash = 31 * hash + width;
+    hash = 31 * hash + height;
+    hash = 31 * hash + Long.hashCode(contentHash());
+    return hash;
+  }
+}
@@ -0,0 +1,197 @@
+package model;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * The {@code Parallelism} class runs image operations over bands of rows on a shared
+ * {@link ForkJoinPool}. Every output row is computed by exactly one task from the same inputs as
+ * in a serial run, so results do not depend on the number of threads.
+ *
+ * <p>The number of threads defaults to the number of available processors and can be changed
+ * with {@link #setThreads(int)}, for example from the command line. With one thread every
+ * operation runs on the calling thread.
+ */
+public final class Parallelism {
+
+  // Below this many pixels an operation runs on the calling thread
+  private static final long MIN_PARALLEL_PIXELS = 1 << 16;
+  // Bands are kept at least this tall so that per-band setup, such as the rows a kernel needs
+  // above the band, stays small next to the band itself
+  private static final int MIN_BAND_ROWS = 16;
+  // More bands than threads keeps every thread busy when some bands take longer than others
+  private static final int BANDS_PER_THREAD = 4;
+
+  private static int threads = Runtime.getRuntime().availableProcessors();
+  private static ForkJoinPool pool;
+
+  private Parallelism() {
+  }
+
+  /**
+   * Sets the number of threads image operations may use.
+   *
+   * @param threads the number of threads, at least 1.
+   * @throws IllegalArgumentException if {@code threads} is less than 1.
+   */
+  public static synchronized void setThreads(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Thread count must be at least 1");
+    }
+    if (threads != Parallelism.threads && pool != null) {
+      pool.shutdown();
+      pool = null;
+    }
+    Parallelism.threads = threads;
+  }
+
+  /**
+   * Returns the number of threads image operations may use.
+   *
+   * @return the thread count.
+   */
+  public static synchronized int getThreads() {
+    return threads;
+  }
+
+  private static synchronized ForkJoinPool pool() {
+    if (pool == null) {
+      pool = new ForkJoinPool(threads);
+    }
+    return pool;
+  }
+
+  /**
+   * The work done for one band of rows.
+   */
+  @FunctionalInterface
+  interface RowBand {
+
+    /**
+     * Processes rows {@code from} (inclusive) to {@code to} (exclusive).
+     *
+     * @param from the first row of the band.
+     * @param to   the row after the last row of the band.
+     */
+    void run(int from, int to);
+  }
+
+  /**
+   * Splits rows {@code 0} to {@code rows} into bands and runs {@code band} on each of them,
+   * in parallel when the image is large enough. Returns once every band has finished. Bands
+   * must only write to rows inside their own range.
+   *
+   * @param rows    the number of rows.
+   * @param columns the number of columns, used to decide whether to run in parallel.
+   * @param band    the work for one band.
+   */
+  static void forEachBand(int rows, int columns, RowBand band) {
+    int threadCount = getThreads();
+    int bands = Math.min(threadCount * BANDS_PER_THREAD, rows / MIN_BAND_ROWS);
+    if (threadCount == 1 || bands < 2 || (long) rows * columns < MIN_PARALLEL_PIXELS) {
+      band.run(0, rows);
+      return;
+    }
+    run(new BandTask(band, rows, bands, 0, bands));
+  }
+
+  /**
+   * Runs tasks {@code 0} to {@code tasks} of a few independent, long-running pieces of work, such
+   * as the channels of an image, in parallel when there is more than one thread. Returns once
+   * every task has finished. Tasks may themselves call {@link #forEachBand}, whose bands then
+   * share the same threads.
+   *
+   * @param tasks the number of tasks.
+   * @param task  the work for one task, given its index.
+   */
+  static void forEachTask(int tasks, IntConsumer task) {
+    if (getThreads() == 1 || tasks < 2) {
+      for (int k = 0; k < tasks; k++) {
+        task.accept(k);
+      }
+      return;
+    }
+    run(new IndexTask(task, 0, tasks));
+  }
+
+  /**
+   * Runs a task on the pool, or straight away from inside one of the pool's own tasks, so that
+   * nested work is forked into the running pool rather than submitted to it and waited for.
+   */
+  private static void run(RecursiveAction task) {
+    Thread current = Thread.currentThread();
+    ForkJoinPool running = current instanceof ForkJoinWorkerThread
+            ? ((ForkJoinWorkerThread) current).getPool() : null;
+    if (running != null && running == pool()) {
+      task.invoke();
+    } else {
+      pool().invoke(task);
+    }
+  }
+
+  /**
+   * Runs tasks {@code first} to {@code last}, halving the range until a single task is left.
+   */
+  private static final class IndexTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final IntConsumer task;
+    private final int first;
+    private final int last;
+
+    private IndexTask(IntConsumer task, int first, int last) {
+      this.task = task;
+      this.first = first;
+      this.last = last;
+    }
+
+    @Override
+    protected void compute() {
+      if (last - first == 1) {
+        task.accept(first);
+        return;
+      }
+      int middle = (first + last) >>> 1;
+      invokeAll(new IndexTask(task, first, middle), new IndexTask(task, middle, last));
+    }
+  }
+
+  /**
+   * Runs bands {@code first} to {@code last} of an evenly split row range, halving the range
+   * until a single band is left.
+   */
+  private static final class BandTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final RowBand band;
+    private final int rows;
+    private final int bands;
+    private final int first;
+    private final int last;
+
+    private BandTask(RowBand band, int rows, int bands, int first, int last) {
+      this.band = band;
+      this.rows = rows;
+      this.bands = bands;
+      this.first = first;
+      this.last = last;
+    }
+
+    @Override
+    protected void compute() {
+      if (last - first == 1) {
+        band.run(start(first), start(last));
+        return;
+      }
+      int middle = (first + last) >>> 1;
+      invokeAll(new BandTask(band, rows, bands, first, middle),
+              new BandTask(band, rows, bands, middle, last));
+    }
+
+    private int start(int index) {
+      return (int) ((long) rows * index / bands);
+    }
+  }
+}
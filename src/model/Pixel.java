@@ -17,6 +17,23 @@ public interface Pixel {
    */
   public List<Integer> getPixelData();
 
+  /**
+   * Returns the number of color channels of this pixel.
+   *
+   * @return the channel count, e.g. 3 for an RGB pixel.
+   */
+  int channelCount();
+
+  /**
+   * Returns the value of one color channel without allocating, in the same order as
+   * {@link #getPixelData()}.
+   *
+   * @param index the channel index, from 0 to {@link #channelCount()} - 1.
+   * @return the value of that channel.
+   * @throws IndexOutOfBoundsException if the index is not a valid channel.
+   */
+  int channel(int index);
+
 
   /**
    * Sets the pixel data with the specified list of integers.
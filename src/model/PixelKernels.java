@@ -0,0 +1,72 @@
+package model;
+
+/**
+ * The {@code PixelKernels} class holds the row forms of the pointwise filters. Each kernel works
+ * on a run of packed {@code 0xRRGGBB} pixels in one straight-line loop over primitives, with no
+ * calls, boxing or branches per pixel, so a filter costs one call per row instead of one per
+ * pixel. The per-pixel forms in {@link AbstractImage} remain the reference, and every kernel
+ * returns the same colors as its per-pixel form. Tone operations that change each channel on its
+ * own are compiled to lookup tables by {@link ToneCurve} instead.
+ *
+ * <p>Kernels are enabled by default and can be switched off at startup with
+ * {@link #setRowKernels(boolean)}, in which case filters run their per-pixel forms.
+ */
+public final class PixelKernels {
+
+  private static volatile boolean rowKernels = true;
+
+  private PixelKernels() {
+  }
+
+  /**
+   * Chooses whether filters use the row kernels or their per-pixel forms.
+   *
+   * @param rowKernels true to use the row kernels.
+   */
+  public static void setRowKernels(boolean rowKernels) {
+    PixelKernels.rowKernels = rowKernels;
+  }
+
+  /**
+   * Checks whether filters use the row kernels.
+   *
+   * @return true if the row kernels are used.
+   */
+  public static boolean isRowKernels() {
+    return rowKernels;
+  }
+
+  // Math.round(x) for the sums below is (int) (x + 0.5f): the sums are never negative and never
+  // within one float step below 0.5, which PixelKernelsTest checks for every color
+
+  /**
+   * Applies the sepia tone matrix.
+   */
+  static void sepia(int[] source, int[] target, int length) {
+    for (int j = 0; j < length; j++) {
+      int rgb = source[j];
+      float red = (rgb >> 16) & 0xFF;
+      float green = (rgb >> 8) & 0xFF;
+      float blue = rgb & 0xFF;
+      int newRed = (int) (red * 0.393f + green * 0.769f + blue * 0.189f + 0.5f);
+      int newGreen = (int) (red * 0.349f + green * 0.686f + blue * 0.168f + 0.5f);
+      int newBlue = (int) (red * 0.272f + green * 0.534f + blue * 0.131f + 0.5f);
+      target[j] = (Math.min(newRed, 255) << 16) | (Math.min(newGreen, 255) << 8)
+              | Math.min(newBlue, 255);
+    }
+  }
+
+  /**
+   * Replaces each color by the grey of its luma.
+   */
+  static void lumaGrey(int[] source, int[] target, int length) {
+    for (int j = 0; j < length; j++) {
+      int rgb = source[j];
+      float red = (rgb >> 16) & 0xFF;
+      float green = (rgb >> 8) & 0xFF;
+      float blue = rgb & 0xFF;
+      int grey = (int) (0.2126f * red + 0.7152f * green + 0.0722f * blue + 0.5f);
+      target[j] = grey * 0x010101;
+    }
+  }
+}
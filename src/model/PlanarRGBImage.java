@@ -0,0 +1,326 @@
+package model;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The {@code PlanarRGBImage} class is an RGB image that stores each color channel in its own
+ * {@code byte[]} plane, one byte per sample, row-major. Compared with {@link RGBImage} it uses
+ * three bytes per pixel instead of four, and per-channel work such as histograms runs over a
+ * single contiguous array.
+ *
+ * <p>Channel extraction ({@link #createRed()} and friends) and {@link #combineChannels} hand
+ * whole planes to the new image instead of copying them. Planes shared this way are copied
+ * lazily, the first time either image is written to.
+ */
+public class PlanarRGBImage extends AbstractImage {
+
+  private byte[] red;
+  private byte[] green;
+  private byte[] blue;
+
+  // true while any plane may also be referenced by another image
+  private boolean shared;
+
+  /**
+   * Constructs an empty planar image. The image has no planes until it is loaded.
+   */
+  public PlanarRGBImage() {
+    this(0, 0);
+  }
+
+  /**
+   * Constructs a black planar image with the given dimensions.
+   *
+   * @param width  the width of the image.
+   * @param height the height of the image.
+   */
+  public PlanarRGBImage(int width, int height) {
+    this(width, height, new byte[width * height], new byte[width * height],
+            new byte[width * height]);
+  }
+
+  private PlanarRGBImage(int width, int height, byte[] red, byte[] green, byte[] blue) {
+    this.width = width;
+    this.height = height;
+    this.red = red;
+    this.green = green;
+    this.blue = blue;
+  }
+
+  @Override
+  protected int getWidth() {
+    return width;
+  }
+
+  @Override
+  protected int getHeight() {
+    return height;
+  }
+
+  @Override
+  protected PlanarRGBImage createImage() {
+    return new PlanarRGBImage(width, height);
+  }
+
+  @Override
+  protected PlanarRGBImage createImage(int width, int height) {
+    return new PlanarRGBImage(width, height);
+  }
+
+  @Override
+  protected RGBImagePixel getPixel(int x, int y) {
+    return RGBImagePixel.fromPacked(getRGB(x, y));
+  }
+
+  @Override
+  public void setPixel(Pixel obj, int x, int y) {
+    if (x < 0 || x >= height || y < 0 || y >= width) {
+      throw new IndexOutOfBoundsException("Pixel coordinates are out of bounds");
+    }
+    if (!(obj instanceof RGBImagePixel)) {
+      throw new IllegalArgumentException("Not a RGBPixel data");
+    }
+    setRGB(x, y, ((RGBImagePixel) obj).toPacked());
+  }
+
+  @Override
+  protected int getRGB(int x, int y) {
+    int index = x * width + y;
+    return RGBImagePixel.pack(red[index] & 0xFF, green[index] & 0xFF, blue[index] & 0xFF);
+  }
+
+  @Override
+  protected void setRGB(int x, int y, int rgb) {
+    ensureWritable();
+    int index = x * width + y;
+    red[index] = (byte) RGBImagePixel.red(rgb);
+    green[index] = (byte) RGBImagePixel.green(rgb);
+    blue[index] = (byte) RGBImagePixel.blue(rgb);
+  }
+
+  @Override
+  protected void readRow(int x, int[] row) {
+    int rowStart = x * width;
+    for (int j = 0; j < width; j++) {
+      int index = rowStart + j;
+      row[j] = RGBImagePixel.pack(red[index] & 0xFF, green[index] & 0xFF, blue[index] & 0xFF);
+    }
+  }
+
+  @Override
+  protected void writeRow(int x, int[] row, int length) {
+    ensureWritable();
+    int rowStart = x * width;
+    for (int j = 0; j < length; j++) {
+      int index = rowStart + j;
+      red[index] = (byte) RGBImagePixel.red(row[j]);
+      green[index] = (byte) RGBImagePixel.green(row[j]);
+      blue[index] = (byte) RGBImagePixel.blue(row[j]);
+    }
+  }
+
+  @Override
+  protected PlanarRGBImage mapRows(RowOperator operation, int splitIndex) {
+    PlanarRGBImage newImage = createImage();
+    int lastColumn = Math.min(splitIndex, width - 1);
+    Parallelism.forEachBand(height, width, (from, to) -> {
+      int[] row = new int[width];
+      for (int i = from; i < to; i++) {
+        int rowStart = i * width;
+        for (int j = 0; j <= lastColumn; j++) {
+          int index = rowStart + j;
+          row[j] = RGBImagePixel.pack(red[index] & 0xFF, green[index] & 0xFF, blue[index] & 0xFF);
+        }
+        operation.apply(row, row, lastColumn + 1);
+        for (int j = 0; j <= lastColumn; j++) {
+          int index = rowStart + j;
+          newImage.red[index] = (byte) RGBImagePixel.red(row[j]);
+          newImage.green[index] = (byte) RGBImagePixel.green(row[j]);
+          newImage.blue[index] = (byte) RGBImagePixel.blue(row[j]);
+        }
+        int rest = width - lastColumn - 1;
+        System.arraycopy(red, rowStart + lastColumn + 1, newImage.red, rowStart + lastColumn + 1,
+                rest);
+        System.arraycopy(green, rowStart + lastColumn + 1, newImage.green,
+                rowStart + lastColumn + 1, rest);
+        System.arraycopy(blue, rowStart + lastColumn + 1, newImage.blue, rowStart + lastColumn + 1,
+                rest);
+      }
+    });
+    return newImage;
+  }
+
+  /**
+   * Creates a greyscale image of one channel by reusing that channel's plane for all three
+   * planes of the result. No pixel data is copied.
+   *
+   * @param color the color channel to create (red, green, or blue)
+   * @return a new {@link PlanarRGBImage} sharing the selected plane
+   */
+  @Override
+  protected PlanarRGBImage createColorImage(Channel color) {
+    byte[] plane = plane(color);
+    shared = true;
+    PlanarRGBImage colorImage = new PlanarRGBImage(width, height, plane, plane, plane);
+    colorImage.shared = true;
+    return colorImage;
+  }
+
+  /**
+   * Combines planes from three images. When all three images are planar, the result takes over
+   * their planes without copying; otherwise the generic row-by-row combine is used.
+   */
+  @Override
+  protected AbstractImage combineChannels(AbstractImage greenImage, AbstractImage blueImage) {
+    if (!(greenImage instanceof PlanarRGBImage) || !(blueImage instanceof PlanarRGBImage)
+            || getWidth() != greenImage.getWidth() || getHeight() != greenImage.getHeight()
+            || getWidth() != blueImage.getWidth() || getHeight() != blueImage.getHeight()) {
+      return super.combineChannels(greenImage, blueImage);
+    }
+    PlanarRGBImage greenSource = (PlanarRGBImage) greenImage;
+    PlanarRGBImage blueSource = (PlanarRGBImage) blueImage;
+    shared = true;
+    greenSource.shared = true;
+    blueSource.shared = true;
+    PlanarRGBImage combinedImage = new PlanarRGBImage(width, height, red, greenSource.green,
+            blueSource.blue);
+    combinedImage.shared = true;
+    return combinedImage;
+  }
+
+  /**
+   * Counts the first columns of the three planes directly, without packing pixels, in one pass
+   * over bands of rows.
+   *
+   * @param lastColumn the last column that is counted.
+   * @return the histogram of those columns.
+   */
+  @Override
+  protected Histogram histogram(int lastColumn) {
+    int columns = Math.min(lastColumn, width - 1) + 1;
+    int[] redCounts = new int[256];
+    int[] greenCounts = new int[256];
+    int[] blueCounts = new int[256];
+    Parallelism.forEachBand(height, width, (from, to) -> {
+      int[] bandRed = new int[256];
+      int[] bandGreen = new int[256];
+      int[] bandBlue = new int[256];
+      for (int i = from; i < to; i++) {
+        for (int index = i * width; index < i * width + columns; index++) {
+          bandRed[red[index] & 0xFF]++;
+          bandGreen[green[index] & 0xFF]++;
+          bandBlue[blue[index] & 0xFF]++;
+        }
+      }
+      synchronized (redCounts) {
+        Histogram.add(redCounts, bandRed);
+        Histogram.add(greenCounts, bandGreen);
+        Histogram.add(blueCounts, bandBlue);
+      }
+    });
+    return new Histogram(redCounts, greenCounts, blueCounts);
+  }
+
+  @Override
+  public void loadImage(BufferedImage bufferedImage) throws IOException {
+    width = bufferedImage.getWidth();
+    height = bufferedImage.getHeight();
+    red = new byte[width * height];
+    green = new byte[width * height];
+    blue = new byte[width * height];
+    shared = false;
+
+    // Count the histogram while the rows go by, so that it never needs a pass of its own
+    Histogram.Counter counts = new Histogram.Counter();
+    int[] row = new int[width];
+    for (int i = 0; i < height; i++) {
+      BufferedImageBridge.readRow(bufferedImage, i, row);
+      writeRow(i, row);
+      counts.add(row, width);
+    }
+    keepHistogram(counts.toHistogram());
+  }
+
+  @Override
+  public BufferedImage getImage(String imageName) throws IllegalStateException {
+    if (this.width <= 0 || this.height <= 0) {
+      throw new IllegalStateException("Image dimensions must be set before saving");
+    }
+    BufferedImage bufferedImage = BufferedImageBridge.newImage(width, height);
+    int[] row = new int[width];
+    for (int i = 0; i < height; i++) {
+      readRow(i, row);
+      BufferedImageBridge.writeRow(bufferedImage, i, row);
+    }
+    return bufferedImage;
+  }
+
+  /**
+   * Returns the plane backing the given channel.
+   *
+   * @param color the channel.
+   * @return the plane of that channel.
+   */
+  private byte[] plane(Channel color) {
+    switch (color) {
+      case RED:
+        return red;
+      case GREEN:
+        return green;
+      case BLUE:
+        return blue;
+      default:
+        throw new IllegalArgumentException("Invalid color: " + color);
+    }
+  }
+
+  /**
+   * Gives this image private copies of its planes if they may be shared with another image, and
+   * forgets its content hash, as its pixels are about to change.
+   */
+  private void ensureWritable() {
+    pixelsChanged();
+    if (shared) {
+      red = red.clone();
+      green = green.clone();
+      blue = blue.clone();
+      shared = false;
+    }
+  }
+
+  /**
+   * Checks if this image is equal to another object.
+   *
+   * @param obj the object to compare.
+   * @return true if the object is a planar image with the same dimensions and pixels.
+   */
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof PlanarRGBImage)) {
+      return false;
+    }
+    PlanarRGBImage other = (PlanarRGBImage) obj;
+    return width == other.width && height == other.height
+            && Arrays.equals(red, other.red) && Arrays.equals(green, other.green)
+            && Arrays.equals(blue, other.blue);
+  }
+
+  /**
+   * Computes a hash code for this image.
+   *
+   * @return a hash code value for this image
+   */
+  @Override
+  public int hashCode() {
+    int hash = 7;
+    hash = 31 * hash + width;
+    hash = 31 * hash + height;
+    hash = 31 * hash + Long.hashCode(contentHash());
+    return hash;
+  }
+}
@@ -31,6 +31,25 @@ public class RGBImagePixel implements Pixel {
     return List.of(r, g, b);
   }
 
+  @Override
+  public int channelCount() {
+    return 3;
+  }
+
+  @Override
+  public int channel(int index) {
+    switch (index) {
+      case 0:
+        return r;
+      case 1:
+        return g;
+      case 2:
+        return b;
+      default:
+        throw new IndexOutOfBoundsException("RGB pixel has no channel " + index);
+    }
+  }
+
   @Override
   public void setPixelData(List<Integer> channels) {
     if (channels == null || channels.size() != 3) {
@@ -68,6 +87,67 @@ public class RGBImagePixel implements Pixel {
     return b;
   }
 
+  /**
+   * Returns this pixel packed into a single {@code int} in {@code 0xRRGGBB} form.
+   *
+   * @return the packed representation of this pixel.
+   */
+  public int toPacked() {
+    return pack(r, g, b);
+  }
+
+  /**
+   * Creates a pixel from a packed {@code 0xRRGGBB} value.
+   *
+   * @param rgb the packed color value.
+   * @return a new {@code RGBImagePixel} holding the unpacked components.
+   */
+  public static RGBImagePixel fromPacked(int rgb) {
+    return new RGBImagePixel(red(rgb), green(rgb), blue(rgb));
+  }
+
+  /**
+   * Packs the given components into a single {@code int} in {@code 0xRRGGBB} form.
+   *
+   * @param r the red component (0-255).
+   * @param g the green component (0-255).
+   * @param b the blue component (0-255).
+   * @return the packed color value.
+   */
+  public static int pack(int r, int g, int b) {
+    return (r << 16) | (g << 8) | b;
+  }
+
+  /**
+   * Extracts the red component from a packed {@code 0xRRGGBB} value.
+   *
+   * @param rgb the packed color value.
+   * @return the red component (0-255).
+   */
+  public static int red(int rgb) {
+    return (rgb >> 16) & 0xFF;
+  }
+
+  /**
+   * Extracts the green component from a packed {@code 0xRRGGBB} value.
+   *
+   * @param rgb the packed color value.
+   * @return the green component (0-255).
+   */
+  public static int green(int rgb) {
+    return (rgb >> 8) & 0xFF;
+  }
+
+  /**
+   * Extracts the blue component from a packed {@code 0xRRGGBB} value.
+   *
+   * @param rgb the packed color value.
+   * @return the blue component (0-255).
+   */
+  public static int blue(int rgb) {
+    return rgb & 0xFF;
+  }
+
   @Override
   public String toString() {
     return String.format("[%d, %d, %d]", r, g, b);
@@ -0,0 +1,149 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The {@code ResultCache} class keeps the results of recent operations of an {@link ImageModel},
+ * keyed by the {@link ImageNode} key of the result: the operation name and parameters and the
+ * keys of its sources, which lead back to the pixel hashes of the loaded images. Results are
+ * evicted least recently used first once their total size, at four bytes per pixel, would exceed
+ * the limit.
+ *
+ * <p>Images held outside the Java heap are not cached. They are only made for images far larger
+ * than the cache, and the model releases them as soon as they are overwritten.
+ */
+final class ResultCache {
+
+  private final long maxBytes;
+  private final LinkedHashMap<ImageNode.Key, ImageADT> entries;
+  private final Set<ImageADT> cachedImages;
+  private long bytes;
+  private long hits;
+  private long misses;
+
+  /**
+   * Constructs an empty cache.
+   *
+   * @param maxBytes the total size of the results the cache may hold, or 0 to cache nothing.
+   */
+  ResultCache(long maxBytes) {
+    this.maxBytes = maxBytes;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    this.cachedImages = Collections.newSetFromMap(new IdentityHashMap<>());
+  }
+
+  /**
+   * Returns the cached result for a key and marks it as the most recently used, counting a hit
+   * or a miss.
+   *
+   * @param key the key of the result.
+   * @return the result, or null if it is not cached.
+   */
+  ImageADT get(ImageNode.Key key) {
+    ImageADT image = entries.get(key);
+    if (image == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return image;
+  }
+
+  /**
+   * Caches a result, evicting the least recently used results until the cache is within its
+   * limit. A result larger than the limit, or held outside the Java heap, is not cached.
+   *
+   * @param key   the key of the result.
+   * @param image the result.
+   * @return the evicted results, which the cache no longer holds.
+   */
+  List<ImageADT> put(ImageNode.Key key, ImageADT image) {
+    long size = size(image);
+    if (size > maxBytes || entries.containsKey(key)
+            || image instanceof OffHeapRGBImage || image instanceof MappedTiledRGBImage) {
+      return Collections.emptyList();
+    }
+    entries.put(key, image);
+    cachedImages.add(image);
+    bytes += size;
+    List<ImageADT> evicted = new ArrayList<>();
+    Iterator<ImageADT> iterator = entries.values().iterator();
+    while (bytes > maxBytes) {
+      ImageADT eldest = iterator.next();
+      iterator.remove();
+      cachedImages.remove(eldest);
+      bytes -= size(eldest);
+      evicted.add(eldest);
+    }
+    return evicted;
+  }
+
+  /**
+   * Returns whether the result of an operation on the given nodes could be cached, so that the
+   * model can skip building its key when it could not. Nothing is cached with a limit of 0, and
+   * operations on images held outside the Java heap give images held there too.
+   *
+   * @param sources the nodes the operation is applied to.
+   * @return false if the result certainly would not be cached.
+   */
+  boolean mayHold(ImageNode... sources) {
+    if (maxBytes == 0) {
+      return false;
+    }
+    for (ImageNode source : sources) {
+      ImageADT image = source.image();
+      if (image instanceof OffHeapRGBImage || image instanceof MappedTiledRGBImage) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns whether the cache holds the given image, which must then not be released.
+   *
+   * @param image the image.
+   * @return true if the image is a cached result.
+   */
+  boolean contains(ImageADT image) {
+    return cachedImages.contains(image);
+  }
+
+  /**
+   * Returns the number of lookups that found a cached result.
+   *
+   * @return the hit count.
+   */
+  long hits() {
+    return hits;
+  }
+
+  /**
+   * Returns the number of lookups that found no cached result.
+   *
+   * @return the miss count.
+   */
+  long misses() {
+    return misses;
+  }
+
+  /**
+   * Returns the total size of the cached results.
+   *
+   * @return the size in bytes, at four bytes per pixel.
+   */
+  long bytes() {
+    return bytes;
+  }
+
+  private static long size(ImageADT image) {
+    AbstractImage result = (AbstractImage) image;
+    return (long) result.getWidth() * result.getHeight() * Integer.BYTES;
+  }
+}
@@ -0,0 +1,180 @@
+package model;
+
+import java.awt.Image;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Vector;
+
+/**
+ * A read-only {@link RenderedImage} view of an {@link AbstractImage}. Pixels are copied out of
+ * the image only for the region a caller asks for, so an image writer that requests one row at
+ * a time, such as the PNG and BMP writers of {@code javax.imageio}, can save an image that does
+ * not fit in memory. Writers that request the whole raster at once still copy everything.
+ *
+ * <p>The view exposes the image as a grid of {@value #TILE_HEIGHT}-row strips in the same
+ * 24-bit RGB format as {@code BufferedImage.TYPE_INT_RGB}.
+ */
+class RowRenderedImage implements RenderedImage {
+
+  private static final int TILE_HEIGHT = 64;
+
+  private static final ColorModel COLOR_MODEL =
+          new DirectColorModel(24, 0xFF0000, 0x00FF00, 0x0000FF);
+
+  private final AbstractImage image;
+  private final SampleModel sampleModel;
+
+  /**
+   * Creates a view of the given image.
+   *
+   * @param image the image to view.
+   */
+  RowRenderedImage(AbstractImage image) {
+    this.image = image;
+    this.sampleModel = COLOR_MODEL.createCompatibleSampleModel(image.getWidth(),
+            Math.min(TILE_HEIGHT, Math.max(1, image.getHeight())));
+  }
+
+  @Override
+  public Raster getData(Rectangle rect) {
+    Rectangle region = rect.intersection(getBounds());
+    WritableRaster raster = Raster.createWritableRaster(
+            new SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, region.width, region.height,
+                    ((SinglePixelPackedSampleModel) sampleModel).getBitMasks()),
+            new Point(region.x, region.y));
+    copyRows(raster, region);
+    return raster;
+  }
+
+  @Override
+  public Raster getData() {
+    return getData(getBounds());
+  }
+
+  @Override
+  public Raster getTile(int tileX, int tileY) {
+    return getData(new Rectangle(0, tileY * TILE_HEIGHT, getWidth(), TILE_HEIGHT));
+  }
+
+  @Override
+  public WritableRaster copyData(WritableRaster raster) {
+    if (raster == null) {
+      return (WritableRaster) getData();
+    }
+    copyRows(raster, raster.getBounds().intersection(getBounds()));
+    return raster;
+  }
+
+  /**
+   * Copies the pixels of {@code region} from the image into {@code raster}.
+   *
+   * @param raster the destination raster, which must contain {@code region}.
+   * @param region the region to copy, in image coordinates.
+   */
+  private void copyRows(WritableRaster raster, Rectangle region) {
+    int[] row = new int[getWidth()];
+    int[] part = new int[region.width];
+    for (int y = region.y; y < region.y + region.height; y++) {
+      image.readRow(y, row);
+      System.arraycopy(row, region.x, part, 0, region.width);
+      raster.setDataElements(region.x, y, region.width, 1, part);
+    }
+  }
+
+  private Rectangle getBounds() {
+    return new Rectangle(0, 0, getWidth(), getHeight());
+  }
+
+  @Override
+  public Vector<RenderedImage> getSources() {
+    return null;
+  }
+
+  @Override
+  public Object getProperty(String name) {
+    return Image.UndefinedProperty;
+  }
+
+  @Override
+  public String[] getPropertyNames() {
+    return null;
+  }
+
+  @Override
+  public ColorModel getColorModel() {
+    return COLOR_MODEL;
+  }
+
+  @Override
+  public SampleModel getSampleModel() {
+    return sampleModel;
+  }
+
+  @Override
+  public int getWidth() {
+    return image.getWidth();
+  }
+
+  @Override
+  public int getHeight() {
+    return image.getHeight();
+  }
+
+  @Override
+  public int getMinX() {
+    return 0;
+  }
+
+  @Override
+  public int getMinY() {
+    return 0;
+  }
+
+  @Override
+  public int getNumXTiles() {
+    return 1;
+  }
+
+  @Override
+  public int getNumYTiles() {
+    return (getHeight() + TILE_HEIGHT - 1) / TILE_HEIGHT;
+  }
+
+  @Override
+  public int getMinTileX() {
+    return 0;
+  }
+
+  @Override
+  public int getMinTileY() {
+    return 0;
+  }
+
+  @Override
+  public int getTileWidth() {
+    return getWidth();
+  }
+
+  @Override
+  public int getTileHeight() {
+    return TILE_HEIGHT;
+  }
+
+  @Override
+  public int getTileGridXOffset() {
+    return 0;
+  }
+
+  @Override
+  public int getTileGridYOffset() {
+    return 0;
+  }
+}
@@ -0,0 +1,246 @@
+package model;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The {@code ToneCurve} class is a pointwise tone operation compiled to a lookup table: one
+ * 256-entry table per channel that maps an 8-bit input value to an 8-bit output value. Any
+ * operation that changes each channel on its own, such as brightness, levels, color correction
+ * offsets, gamma, contrast, curves or invert, is evaluated once per table entry when the curve
+ * is built, so applying it to an image costs three table lookups per pixel whatever the
+ * operation.
+ *
+ * <p>Curves are immutable. {@link #then(ToneCurve)} composes two curves into a single table, so
+ * a chain of tone operations is still one pass over the image.
+ */
+public final class ToneCurve {
+
+  private static final int LEVELS = 256;
+
+  private final int[] red;
+  private final int[] green;
+  private final int[] blue;
+  // The same tables with each value already moved to its channel's place in a packed color
+  private final int[] redShifted;
+  private final int[] greenShifted;
+
+  private ToneCurve(int[] red, int[] green, int[] blue) {
+    this.red = red;
+    this.green = green;
+    this.blue = blue;
+    this.redShifted = new int[LEVELS];
+    this.greenShifted = new int[LEVELS];
+    for (int value = 0; value < LEVELS; value++) {
+      redShifted[value] = red[value] << 16;
+      greenShifted[value] = green[value] << 8;
+    }
+  }
+
+  /**
+   * Returns the curve that leaves every color unchanged.
+   *
+   * @return the identity curve.
+   */
+  public static ToneCurve identity() {
+    return of(value -> value);
+  }
+
+  /**
+   * Compiles a function of one channel value that is applied to all three channels.
+   *
+   * @param function the function, whose results are clamped to [0, 255].
+   * @return the curve.
+   */
+  public static ToneCurve of(IntUnaryOperator function) {
+    int[] table = table(function);
+    return new ToneCurve(table, table, table);
+  }
+
+  /**
+   * Compiles a separate function for each channel.
+   *
+   * @param red   the function applied to red, whose results are clamped to [0, 255].
+   * @param green the function applied to green, whose results are clamped to [0, 255].
+   * @param blue  the function applied to blue, whose results are clamped to [0, 255].
+   * @return the curve.
+   */
+  public static ToneCurve of(IntUnaryOperator red, IntUnaryOperator green,
+                             IntUnaryOperator blue) {
+    return new ToneCurve(table(red), table(green), table(blue));
+  }
+
+  /**
+   * Returns a curve that adds a fixed offset to each channel.
+   *
+   * @param redOffset   the offset added to red.
+   * @param greenOffset the offset added to green.
+   * @param blueOffset  the offset added to blue.
+   * @return the curve.
+   */
+  public static ToneCurve offsets(int redOffset, int greenOffset, int blueOffset) {
+    return of(value -> value + redOffset, value -> value + greenOffset,
+            value -> value + blueOffset);
+  }
+
+  /**
+   * Returns a gamma correction curve, {@code 255 * (v / 255)^(1 / gamma)}. Values of
+   * {@code gamma} above 1 brighten the midtones and values below 1 darken them.
+   *
+   * @param gamma the gamma value.
+   * @return the curve.
+   * @throws IllegalArgumentException if {@code gamma} is not positive.
+   */
+  public static ToneCurve gamma(double gamma) {
+    if (!(gamma > 0)) {
+      throw new IllegalArgumentException("Gamma must be greater than zero.");
+    }
+    double exponent = 1 / gamma;
+    return of(value -> (int) Math.round(255 * Math.pow(value / 255.0, exponent)));
+  }
+
+  /**
+   * Returns a contrast curve that scales the distance of each value from mid-grey by
+   * {@code factor}. A factor above 1 increases contrast, below 1 reduces it, and 0 turns
+   * every color mid-grey.
+   *
+   * @param factor the contrast factor.
+   * @return the curve.
+   * @throws IllegalArgumentException if {@code factor} is negative.
+   */
+  public static ToneCurve contrast(double factor) {
+    if (!(factor >= 0)) {
+      throw new IllegalArgumentException("Contrast factor must not be negative.");
+    }
+    return of(value -> (int) Math.round((value - 127.5) * factor + 127.5));
+  }
+
+  /**
+   * Returns the curve that inverts every channel.
+   *
+   * @return the curve.
+   */
+  public static ToneCurve invert() {
+    return of(value -> 255 - value);
+  }
+
+  /**
+   * Returns a curve through the given control points, joined by straight lines. Values below
+   * the first point or above the last point map to that point's output.
+   *
+   * @param inputs  the input value of each point, strictly increasing within [0, 255].
+   * @param outputs the output value of each point.
+   * @return the curve.
+   * @throws IllegalArgumentException if there are no points, the arrays differ in length, or
+   *                                  the inputs are not strictly increasing within [0, 255].
+   */
+  public static ToneCurve curves(int[] inputs, int[] outputs) {
+    if (inputs.length == 0 || inputs.length != outputs.length) {
+      throw new IllegalArgumentException("Curves need the same, non-zero number of inputs and "
+              + "outputs.");
+    }
+    for (int k = 0; k < inputs.length; k++) {
+      if (inputs[k] < 0 || inputs[k] > 255 || (k > 0 && inputs[k] <= inputs[k - 1])) {
+        throw new IllegalArgumentException("Curve inputs must increase within 0 - 255.");
+      }
+    }
+    return of(value -> {
+      if (value <= inputs[0]) {
+        return outputs[0];
+      }
+      int k = 1;
+      while (k < inputs.length && inputs[k] < value) {
+        k++;
+      }
+      if (k == inputs.length) {
+        return outputs[k - 1];
+      }
+      double t = (double) (value - inputs[k - 1]) / (inputs[k] - inputs[k - 1]);
+      return (int) Math.round(outputs[k - 1] + t * (outputs[k] - outputs[k - 1]));
+    });
+  }
+
+  /**
+   * Returns the curve that applies this curve and then {@code next}.
+   *
+   * @param next the curve applied to the results of this one.
+   * @return the composed curve.
+   */
+  public ToneCurve then(ToneCurve next) {
+    return of(value -> next.red[red[value]], value -> next.green[green[value]],
+            value -> next.blue[blue[value]]);
+  }
+
+  /**
+   * Applies the curve to a packed {@code 0xRRGGBB} color.
+   *
+   * @param rgb the packed color.
+   * @return the packed result.
+   */
+  public int apply(int rgb) {
+    return redShifted[(rgb >> 16) & 0xFF] | greenShifted[(rgb >> 8) & 0xFF]
+            | blue[rgb & 0xFF];
+  }
+
+  /**
+   * Returns the row form of the curve, which applies it to a run of pixels with table lookups
+   * only.
+   *
+   * @return the row kernel.
+   */
+  AbstractImage.RowOperator kernel() {
+    return (source, target, length) -> {
+      for (int j = 0; j < length; j++) {
+        int rgb = source[j];
+        target[j] = redShifted[(rgb >> 16) & 0xFF] | greenShifted[(rgb >> 8) & 0xFF]
+                | blue[rgb & 0xFF];
+      }
+    };
+  }
+
+  /**
+   * Returns the tables of the curve, which must not be modified.
+   *
+   * @return the red, green and blue tables, in that order.
+   */
+  int[][] tables() {
+    return new int[][]{red, green, blue};
+  }
+
+  /**
+   * Checks if this curve is equal to another object.
+   *
+   * @param obj the object to compare.
+   * @return true if the object is a curve with the same tables.
+   */
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof ToneCurve)) {
+      return false;
+    }
+    ToneCurve other = (ToneCurve) obj;
+    return Arrays.equals(red, other.red) && Arrays.equals(green, other.green)
+            && Arrays.equals(blue, other.blue);
+  }
+
+  /**
+   * Computes a hash code for this curve.
+   *
+   * @return a hash code value for this curve
+   */
+  @Override
+  public int hashCode() {
+    return 31 * (31 * Arrays.hashCode(red) + Arrays.hashCode(green)) + Arrays.hashCode(blue);
+  }
+
+  private static int[] table(IntUnaryOperator function) {
+    int[] table = new int[LEVELS];
+    for (int value = 0; value < LEVELS; value++) {
+      table[value] = AbstractImage.clamp(function.applyAsInt(value));
+    }
+    return table;
+  }
+}
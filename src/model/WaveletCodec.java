@@ -0,0 +1,407 @@
+package model;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The {@code WaveletCodec} class reads and writes images as sparse, quantized Haar wavelet
+ * coefficients, so that the coefficients zeroed by compression take next to no space on disk.
+ *
+ * <p>A file starts with a header: the bytes {@code HAAR}, a format version byte, the width and
+ * height of the image as ints, the decomposition depth as a byte and the quantization step as a
+ * float. The coefficients follow as one Deflate stream. Each channel is the row-major matrix of
+ * coefficients of the channel, padded to a power of 2 in each direction and transformed by
+ * {@link CompressionImage}. Its coefficients are quantized towards zero by the step, so that
+ * values within one step of zero, such as the rounding noise left where compression zeroed a
+ * coefficient, become zero.
+ *
+ * <p>The coefficients are written coarsest first, as a sequence of segments: the top-left region
+ * left once the shorter side is transformed down to a single value, then, one level at a time,
+ * the coefficients that the region twice as large adds around it, in row-major order. Every
+ * level holds one segment for each of the red, green and blue channels. Within a segment the
+ * quantized values are written as pairs of varints: the number of zeros skipped, then the next
+ * value in zigzag form. A segment that ends in zeros ends with a pair whose value is zero.
+ *
+ * <p>Because the stream starts with the coarse levels, an image can be read at a half, a
+ * quarter or less of its size by inflating and transforming back only the first segments, so
+ * the cost of a reduced read follows the size of the result rather than the size of the file.
+ * Reading decodes the stream as it is inflated, straight into one coefficient matrix per
+ * channel of the size being read.
+ *
+ * <p>Both directions hold the {@code double} coefficient matrices of all three channels at once,
+ * since every level interleaves the channels: 24 bytes for each padded pixel being written or
+ * read. Padding can make that four times the pixel count, so writing or fully reading a
+ * 4097x4097 image, padded to 8192x8192, takes about 1.6 GB of heap. A reduced read only holds the
+ * matrices of the reduced size. Sizes whose matrices would not fit in an array are rejected.
+ */
+final class WaveletCodec {
+
+  /**
+   * The file extension of the format.
+   */
+  static final String EXTENSION = ".haar";
+
+  private static final byte[] MAGIC = {'H', 'A', 'A', 'R'};
+  private static final int VERSION = 1;
+  // One step keeps the error of every coefficient below one, which is all but invisible once
+  // the channels are rounded back to 8 bits
+  private static final float QUANTIZATION_STEP = 1.0f;
+  private static final int BUFFER_SIZE = 1 << 16;
+  // Padding a side above 2^30 to a power of 2 would overflow an int
+  private static final int MAX_SIDE = 1 << 30;
+  // The largest array most virtual machines will allocate
+  private static final long MAX_COEFFICIENTS = Integer.MAX_VALUE - 8;
+
+  /**
+   * Creates the image a file is decoded into.
+   */
+  @FunctionalInterface
+  interface Allocator {
+
+    /**
+     * Creates a blank image.
+     *
+     * @param width  the width of the image.
+     * @param height the height of the image.
+     * @return an image whose pixels are all black.
+     */
+    AbstractImage create(int width, int height);
+  }
+
+  private WaveletCodec() {
+  }
+
+  /**
+   * Encodes an image and writes it to a stream. The stream is not closed.
+   *
+   * @param image the image to write.
+   * @param out   the stream to write to.
+   * @throws IOException              if the stream cannot be written.
+   * @throws IllegalArgumentException if the padded coefficients of the image would not fit in an
+   *                                  array.
+   */
+  static void write(AbstractImage image, OutputStream out) throws IOException {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    if (width > MAX_SIDE || height > MAX_SIDE) {
+      throw new IllegalArgumentException("A " + width + "x" + height
+              + " image is too large for the Haar format");
+    }
+    CompressionImage compression = new CompressionImage();
+    int padWidth = compression.paddingSize(width);
+    int padHeight = compression.paddingSize(height);
+    int area = coefficients(padWidth, padHeight);
+
+    DataOutputStream header = new DataOutputStream(out);
+    header.write(MAGIC);
+    header.writeByte(VERSION);
+    header.writeInt(width);
+    header.writeInt(height);
+    header.writeByte(depth(padWidth, padHeight));
+    header.writeFloat(QUANTIZATION_STEP);
+    header.flush();
+
+    AbstractImage.Channel[] colors = AbstractImage.Channel.values();
+    double[][] channels = new double[colors.length][area];
+    int[] row = new int[width];
+    for (int i = 0; i < height; i++) {
+      image.readRow(i, row);
+      for (int j = 0; j < width; j++) {
+        for (int k = 0; k < colors.length; k++) {
+          channels[k][i * padWidth + j] = (row[j] >> colors[k].shift) & 0xFF;
+        }
+      }
+    }
+    for (double[] channel : channels) {
+      compression.haar2DImageTransformation(channel, padWidth, padHeight);
+    }
+
+    Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+    DeflaterOutputStream deflated = new DeflaterOutputStream(out, deflater, BUFFER_SIZE);
+    ByteWriter writer = new ByteWriter(deflated);
+    int levels = levels(padWidth, padHeight);
+    try {
+      for (int level = levels; level >= 0; level--) {
+        for (double[] channel : channels) {
+          writeSegment(writer, channel, padWidth, padWidth, padHeight, level, levels);
+        }
+      }
+      writer.flush();
+      deflated.finish();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Writes the coefficients a level adds to a channel.
+   */
+  private static void writeSegment(ByteWriter writer, double[] channel, int stride, int padWidth,
+                                   int padHeight, int level, int levels) throws IOException {
+    int w = padWidth >> level;
+    int h = padHeight >> level;
+    int innerWidth = level == levels ? 0 : w / 2;
+    int innerHeight = level == levels ? 0 : h / 2;
+    int zeros = 0;
+    for (int i = 0; i < h; i++) {
+      for (int j = i < innerHeight ? innerWidth : 0; j < w; j++) {
+        int quantized = (int) (channel[i * stride + j] / QUANTIZATION_STEP);
+        if (quantized == 0) {
+          zeros++;
+        } else {
+          writer.writeVarint(zeros);
+          writer.writeVarint((quantized << 1) ^ (quantized >> 31));
+          zeros = 0;
+        }
+      }
+    }
+    if (zeros > 0) {
+      writer.writeVarint(zeros);
+      writer.writeVarint(0);
+    }
+  }
+
+  /**
+   * Reads and decodes an image from a stream at its full size. The stream is not closed.
+   *
+   * @param in        the stream to read from.
+   * @param allocator creates the image to decode into, once the size is known.
+   * @return the decoded image.
+   * @throws IOException              if the stream cannot be read or ends early.
+   * @throws IllegalArgumentException if the stream does not hold an image in this format, or if
+   *                                  the coefficients of the image would not fit in an array.
+   */
+  static AbstractImage read(InputStream in, Allocator allocator) throws IOException {
+    return read(in, allocator, 0);
+  }
+
+  /**
+   * Reads and decodes an image from a stream, halving its size the given number of times. Only
+   * the coefficients of the reduced image are read, and each of its pixels is the average of the
+   * pixels of the full image it covers. The stream is not closed, and is left part way through
+   * the coefficients of a reduced image.
+   *
+   * @param in         the stream to read from.
+   * @param allocator  creates the image to decode into, once the size is known.
+   * @param reductions the number of times the size is halved, 0 for the full size.
+   * @return the decoded image, of the full size divided by {@code 2^reductions} and rounded up.
+   * @throws IOException              if the stream cannot be read or ends early.
+   * @throws IllegalArgumentException if the stream does not hold an image in this format, if the
+   *                                  image is too small to be reduced that many times, or if the
+   *                                  coefficients of the reduced image would not fit in an array.
+   */
+  static AbstractImage read(InputStream in, Allocator allocator, int reductions)
+          throws IOException {
+    DataInputStream header = new DataInputStream(in);
+    byte[] magic = new byte[MAGIC.length];
+    header.readFully(magic);
+    if (!Arrays.equals(magic, MAGIC)) {
+      throw new IllegalArgumentException("Invalid Haar file: missing HAAR header");
+    }
+    int version = header.readUnsignedByte();
+    if (version != VERSION) {
+      throw new IllegalArgumentException("Invalid Haar file: unsupported version " + version);
+    }
+    int width = header.readInt();
+    int height = header.readInt();
+    if (width < 1 || height < 1 || width > MAX_SIDE || height > MAX_SIDE) {
+      throw new IllegalArgumentException("Invalid Haar file: bad size " + width + "x" + height);
+    }
+    CompressionImage compression = new CompressionImage();
+    int padWidth = compression.paddingSize(width);
+    int padHeight = compression.paddingSize(height);
+    int depth = header.readUnsignedByte();
+    if (depth != depth(padWidth, padHeight)) {
+      throw new IllegalArgumentException("Invalid Haar file: unsupported depth " + depth);
+    }
+    double step = header.readFloat();
+    int levels = levels(padWidth, padHeight);
+    if (reductions < 0 || reductions > levels) {
+      throw new IllegalArgumentException("A " + width + "x" + height
+              + " image can be halved at most " + levels + " times");
+    }
+
+    // The coefficients of the reduced image are the top-left region of the full coefficients
+    int regionWidth = padWidth >> reductions;
+    int regionHeight = padHeight >> reductions;
+    int area = coefficients(regionWidth, regionHeight);
+    double[][] channels = new double[AbstractImage.Channel.values().length][];
+    Inflater inflater = new Inflater();
+    ByteReader reader = new ByteReader(new InflaterInputStream(in, inflater, BUFFER_SIZE));
+    try {
+      for (int k = 0; k < channels.length; k++) {
+        channels[k] = new double[area];
+      }
+      for (int level = levels; level >= reductions; level--) {
+        for (double[] channel : channels) {
+          readSegment(reader, channel, regionWidth, padWidth, padHeight, level, levels, step);
+        }
+      }
+    } finally {
+      inflater.end();
+    }
+    for (double[] channel : channels) {
+      compression.haar2DImageInverse(channel, regionWidth, regionHeight);
+    }
+
+    // Each level of the transform scales averages by 2, and blocks on the right and bottom edges
+    // only cover part of the image, the rest being padding
+    int block = 1 << reductions;
+    int outputWidth = (width + block - 1) / block;
+    int outputHeight = (height + block - 1) / block;
+    AbstractImage image = allocator.create(outputWidth, outputHeight);
+    AbstractImage.Channel[] colors = AbstractImage.Channel.values();
+    int[] row = new int[outputWidth];
+    for (int i = 0; i < outputHeight; i++) {
+      int rows = Math.min(block, height - i * block);
+      for (int j = 0; j < outputWidth; j++) {
+        int pixels = rows * Math.min(block, width - j * block);
+        double scale = (double) block / pixels;
+        int rgb = 0;
+        for (int k = 0; k < colors.length; k++) {
+          double value = channels[k][i * regionWidth + j] * scale;
+          rgb |= AbstractImage.clamp((int) Math.round(value)) << colors[k].shift;
+        }
+        row[j] = rgb;
+      }
+      image.writeRow(i, row);
+    }
+    return image;
+  }
+
+  /**
+   * Reads the coefficients a level adds to a channel into its place in the given region.
+   */
+  private static void readSegment(ByteReader reader, double[] channel, int stride, int padWidth,
+                                  int padHeight, int level, int levels, double step)
+          throws IOException {
+    int w = padWidth >> level;
+    int h = padHeight >> level;
+    int innerWidth = level == levels ? 0 : w / 2;
+    int innerHeight = level == levels ? 0 : h / 2;
+    // The zeros left to skip before the pending value, or -1 once it has been placed
+    int zeros = -1;
+    int zigzag = 0;
+    for (int i = 0; i < h; i++) {
+      for (int j = i < innerHeight ? innerWidth : 0; j < w; j++) {
+        if (zeros < 0) {
+          zeros = reader.readVarint();
+          zigzag = reader.readVarint();
+          if (zeros < 0) {
+            throw new IllegalArgumentException("Invalid Haar file: corrupt coefficients");
+          }
+        }
+        if (zeros > 0) {
+          zeros--;
+        } else {
+          int quantized = (zigzag >>> 1) ^ -(zigzag & 1);
+          // Values are rebuilt at the middle of the interval they were truncated from
+          channel[i * stride + j] = (quantized + Math.signum(quantized) * 0.5) * step;
+          zeros = -1;
+        }
+      }
+    }
+    if (zeros > 0 || (zeros == 0 && zigzag != 0)) {
+      throw new IllegalArgumentException("Invalid Haar file: corrupt coefficients");
+    }
+  }
+
+  /**
+   * Returns the number of coefficients in a channel of the given padded size.
+   *
+   * @throws IllegalArgumentException if they would not fit in an array.
+   */
+  private static int coefficients(int padWidth, int padHeight) {
+    long area = (long) padWidth * padHeight;
+    if (area > MAX_COEFFICIENTS) {
+      throw new IllegalArgumentException("A " + padWidth + "x" + padHeight
+              + " channel of Haar coefficients is too large to allocate");
+    }
+    return (int) area;
+  }
+
+  /**
+   * Returns the number of levels the transform of a padded channel goes through.
+   */
+  private static int depth(int padWidth, int padHeight) {
+    return Integer.numberOfTrailingZeros(Math.max(padWidth, padHeight));
+  }
+
+  /**
+   * Returns the number of levels that transform both the rows and the columns, which is the
+   * number of times the image can be halved on reading.
+   */
+  private static int levels(int padWidth, int padHeight) {
+    return Integer.numberOfTrailingZeros(Math.min(padWidth, padHeight));
+  }
+
+  /**
+   * Buffers varints on their way into a stream, so that the stream sees large writes only.
+   */
+  private static final class ByteWriter {
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+
+    private ByteWriter(OutputStream out) {
+      this.out = out;
+    }
+
+    private void writeVarint(int value) throws IOException {
+      if (position > buffer.length - 5) {
+        flush();
+      }
+      while ((value & ~0x7F) != 0) {
+        buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      buffer[position++] = (byte) value;
+    }
+
+    private void flush() throws IOException {
+      out.write(buffer, 0, position);
+      position = 0;
+    }
+  }
+
+  /**
+   * Reads varints out of a stream through a buffer of its own.
+   */
+  private static final class ByteReader {
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+
+    private ByteReader(InputStream in) {
+      this.in = in;
+    }
+
+    private int readVarint() throws IOException {
+      int value = 0;
+      for (int shift = 0; shift < 35; shift += 7) {
+        if (position == limit) {
+          limit = in.read(buffer, 0, buffer.length);
+          position = 0;
+          if (limit <= 0) {
+            throw new IOException("Haar file ends early");
+          }
+        }
+        byte b = buffer[position++];
+        value |= (b & 0x7F) << shift;
+        if (b >= 0) {
+          return value;
+        }
+      }
+      throw new IllegalArgumentException("Invalid Haar file: corrupt varint");
+    }
+  }
+}
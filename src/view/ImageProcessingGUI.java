@@ -5,13 +5,21 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Component;
+import java.awt.Container;
 import java.awt.FlowLayout;
 import java.awt.Cursor;
+import java.awt.event.KeyAdapter;
+import java.awt.event.MouseAdapter;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
 
+import javax.swing.AbstractButton;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
@@ -29,6 +37,7 @@ import javax.swing.ImageIcon;
 import javax.swing.BorderFactory;
 import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 
 
 import controller.Features;
@@ -47,6 +56,8 @@ public class ImageProcessingGUI extends JFrame implements IView {
   private JButton saveButton;
   private JButton adjustBrightnessButton;
   private JButton compressButton;
+  // The controls disabled while an operation runs, to be enabled again once it is done
+  private final List<Component> disabledWhileBusy = new ArrayList<>();
   private JButton clearImage;
   private JButton adjustLevelsButton;
   private JButton resetButton;
@@ -305,6 +316,10 @@ public class ImageProcessingGUI extends JFrame implements IView {
    */
   @Override
   public void displayImage(BufferedImage image, ImageType type) {
+    if (!SwingUtilities.isEventDispatchThread()) {
+      SwingUtilities.invokeLater(() -> displayImage(image, type));
+      return;
+    }
     if (type == ImageType.WORKING_IMAGE) {
       imageLabel.setIcon(new ImageIcon(image));
     } else {
@@ -552,15 +567,13 @@ public class ImageProcessingGUI extends JFrame implements IView {
           throw new IllegalArgumentException("Compression value must be between 1 and 100.");
         }
         compressionInput.setBorder(BorderFactory.createLineBorder(Color.GRAY, 1));
-        features.compress(compressionValue);
+        compressInBackground(features, compressionValue);
       } catch (NumberFormatException ex) {
         compressionInput.setBorder(BorderFactory.createLineBorder(Color.RED, 2));
         showError("Please enter a numeric value for compression.");
       } catch (IllegalArgumentException ex) {
         compressionInput.setBorder(BorderFactory.createLineBorder(Color.RED, 2));
         showError(ex.getMessage());
-      } catch (IOException ex) {
-        showError("Error compressing image: " + ex.getMessage());
       }
     });
 
@@ -765,6 +778,10 @@ public class ImageProcessingGUI extends JFrame implements IView {
    */
   @Override
   public void showError(String message) {
+    if (!SwingUtilities.isEventDispatchThread()) {
+      SwingUtilities.invokeLater(() -> showError(message));
+      return;
+    }
     JOptionPane.showMessageDialog(this, message, "Error",
             JOptionPane.ERROR_MESSAGE);
   }
@@ -796,6 +813,86 @@ public class ImageProcessingGUI extends JFrame implements IView {
     splitPreviewDropDown.setEnabled(false);
   }
 
+  /**
+   * Compresses the image on a worker thread, so that the window keeps repainting on large
+   * photos. Only the compression itself runs there; the result is stored and shown on the event
+   * thread once it is done. Input to the window is blocked until then.
+   *
+   * @param features         the controller's operations.
+   * @param compressionValue the compression percentage.
+   */
+  private void compressInBackground(Features features, int compressionValue) {
+    Supplier<Runnable> compression = features.prepareCompress(compressionValue);
+    setBusy(true);
+    new SwingWorker<Runnable, Void>() {
+      @Override
+      protected Runnable doInBackground() {
+        return compression.get();
+      }
+
+      @Override
+      protected void done() {
+        setBusy(false);
+        try {
+          get().run();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+          // Errors such as OutOfMemoryError carry no message, so name them by their type
+          Throwable cause = ex.getCause();
+          String reason = cause.getMessage() != null ? cause.getMessage() : cause.toString();
+          showError("Error compressing image: " + reason);
+        }
+      }
+    }.execute();
+  }
+
+  /**
+   * Shows a wait cursor over the window while an operation runs, disabling its controls and
+   * swallowing its mouse and key input, and enables the controls that were disabled once it is
+   * done.
+   *
+   * @param busy whether an operation is running.
+   */
+  private void setBusy(boolean busy) {
+    Component glassPane = getGlassPane();
+    if (glassPane.getMouseListeners().length == 0) {
+      glassPane.addMouseListener(new MouseAdapter() {
+      });
+      glassPane.addKeyListener(new KeyAdapter() {
+      });
+      glassPane.setFocusable(true);
+    }
+    if (busy) {
+      disableControls(getContentPane());
+    } else {
+      for (Component control : disabledWhileBusy) {
+        control.setEnabled(true);
+      }
+      disabledWhileBusy.clear();
+    }
+    glassPane.setCursor(Cursor.getPredefinedCursor(
+            busy ? Cursor.WAIT_CURSOR : Cursor.DEFAULT_CURSOR));
+    glassPane.setVisible(busy);
+    if (busy) {
+      glassPane.requestFocusInWindow();
+    }
+  }
+
+  private void disableControls(Container container) {
+    for (Component component : container.getComponents()) {
+      if (component instanceof AbstractButton || component instanceof JComboBox
+              || component instanceof JTextField) {
+        if (component.isEnabled()) {
+          component.setEnabled(false);
+          disabledWhileBusy.add(component);
+        }
+      } else if (component instanceof Container) {
+        disableControls((Container) component);
+      }
+    }
+  }
+
   private JButton createCustomButton(String text) {
     JButton button = new JButton(text);
     button.setPreferredSize(new Dimension(150, 30));
@@ -1,6 +1,7 @@
 package mocktest;
 
 import java.io.IOException;
+import java.util.function.Supplier;
 
 import controller.Features;
 
@@ -274,6 +275,18 @@ public class MockController implements Features {
     log.append("compress called with percentage: ").append(percentage).append("\n");
   }
 
+  /**
+   * Logs the compression of the image with the specified percentage once it is stored.
+   *
+   * @param percentage the percentage of compression to apply
+   * @return the compression
+   */
+  @Override
+  public Supplier<Runnable> prepareCompress(int percentage) {
+    return () -> () -> log.append("compress called with percentage: ").append(percentage)
+            .append("\n");
+  }
+
   /**
    * Logs the downscaling of the image with the specified width and height.
    *
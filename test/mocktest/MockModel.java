@@ -4,8 +4,11 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Supplier;
 
+import model.Histogram;
 import model.IModel;
+import model.ToneCurve;
 
 /**
  * The {@code MockModel} class is a mock implementation of the {@link IModel} interface
@@ -41,6 +44,25 @@ public class MockModel implements IModel {
     return images.get(imageName);
   }
 
+  @Override
+  public void loadImageFile(String filePath, String imageName) throws IOException {
+    lastOperation = "loadImageFile";
+    sourceImageName = imageName;
+  }
+
+  @Override
+  public void loadImageFile(String filePath, String imageName, int reduction)
+      throws IOException {
+    loadImageFile(filePath, imageName);
+  }
+
+  @Override
+  public boolean saveImageFile(String imageName, String outputPath) throws IOException {
+    lastOperation = "saveImageFile";
+    sourceImageName = imageName;
+    return images.containsKey(imageName);
+  }
+
   @Override
   public void brightenImage(String value, String sourceImageName, String targetImageName) {
     lastOperation = "brightenImage";
@@ -66,6 +88,19 @@ public class MockModel implements IModel {
     images.put(targetImageName, new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB));
   }
 
+  @Override
+  public void createHistogram(String sourceImageName, String targetImageName, int width,
+      int height, boolean logScale) throws IOException {
+    createHistogram(sourceImageName, targetImageName);
+  }
+
+  @Override
+  public Histogram getHistogram(String imageName) {
+    lastOperation = "getHistogram";
+    this.sourceImageName = imageName;
+    return null;
+  }
+
   @Override
   public void colorCorrection(String sourceImageName, String targetImageName, int splitPercentage) {
     lastOperation = "colorCorrection";
@@ -83,6 +118,15 @@ public class MockModel implements IModel {
     this.enteredPercentage = splitPercentage;
   }
 
+  @Override
+  public void applyTone(ToneCurve curve, String sourceImageName, String targetImageName,
+      int splitPercentage) {
+    lastOperation = "applyTone";
+    this.sourceImageName = sourceImageName;
+    this.targetImageName = targetImageName;
+    this.enteredPercentage = splitPercentage;
+  }
+
   @Override
   public void rgbCombine(String targetImageName, String redImageName, String greenImageName,
       String blueImageName) {
@@ -105,6 +149,17 @@ public class MockModel implements IModel {
     this.enteredPercentage = percentage;
   }
 
+  @Override
+  public void compress(int percentage, String imageName, String outputPath, boolean joint) {
+    compress(percentage, imageName, outputPath);
+  }
+
+  @Override
+  public Supplier<Runnable> prepareCompress(int percentage, String imageName,
+                                            String outputPath) {
+    return () -> () -> compress(percentage, imageName, outputPath);
+  }
+
   @Override
   public void downscale(String sourceImageName, String targetImageName, int newWidth,
       int newHeight) {
@@ -129,6 +184,16 @@ public class MockModel implements IModel {
     images.put(resetImage, images.get(originalImage));
   }
 
+  @Override
+  public long getCacheHits() {
+    return 0;
+  }
+
+  @Override
+  public long getCacheMisses() {
+    return 0;
+  }
+
   // Utility methods to verify the last operation
   public String getLastOperation() {
     return lastOperation;
@@ -4,11 +4,14 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import static model.RGBImage.pixelMatrixToString;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * The {@code AbstractImageTest} class contains unit tests for the abstract class
@@ -803,14 +806,70 @@ public class AbstractImageTest {
     RGBImagePixel[][] actualPixels = compressedImage.getImage();
     System.out.println("Compressed Image Pixels:");
 
+    // Coefficients are exact, so red reconstructs to exactly 177.5 and rounds up, where rounding
+    // to integers after every step used to land on 177
     RGBImagePixel[][] compressedPixels = {
-            {new RGBImagePixel(177, 163, 163), new RGBImagePixel(0, 163, 0)},
-            {new RGBImagePixel(0, 163, 163), new RGBImagePixel(177, 163, 0)}
+            {new RGBImagePixel(178, 163, 163), new RGBImagePixel(0, 163, 0)},
+            {new RGBImagePixel(0, 163, 163), new RGBImagePixel(178, 163, 0)}
     };
 
     assertPixelMatrixEquals(compressedPixels, actualPixels);
   }
 
+  @Test
+  public void testJointThresholdSpansAllChannels() {
+    CompressionImage compression = new CompressionImage();
+    double[] flat = {1, 2, 3, 4};
+    double[] detailed = {10, 20, 30, 40};
+    compression.threshold(50, flat, detailed);
+    assertTrue(Arrays.equals(new double[]{0, 0, 0, 4}, flat));
+    assertTrue(Arrays.equals(new double[]{10, 20, 30, 40}, detailed));
+
+    double[] alone = {1, 2, 3, 4};
+    compression.threshold(50, alone);
+    assertTrue(Arrays.equals(new double[]{0, 2, 3, 4}, alone));
+  }
+
+  @Test
+  public void testRectangularTransformRoundTrips() {
+    CompressionImage compression = new CompressionImage();
+    for (int[] size : new int[][]{{16, 2}, {2, 16}, {8, 8}, {32, 4}}) {
+      double[] channel = new double[size[0] * size[1]];
+      for (int k = 0; k < channel.length; k++) {
+        channel[k] = (k * 37) % 256;
+      }
+      double[] original = channel.clone();
+      compression.haar2DImageTransformation(channel, size[0], size[1]);
+      // All of the signal ends up in the first coefficient
+      double sum = 0;
+      for (double value : original) {
+        sum += value;
+      }
+      assertEquals(sum / Math.sqrt(channel.length), channel[0], 1e-9);
+      compression.haar2DImageInverse(channel, size[0], size[1]);
+      for (int k = 0; k < channel.length; k++) {
+        assertEquals(original[k], channel[k], 1e-9);
+      }
+    }
+  }
+
+  @Test
+  public void testJointCompressionOfGreyMatchesPerChannel() {
+    originalImage.setWidth(3);
+    originalImage.setHeight(3);
+    RGBImagePixel[][] pixels = new RGBImagePixel[3][3];
+    for (int i = 0; i < 3; i++) {
+      for (int j = 0; j < 3; j++) {
+        int grey = (i * 70 + j * 40) % 256;
+        pixels[i][j] = new RGBImagePixel(grey, grey, grey);
+      }
+    }
+    originalImage.setImage(pixels);
+    // With three identical channels the joint percentile is the per-channel one
+    assertPixelMatrixEquals(((RGBImage) originalImage.compressImage(90)).getImage(),
+            ((RGBImage) originalImage.compressImage(90, true)).getImage());
+  }
+
 
   @Test
   public void testColorCorrection() {
@@ -1226,6 +1285,49 @@ public class AbstractImageTest {
   }
 
 
+  @Test
+  public void testPackedPixelsMatchPixelMatrix() {
+    int[] packed = originalImage.getPixels();
+
+    assertEquals(4, packed.length, "Packed buffer should hold one int per pixel");
+    assertEquals(0xFF0000, packed[0]);
+    assertEquals(0x00FF00, packed[1]);
+    assertEquals(0x0000FF, packed[2]);
+    assertEquals(0xFFFF00, packed[3]);
+  }
+
+  @Test
+  public void testEqualsComparesPixelContent() {
+    RGBImage copy = new RGBImage();
+    copy.setWidth(2);
+    copy.setHeight(2);
+    copy.setPixels(originalImage.getPixels().clone());
+
+    assertEquals(originalImage, copy);
+    assertEquals(originalImage.hashCode(), copy.hashCode());
+  }
+
+  @Test
+  public void testContentHashMatchesAcrossLayoutsAndTracksChanges() {
+    PlanarRGBImage planar = new PlanarRGBImage(2, 2);
+    for (int i = 0; i < 2; i++) {
+      for (int j = 0; j < 2; j++) {
+        planar.setRGB(i, j, originalImage.getRGB(i, j));
+      }
+    }
+    long hash = originalImage.contentHash();
+    assertEquals(hash, planar.contentHash());
+    assertTrue(originalImage.samePixels(planar));
+
+    planar.setPixel(new RGBImagePixel(1, 2, 3), 1, 1);
+    assertTrue(hash != planar.contentHash());
+    assertFalse(originalImage.samePixels(planar));
+
+    RGBImage flipped = (RGBImage) ((AbstractImage) originalImage.flipHorizontal()).flipHorizontal();
+    assertEquals(hash, flipped.contentHash());
+    assertEquals(originalImage, flipped);
+  }
+
   private void assertPixelMatrixEquals(RGBImagePixel[][] expected, RGBImagePixel[][] actual) {
 
     assertEquals(expected.length, actual.length, "Image heights do not match");
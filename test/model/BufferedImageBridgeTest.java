@@ -0,0 +1,95 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The {@code BufferedImageBridgeTest} class checks that the direct raster reads and writes of
+ * {@code BufferedImageBridge} give the same pixels as {@code BufferedImage.getRGB}.
+ */
+public class BufferedImageBridgeTest {
+
+  private static final int[] TYPES = {
+    BufferedImage.TYPE_INT_RGB,
+    BufferedImage.TYPE_INT_ARGB,
+    BufferedImage.TYPE_3BYTE_BGR,
+    BufferedImage.TYPE_4BYTE_ABGR,
+    BufferedImage.TYPE_USHORT_565_RGB
+  };
+
+  @Test
+  public void testReadRowMatchesGetRGB() {
+    for (int type : TYPES) {
+      BufferedImage image = randomImage(type, 7, 5);
+      assertArrayEquals(expectedPixels(image), readAllRows(image),
+              "Pixels differ for image type " + type);
+    }
+  }
+
+  @Test
+  public void testReadRowHandlesSubimages() {
+    for (int type : TYPES) {
+      BufferedImage image = randomImage(type, 9, 8).getSubimage(2, 3, 5, 4);
+      int[] expected = expectedPixels(image);
+      int[] row = new int[image.getWidth()];
+      for (int y = 0; y < image.getHeight(); y++) {
+        BufferedImageBridge.readRow(image, y, row);
+        for (int x = 0; x < image.getWidth(); x++) {
+          assertEquals(expected[y * image.getWidth() + x], row[x],
+                  "Pixel (" + x + ", " + y + ") differs for image type " + type);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testWriteRowRoundTrips() {
+    int[] pixels = expectedPixels(randomImage(BufferedImage.TYPE_INT_RGB, 6, 4));
+    BufferedImage image = BufferedImageBridge.newImage(6, 4);
+    int[] row = new int[6];
+    for (int y = 0; y < 4; y++) {
+      System.arraycopy(pixels, y * 6, row, 0, 6);
+      BufferedImageBridge.writeRow(image, y, row);
+    }
+
+    assertEquals(BufferedImage.TYPE_INT_RGB, image.getType());
+    assertArrayEquals(pixels, expectedPixels(image));
+    assertArrayEquals(pixels, readAllRows(image));
+  }
+
+  private BufferedImage randomImage(int type, int width, int height) {
+    BufferedImage image = new BufferedImage(width, height, type);
+    Random random = new Random(type);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setRGB(x, y, random.nextInt());
+      }
+    }
+    return image;
+  }
+
+  private int[] expectedPixels(BufferedImage image) {
+    int[] pixels = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0,
+            image.getWidth());
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] &= 0xFFFFFF;
+    }
+    return pixels;
+  }
+
+  private int[] readAllRows(BufferedImage image) {
+    int width = image.getWidth();
+    int[] pixels = new int[width * image.getHeight()];
+    int[] row = new int[width];
+    for (int y = 0; y < image.getHeight(); y++) {
+      BufferedImageBridge.readRow(image, y, row);
+      System.arraycopy(row, 0, pixels, y * width, width);
+    }
+    return pixels;
+  }
+}
@@ -0,0 +1,115 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The {@code ConvolutionTest} class contains unit tests for {@code Convolution}. Both the
+ * separable and the direct path are compared with a plain two-dimensional convolution that
+ * evaluates every tap of the kernel at every pixel.
+ */
+public class ConvolutionTest {
+
+  private static final double[][] BLUR = {
+          {0.0625, 0.125, 0.0625},
+          {0.125, 0.25, 0.125},
+          {0.0625, 0.125, 0.0625}
+  };
+
+  private static final double[][] SHARPEN = {
+          {-0.125, -0.125, -0.125, -0.125, -0.125},
+          {-0.125, 0.25, 0.25, 0.25, -0.125},
+          {-0.125, 0.25, 1, 0.25, -0.125},
+          {-0.125, 0.25, 0.25, 0.25, -0.125},
+          {-0.125, -0.125, -0.125, -0.125, -0.125}
+  };
+
+  private RGBImage image;
+
+  /**
+   * setup will load a random 37x23 image.
+   */
+  @BeforeEach
+  public void setUp() throws IOException {
+    BufferedImage source = new BufferedImage(37, 23, BufferedImage.TYPE_INT_RGB);
+    Random random = new Random(5);
+    for (int y = 0; y < source.getHeight(); y++) {
+      for (int x = 0; x < source.getWidth(); x++) {
+        source.setRGB(x, y, random.nextInt(0x1000000));
+      }
+    }
+    image = new RGBImage();
+    image.loadImage(source);
+  }
+
+  @Test
+  public void testDetectsSeparableKernels() {
+    double[] binomial = {1 / 16.0, 4 / 16.0, 6 / 16.0, 4 / 16.0, 1 / 16.0};
+    double[][] gaussian = new double[5][5];
+    for (int i = 0; i < 5; i++) {
+      for (int j = 0; j < 5; j++) {
+        gaussian[i][j] = binomial[i] * binomial[j];
+      }
+    }
+
+    assertTrue(new Convolution(BLUR).isSeparable());
+    assertTrue(new Convolution(gaussian).isSeparable());
+    assertFalse(new Convolution(SHARPEN).isSeparable());
+    assertFalse(new Convolution(new double[][]{{0, 0, 0}, {0, 0, 0}, {0, 0, 0}}).isSeparable());
+
+    assertConvolves(gaussian, image.getWidth());
+  }
+
+  @Test
+  public void testBothPathsMatchTwoDimensionalConvolution() {
+    assertConvolves(BLUR, image.getWidth());
+    assertConvolves(BLUR, 10);
+    assertConvolves(SHARPEN, image.getWidth());
+    assertConvolves(SHARPEN, 1);
+  }
+
+  private void assertConvolves(double[][] kernel, int columns) {
+    RGBImage target = image.createImage();
+    new Convolution(kernel).apply(image, target, columns);
+    for (int i = 0; i < image.getHeight(); i++) {
+      for (int j = 0; j < columns; j++) {
+        assertEquals(convolveAt(kernel, i, j), target.getRGB(i, j),
+                "Pixel at (" + i + ", " + j + ") does not match");
+      }
+      for (int j = columns; j < image.getWidth(); j++) {
+        assertEquals(0, target.getRGB(i, j), "Column " + j + " should not be written");
+      }
+    }
+  }
+
+  private int convolveAt(double[][] kernel, int i, int j) {
+    int radius = kernel.length / 2;
+    double[] sums = new double[3];
+    for (int ki = -radius; ki <= radius; ki++) {
+      for (int kj = -radius; kj <= radius; kj++) {
+        int ni = i + ki;
+        int nj = j + kj;
+        if (ni >= 0 && ni < image.getHeight() && nj >= 0 && nj < image.getWidth()) {
+          int rgb = image.getRGB(ni, nj);
+          double value = kernel[ki + radius][kj + radius];
+          sums[0] += RGBImagePixel.red(rgb) * value;
+          sums[1] += RGBImagePixel.green(rgb) * value;
+          sums[2] += RGBImagePixel.blue(rgb) * value;
+        }
+      }
+    }
+    int[] channels = new int[3];
+    for (int c = 0; c < 3; c++) {
+      channels[c] = (int) Math.round(Math.min(Math.max(sums[c], 0), 255));
+    }
+    return RGBImagePixel.pack(channels[0], channels[1], channels[2]);
+  }
+}
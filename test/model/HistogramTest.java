@@ -0,0 +1,142 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Random;
+
+import static model.LayoutFixtures.assertSamePixels;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The {@code HistogramTest} class contains unit tests for {@code Histogram} and
+ * {@code HistogramRenderer}. It checks that the histograms counted while loading and passed on by
+ * operations match counting the pixels of the result, and how the counts are drawn and written.
+ */
+public class HistogramTest {
+
+  private RGBImage image;
+
+  /**
+   * setup will load a 70x40 image of random colors.
+   */
+  @BeforeEach
+  public void setUp() throws IOException {
+    Random random = new Random(18);
+    BufferedImage source = new BufferedImage(70, 40, BufferedImage.TYPE_INT_RGB);
+    for (int y = 0; y < 40; y++) {
+      for (int x = 0; x < 70; x++) {
+        source.setRGB(x, y, random.nextInt(0x1000000));
+      }
+    }
+    image = new RGBImage();
+    image.loadImage(source);
+  }
+
+  @Test
+  public void testLoadCountsHistogram() {
+    assertCounted(image);
+  }
+
+  @Test
+  public void testOperationsPassHistogramOn() {
+    assertCounted((AbstractImage) image.brightness(40));
+    assertCounted((AbstractImage) image.applyTone(ToneCurve.gamma(2.2), 35));
+    assertCounted((AbstractImage) image.colorCorrection(60));
+    assertCounted((AbstractImage) image.flipHorizontal());
+    assertCounted((AbstractImage) image.flipVertical());
+    assertCounted((AbstractImage) image.createGreen());
+    assertCounted((AbstractImage) ((AbstractImage) image.flipVertical()).brightness(-30));
+  }
+
+  @Test
+  public void testMaskedOperationUpdatesHistogram() {
+    RGBImage mask = image.createImage(70, 40);
+    for (int i = 0; i < 40; i++) {
+      for (int j = 0; j < 70; j++) {
+        mask.setRGB(i, j, (i + j) % 3 == 0 ? 0x000000 : 0xFFFFFF);
+      }
+    }
+    assertCounted((AbstractImage) image.applyPartialWithMasking(mask, "sepia"));
+  }
+
+  @Test
+  public void testRendererDrawsEachChannelToScale() {
+    int[] red = new int[256];
+    int[] green = new int[256];
+    int[] blue = new int[256];
+    red[0] = 10;
+    red[255] = 5;
+    green[128] = 100;
+    blue[100] = 1;
+    Histogram histogram = new Histogram(red, green, blue);
+
+    int[] linear = new HistogramRenderer(300, 101, false).render(histogram);
+    assertEquals(300 * 101, linear.length);
+    // The red peak at value 0 reaches the top row, value 255 is drawn half way up
+    assertEquals(0xFF0000, linear[0]);
+    assertEquals(0xFF0000, linear[50 * 300 + 299]);
+    // The green peak is at the top, in the column of value 128
+    assertEquals(0x00FF00, linear[128 * 299 / 255]);
+    // Away from the lines the canvas is white, with a grid every 10 pixels
+    assertEquals(0xFFFFFF, linear[95 * 300 + 205]);
+    assertEquals(0xC0C0C0, linear[95 * 300 + 200]);
+
+    int[] log = new HistogramRenderer(300, 101, true).render(histogram);
+    int row = 100 - (int) Math.round(Math.log1p(5) / Math.log1p(10) * 100);
+    assertEquals(0xFF0000, log[row * 300 + 299]);
+  }
+
+  @Test
+  public void testGraphIsAlwaysPacked() {
+    HistogramRenderer renderer = new HistogramRenderer(64, 32, false);
+    ImageADT graph = image.generateHistogram(renderer);
+    assertTrue(graph instanceof RGBImage);
+    assertEquals(64, ((RGBImage) graph).getWidth());
+    assertEquals(32, ((RGBImage) graph).getHeight());
+
+    // A tiled source does not give its small graph a scratch file of its own
+    AbstractImage tiled = ImageStorage.TILED.newImage(image.getWidth(), image.getHeight());
+    int[] row = new int[image.getWidth()];
+    for (int i = 0; i < image.getHeight(); i++) {
+      image.readRow(i, row);
+      tiled.writeRow(i, row);
+    }
+    ImageADT tiledGraph = tiled.generateHistogram(renderer);
+    assertTrue(tiledGraph instanceof RGBImage);
+    assertSamePixels(graph, tiledGraph);
+    tiled.release();
+  }
+
+  @Test
+  public void testDataFormats() {
+    int[] counts = new int[256];
+    counts[3] = 7;
+    Histogram histogram = new Histogram(counts, new int[256], counts);
+    String csv = histogram.toCsv();
+    assertTrue(csv.startsWith("value,red,green,blue\n0,0,0,0\n"));
+    assertTrue(csv.contains("\n3,7,0,7\n"));
+    assertEquals(257, csv.split("\n").length);
+    String json = histogram.toJson();
+    assertTrue(json.startsWith("{\"red\":[0,0,0,7,0,"));
+    assertTrue(json.contains(",\"green\":[0,"));
+    assertTrue(json.endsWith("0]}"));
+  }
+
+  /**
+   * Checks that an image knows its histogram and that it matches counting its pixels.
+   */
+  private static void assertCounted(AbstractImage result) {
+    Histogram known = result.knownHistogram();
+    assertNotNull(known, "The histogram should be known without counting");
+    Histogram counted = Histogram.of(result, result.getWidth() - 1);
+    assertArrayEquals(counted.getRed(), known.getRed());
+    assertArrayEquals(counted.getGreen(), known.getGreen());
+    assertArrayEquals(counted.getBlue(), known.getBlue());
+  }
+}
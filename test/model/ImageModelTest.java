@@ -0,0 +1,114 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The {@code ImageModelTest} class contains unit tests for the bookkeeping {@code ImageModel}
+ * does around the stored images.
+ */
+public class ImageModelTest {
+
+  private ImageModel model;
+
+  /**
+   * setup will load a small image into a new model.
+   */
+  @BeforeEach
+  public void setUp() throws IOException {
+    BufferedImage source = new BufferedImage(4, 3, BufferedImage.TYPE_INT_RGB);
+    source.setRGB(1, 2, 0x336699);
+    model = new ImageModel();
+    model.loadImage(source, "image");
+  }
+
+  @Test
+  public void testGetImageReturnsCachedImageUntilOverwritten() throws IOException {
+    BufferedImage first = model.getImage("image");
+    assertSame(first, model.getImage("image"));
+    assertEquals(0x336699, first.getRGB(1, 2) & 0xFFFFFF);
+
+    model.brightenImage("10", "image", "image");
+    BufferedImage brightened = model.getImage("image");
+
+    assertNotSame(first, brightened);
+    assertEquals(0x3D70A3, brightened.getRGB(1, 2) & 0xFFFFFF);
+  }
+
+  @Test
+  public void testPreparedCompressionOnlyStoresWhenItsStepRuns() throws Exception {
+    model.compress(50, "image", "expected");
+    Supplier<Runnable> compression = model.prepareCompress(50, "image", "image");
+    FutureTask<Runnable> worker = new FutureTask<>(compression::get);
+    new Thread(worker).start();
+    Runnable store = worker.get();
+    assertEquals(0x336699, model.getImage("image").getRGB(1, 2) & 0xFFFFFF,
+            "The compression must not change the model before its result is stored");
+
+    store.run();
+    BufferedImage expected = model.getImage("expected");
+    BufferedImage actual = model.getImage("image");
+    for (int y = 0; y < 3; y++) {
+      for (int x = 0; x < 4; x++) {
+        assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+      }
+    }
+  }
+
+  @Test
+  public void testLongChainsOfViewsDoNotOverflowTheStack() throws IOException {
+    for (int k = 0; k < 20_000; k++) {
+      model.applyFilter("horizontal-flip", "image", "image", 100);
+    }
+    assertEquals(0x336699, model.getImage("image").getRGB(1, 2) & 0xFFFFFF);
+
+    for (int k = 0; k < 500; k++) {
+      model.applyFilter("flip", "image", "image", 100);
+      model.applyFilter("sepia", "image", "image", 100);
+      model.applyFilter("red-component", "image", "image", 100);
+    }
+    model.getImage("image");
+  }
+
+  @Test
+  public void testDeferredModeOnlyEvaluatesImagesThatAreRead() throws IOException {
+    ImageModel deferredModel = new ImageModel(ImageStorage.PACKED,
+            ImageModel.DEFAULT_OFF_HEAP_THRESHOLD, ImageModel.DEFAULT_TILED_THRESHOLD, true);
+    deferredModel.loadImage(model.getImage("image"), "image");
+
+    // Never read, so the invalid size is never noticed
+    deferredModel.downscale("image", "unused", 100, 100);
+    deferredModel.brightenImage("10", "image", "bright");
+    deferredModel.applyFilter("sepia", "bright", "sepia", 100);
+    deferredModel.applyFilter("grayscale", "sepia", "image", 100);
+
+    int expected = AbstractImage.lumaGrey(AbstractImage.sepia(0x3D70A3));
+    assertEquals(expected, deferredModel.getImage("image").getRGB(1, 2) & 0xFFFFFF);
+    assertEquals(0x3D70A3, deferredModel.getImage("bright").getRGB(1, 2) & 0xFFFFFF);
+    assertThrows(RuntimeException.class, () -> deferredModel.getImage("unused"));
+  }
+
+  @Test
+  public void testDeferredModeReusesRepeatedOperations() throws IOException {
+    ImageModel deferredModel = new ImageModel(ImageStorage.PACKED,
+            ImageModel.DEFAULT_OFF_HEAP_THRESHOLD, ImageModel.DEFAULT_TILED_THRESHOLD, true);
+    deferredModel.loadImage(model.getImage("image"), "image");
+
+    deferredModel.brightenImage("10", "image", "first");
+    deferredModel.brightenImage("10", "image", "second");
+    deferredModel.brightenImage("20", "image", "third");
+
+    assertSame(deferredModel.getImage("first"), deferredModel.getImage("second"));
+    assertNotSame(deferredModel.getImage("first"), deferredModel.getImage("third"));
+  }
+}
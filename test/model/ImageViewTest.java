@@ -0,0 +1,171 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Random;
+
+import static model.LayoutFixtures.assertSamePixels;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The {@code ImageViewTest} class contains unit tests for {@code ImageView}, the lazy image that
+ * flips, channel extraction and pointwise pipelines return. {@code RGBImage} wraps the view in an
+ * image of its own type, so both forms are checked.
+ */
+public class ImageViewTest {
+
+  private RGBImage image;
+
+  /**
+   * setup will load the six-color fixture.
+   */
+  @BeforeEach
+  public void setUp() throws IOException {
+    image = new RGBImage();
+    image.loadImage(LayoutFixtures.sixColors());
+  }
+
+  @Test
+  public void testViewsRemapTheirSource() throws IOException {
+    AbstractImage flipped = (AbstractImage) image.flipHorizontal();
+    assertTrue(flipped instanceof RGBImage);
+    assertEquals(0x0000FF, flipped.getRGB(0, 0));
+    assertEquals(0x7B5738, flipped.getRGB(1, 2));
+
+    AbstractImage red = (AbstractImage) ((AbstractImage) image.flipVertical()).createRed();
+    int[] row = new int[3];
+    red.readRow(0, row);
+    assertEquals(0x7B7B7B, row[0]);
+    assertEquals(0x2C2C2C, row[1]);
+    assertEquals(0x101010, row[2]);
+
+    BufferedImage saved = red.getImage("red");
+    assertEquals(0x7B7B7B, saved.getRGB(0, 0) & 0xFFFFFF);
+    assertEquals(0xFFFFFF, saved.getRGB(0, 1) & 0xFFFFFF);
+  }
+
+  @Test
+  public void testStackedRemapsMergeIntoOneView() throws IOException {
+    PlanarRGBImage planarImage = new PlanarRGBImage();
+    planarImage.loadImage(LayoutFixtures.sixColors());
+
+    AbstractImage restored = (AbstractImage) planarImage.flipHorizontal().flipHorizontal();
+    assertSamePixels(planarImage, restored);
+
+    // The second channel of a channel view is the first channel again
+    AbstractImage redThenBlue = (AbstractImage) ((AbstractImage) planarImage.flipVertical()
+            .createRed()).flipHorizontal().createBlue();
+    assertSamePixels(((AbstractImage) planarImage.flipHorizontal().flipVertical()).createRed(),
+            redThenBlue);
+    assertEquals(0x101010, redThenBlue.getRGB(0, 0));
+    assertTrue(redThenBlue.pendingView() != null);
+  }
+
+  @Test
+  public void testPlanarFlipsReturnViews() throws IOException {
+    PlanarRGBImage planarImage = new PlanarRGBImage();
+    planarImage.loadImage(image.getImage("image"));
+
+    AbstractImage flipped = (AbstractImage) planarImage.flipHorizontal().flipVertical();
+    assertTrue(flipped instanceof ImageView);
+    assertEquals(0x102030, flipped.getRGB(0, 0));
+    assertEquals(0xFF0000, flipped.getRGB(1, 2));
+    assertTrue(flipped.sharpen() instanceof PlanarRGBImage);
+  }
+
+  @Test
+  public void testWritingToViewCopiesIt() {
+    AbstractImage flipped = (AbstractImage) image.flipHorizontal();
+    flipped.setRGB(0, 0, 0x123456);
+
+    assertEquals(0x123456, flipped.getRGB(0, 0));
+    assertEquals(0xFF0000, flipped.getRGB(0, 2));
+    assertEquals(0x0000FF, image.getRGB(0, 2),
+            "Writing to the view must not change the source");
+  }
+
+  @Test
+  public void testOffHeapImagesAreCopied() throws IOException {
+    OffHeapRGBImage offHeapImage = new OffHeapRGBImage();
+    offHeapImage.loadImage(image.getImage("image"));
+
+    AbstractImage flipped = (AbstractImage) offHeapImage.flipVertical();
+    offHeapImage.release();
+
+    assertFalse(flipped instanceof ImageView);
+    assertEquals(0x7B5738, flipped.getRGB(0, 0));
+    flipped.release();
+  }
+
+  @Test
+  public void testPointwiseOperationsFuseIntoOnePipeline() throws IOException {
+    AbstractImage brightened = (AbstractImage) image.brightness(30);
+    AbstractImage sepia = (AbstractImage) brightened.convertToSepia();
+    AbstractImage grey = (AbstractImage) sepia.convertToGreyScale();
+    assertTrue(grey instanceof RGBImage);
+    assertEquals(0x2E3E4E, brightened.getRGB(1, 2));
+    assertEquals(AbstractImage.lumaGrey(AbstractImage.sepia(0x2E3E4E)), grey.getRGB(1, 2));
+
+    grey.getImage("grey");
+    assertTrue(grey.pendingPipeline() == null, "Reading the pipeline whole must keep its result");
+    assertTrue(brightened.pendingPipeline() != null && sepia.pendingPipeline() != null,
+            "Reading the last image must not materialize the images before it");
+  }
+
+  @Test
+  public void testFusedPipelinesMatchSteppedOperations() throws IOException {
+    BufferedImage source = new BufferedImage(300, 40, BufferedImage.TYPE_INT_RGB);
+    Random random = new Random(5);
+    for (int y = 0; y < source.getHeight(); y++) {
+      for (int x = 0; x < source.getWidth(); x++) {
+        source.setRGB(x, y, random.nextInt(0x1000000));
+      }
+    }
+    for (ImageStorage storage : ImageStorage.values()) {
+      AbstractImage fused = (AbstractImage) storage.newImage();
+      fused.loadImage(source);
+      AbstractImage stepped = (AbstractImage) storage.newImage();
+      stepped.loadImage(source);
+
+      fused = chain(fused, false);
+      stepped = chain(stepped, true);
+      for (int i = 0; i < source.getHeight(); i++) {
+        for (int j = 0; j < source.getWidth(); j++) {
+          assertEquals(stepped.getRGB(i, j), fused.getRGB(i, j),
+                  storage + " pixel at (" + i + ", " + j + ") does not match");
+        }
+      }
+      BufferedImage saved = fused.getImage("fused");
+      assertEquals(stepped.getRGB(7, 9), saved.getRGB(9, 7) & 0xFFFFFF);
+      assertTrue(fused.pendingPipeline() == null,
+              "A pipeline that has been read whole must keep its result");
+    }
+  }
+
+  /**
+   * Runs brighten, levels, sepia, gamma, contrast and greyscale, materializing each result first
+   * when {@code stepped} is set.
+   */
+  private static AbstractImage chain(AbstractImage image, boolean stepped) throws IOException {
+    AbstractImage result = (AbstractImage) image.brightness(25);
+    result = step(result, stepped);
+    result.setLevels(15, 110, 235);
+    result = step((AbstractImage) result.adjustLevels(60), stepped);
+    result = step((AbstractImage) result.convertToSepia(40), stepped);
+    result = step((AbstractImage) result.applyTone(ToneCurve.gamma(1.6), 100), stepped);
+    result = step((AbstractImage) result.applyTone(ToneCurve.contrast(1.3), 100), stepped);
+    return step((AbstractImage) result.convertToGreyScale(), stepped);
+  }
+
+  private static AbstractImage step(AbstractImage image, boolean stepped) throws IOException {
+    if (stepped) {
+      image.getImage("step");
+    }
+    return image;
+  }
+}
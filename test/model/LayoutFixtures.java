@@ -0,0 +1,52 @@
+package model;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The {@code LayoutFixtures} class holds the small image and the pixel comparison shared by the
+ * tests of the storage layouts and of {@code ImageView}.
+ */
+final class LayoutFixtures {
+
+  private LayoutFixtures() {
+  }
+
+  /**
+   * Creates a 3x2 image whose top row is pure red, green and blue and whose bottom row is
+   * 0x7B5738, 0x2CFF80 and 0x102030.
+   *
+   * @return the new image.
+   */
+  static BufferedImage sixColors() {
+    BufferedImage source = new BufferedImage(3, 2, BufferedImage.TYPE_INT_RGB);
+    int[] colors = {0xFF0000, 0x00FF00, 0x0000FF, 0x7B5738, 0x2CFF80, 0x102030};
+    source.setRGB(0, 0, 3, 2, colors, 0, 3);
+    return source;
+  }
+
+  /**
+   * Asserts that two images of any layout have the same size and pixels, reading them a row at
+   * a time.
+   *
+   * @param expected the expected image.
+   * @param actual   the image to check.
+   */
+  static void assertSamePixels(ImageADT expected, ImageADT actual) {
+    AbstractImage expectedImage = (AbstractImage) expected;
+    AbstractImage actualImage = (AbstractImage) actual;
+    assertEquals(expectedImage.getWidth(), actualImage.getWidth(), "Widths do not match");
+    assertEquals(expectedImage.getHeight(), actualImage.getHeight(), "Heights do not match");
+    int[] expectedRow = new int[expectedImage.getWidth()];
+    int[] actualRow = new int[actualImage.getWidth()];
+    for (int i = 0; i < expectedImage.getHeight(); i++) {
+      expectedImage.readRow(i, expectedRow);
+      actualImage.readRow(i, actualRow);
+      for (int j = 0; j < expectedImage.getWidth(); j++) {
+        assertEquals(expectedRow[j], actualRow[j],
+                "Pixel at (" + i + ", " + j + ") does not match");
+      }
+    }
+  }
+}
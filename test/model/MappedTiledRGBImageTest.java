@@ -0,0 +1,95 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import javax.imageio.ImageIO;
+
+import static model.LayoutFixtures.assertSamePixels;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The {@code MappedTiledRGBImageTest} class contains unit tests for {@code MappedTiledRGBImage}.
+ * The test image is larger than one tile in both directions, so rows and kernels cross tile
+ * boundaries.
+ */
+public class MappedTiledRGBImageTest {
+
+  private BufferedImage source;
+  private MappedTiledRGBImage tiledImage;
+  private RGBImage packedImage;
+
+  /**
+   * setup will load the same random 600x530 image into the tiled and packed layouts.
+   */
+  @BeforeEach
+  public void setUp() throws IOException {
+    source = new BufferedImage(600, 530, BufferedImage.TYPE_INT_RGB);
+    Random random = new Random(42);
+    for (int y = 0; y < source.getHeight(); y++) {
+      for (int x = 0; x < source.getWidth(); x++) {
+        source.setRGB(x, y, random.nextInt(0x1000000));
+      }
+    }
+
+    tiledImage = new MappedTiledRGBImage();
+    tiledImage.loadImage(source);
+    packedImage = new RGBImage();
+    packedImage.loadImage(source);
+  }
+
+  @Test
+  public void testOperationsMatchPackedLayout() {
+    assertSamePixels(packedImage, tiledImage);
+    assertSamePixels(packedImage.blur(70), tiledImage.blur(70));
+    assertSamePixels(packedImage.sharpen(), tiledImage.sharpen());
+    assertSamePixels(packedImage.convertToSepia(), tiledImage.convertToSepia());
+    assertSamePixels(packedImage.brightness(-20), tiledImage.brightness(-20));
+    assertSamePixels(packedImage.flipHorizontal(), tiledImage.flipHorizontal());
+    assertSamePixels(packedImage.flipVertical(), tiledImage.flipVertical());
+    assertSamePixels(packedImage.downscale(300, 200), tiledImage.downscale(300, 200));
+  }
+
+  @Test
+  public void testReleasedImageCannotBeRead() {
+    tiledImage.release();
+    tiledImage.release();
+
+    assertThrows(IllegalStateException.class, () -> tiledImage.getRGB(0, 0));
+  }
+
+  @Test
+  public void testModelStreamsLargeImagesThroughTiles() throws IOException {
+    File input = File.createTempFile("tiled-input", ".png");
+    File output = File.createTempFile("tiled-output", ".png");
+    try {
+      ImageIO.write(source, "png", input);
+      ImageModel model = new ImageModel(ImageStorage.PACKED,
+              ImageModel.DEFAULT_OFF_HEAP_THRESHOLD, 100_000);
+
+      model.loadImageFile(input.getPath(), "image");
+      model.applyFilter("blur", "image", "blurred", 100);
+      assertTrue(model.saveImageFile("blurred", output.getPath()));
+
+      BufferedImage saved = ImageIO.read(output);
+      BufferedImage expected = packedImage.blur().getImage("expected");
+      assertEquals(expected.getWidth(), saved.getWidth());
+      assertEquals(expected.getHeight(), saved.getHeight());
+      for (int y = 0; y < expected.getHeight(); y++) {
+        for (int x = 0; x < expected.getWidth(); x++) {
+          assertEquals(expected.getRGB(x, y), saved.getRGB(x, y),
+                  "Pixel at (" + x + ", " + y + ") does not match");
+        }
+      }
+    } finally {
+      input.delete();
+      output.delete();
+    }
+  }
+}
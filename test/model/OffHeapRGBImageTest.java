@@ -0,0 +1,91 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import static model.LayoutFixtures.assertSamePixels;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The {@code OffHeapRGBImageTest} class contains unit tests for {@code OffHeapRGBImage}. It checks
+ * that the off-heap layout produces the same pixels as {@code RGBImage}, and that its memory is
+ * freed when the image is released or overwritten in the model.
+ */
+public class OffHeapRGBImageTest {
+
+  private BufferedImage source;
+  private OffHeapRGBImage offHeapImage;
+  private RGBImage packedImage;
+
+  /**
+   * setup will load the six-color fixture into the off-heap and packed layouts.
+   */
+  @BeforeEach
+  public void setUp() throws IOException {
+    source = LayoutFixtures.sixColors();
+
+    offHeapImage = new OffHeapRGBImage();
+    offHeapImage.loadImage(source);
+    packedImage = new RGBImage();
+    packedImage.loadImage(source);
+  }
+
+  @Test
+  public void testOperationsMatchPackedLayout() {
+    assertSamePixels(packedImage.blur(), offHeapImage.blur());
+    assertSamePixels(packedImage.sharpen(40), offHeapImage.sharpen(40));
+    assertSamePixels(packedImage.convertToGreyScale(), offHeapImage.convertToGreyScale());
+    assertSamePixels(packedImage.convertToValue(), offHeapImage.convertToValue());
+    assertSamePixels(packedImage.flipVertical(), offHeapImage.flipVertical());
+    assertSamePixels(packedImage.createGreen(), offHeapImage.createGreen());
+    assertSamePixels(packedImage.compressImage(50), offHeapImage.compressImage(50));
+    assertSamePixels(packedImage.downscale(2, 1), offHeapImage.downscale(2, 1));
+  }
+
+  @Test
+  public void testReleaseFreesMemory() {
+    long before = DirectBuffers.allocatedBytes();
+    OffHeapRGBImage image = new OffHeapRGBImage(100, 50);
+    assertEquals(before + 100 * 50 * 4, DirectBuffers.allocatedBytes());
+
+    image.release();
+    image.release();
+
+    assertEquals(before, DirectBuffers.allocatedBytes());
+    assertThrows(IllegalStateException.class, () -> image.getRGB(0, 0));
+  }
+
+  @Test
+  public void testModelReleasesOverwrittenImage() throws IOException {
+    ImageModel model = new ImageModel(ImageStorage.PACKED, 6);
+    long before = DirectBuffers.allocatedBytes();
+    long imageBytes = 6 * 4;
+
+    model.loadImage(source, "image");
+    model.applyFilter("blur", "image", "image", 100);
+    assertEquals(before + imageBytes, DirectBuffers.allocatedBytes());
+
+    model.resetToOriginal("alias", "image");
+    model.applyFilter("sepia", "image", "image", 100);
+    assertEquals(before + 2 * imageBytes, DirectBuffers.allocatedBytes(),
+            "An image still stored under another name must not be released");
+    model.getImage("alias");
+
+    model.applyFilter("sepia", "image", "alias", 100);
+    assertEquals(before + 2 * imageBytes, DirectBuffers.allocatedBytes());
+  }
+
+  @Test
+  public void testModelKeepsSmallImagesOnHeap() throws IOException {
+    ImageModel model = new ImageModel(ImageStorage.PACKED, 7);
+    long before = DirectBuffers.allocatedBytes();
+
+    model.loadImage(source, "image");
+
+    assertEquals(before, DirectBuffers.allocatedBytes());
+  }
+}
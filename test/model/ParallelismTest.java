@@ -0,0 +1,112 @@
+package model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The {@code ParallelismTest} class contains unit tests for {@code Parallelism}. Every operation
+ * that runs in parallel bands is run with one thread and with several, and the results must
+ * match pixel for pixel.
+ */
+public class ParallelismTest {
+
+  private BufferedImage source;
+  private BufferedImage mask;
+  private int defaultThreads;
+
+  /**
+   * setup will create a random 410x330 image, large enough to be split into bands, and a mask
+   * that selects its left half.
+   */
+  @BeforeEach
+  public void setUp() {
+    defaultThreads = Parallelism.getThreads();
+    source = new BufferedImage(410, 330, BufferedImage.TYPE_INT_RGB);
+    mask = new BufferedImage(410, 330, BufferedImage.TYPE_INT_RGB);
+    Random random = new Random(3);
+    for (int y = 0; y < source.getHeight(); y++) {
+      for (int x = 0; x < source.getWidth(); x++) {
+        source.setRGB(x, y, random.nextInt(0x1000000));
+        mask.setRGB(x, y, x < source.getWidth() / 2 ? 0x000000 : 0xFFFFFF);
+      }
+    }
+  }
+
+  @AfterEach
+  public void tearDown() {
+    Parallelism.setThreads(defaultThreads);
+  }
+
+  @Test
+  public void testResultsDoNotDependOnThreadCount() throws IOException {
+    for (ImageStorage storage : ImageStorage.values()) {
+      Parallelism.setThreads(1);
+      List<BufferedImage> serial = runOperations(storage);
+      Parallelism.setThreads(6);
+      List<BufferedImage> parallel = runOperations(storage);
+
+      for (int k = 0; k < serial.size(); k++) {
+        BufferedImage expected = serial.get(k);
+        BufferedImage actual = parallel.get(k);
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        assertArrayEquals(
+                expected.getRGB(0, 0, expected.getWidth(), expected.getHeight(), null, 0,
+                        expected.getWidth()),
+                actual.getRGB(0, 0, actual.getWidth(), actual.getHeight(), null, 0,
+                        actual.getWidth()),
+                storage + " operation " + k + " differs between 1 and 6 threads");
+      }
+    }
+  }
+
+  @Test
+  public void testRejectsInvalidThreadCount() {
+    assertThrows(IllegalArgumentException.class, () -> Parallelism.setThreads(0));
+  }
+
+  private List<BufferedImage> runOperations(ImageStorage storage) throws IOException {
+    AbstractImage image = (AbstractImage) storage.newImage();
+    image.loadImage(source);
+    AbstractImage maskImage = (AbstractImage) storage.newImage();
+    maskImage.loadImage(mask);
+    image.setLevels(20, 120, 230);
+
+    List<Function<AbstractImage, ImageADT>> operations = new ArrayList<>();
+    operations.add(AbstractImage::blur);
+    operations.add(i -> i.sharpen(60));
+    operations.add(i -> i.convertToSepia(40));
+    operations.add(i -> i.brightness(-15));
+    operations.add(AbstractImage::colorCorrection);
+    operations.add(i -> i.adjustLevels(70));
+    operations.add(i -> i.downscale(201, 123));
+    operations.add(i -> i.applyPartialWithMasking(maskImage, "blur"));
+    operations.add(i -> i.combineChannels((AbstractImage) i.createGreen(),
+            (AbstractImage) i.createBlue()));
+    operations.add(AbstractImage::generateHistogram);
+    operations.add(i -> i.compressImage(90));
+    operations.add(i -> i.compressImage(90, true));
+
+    List<BufferedImage> results = new ArrayList<>();
+    for (Function<AbstractImage, ImageADT> operation : operations) {
+      ImageADT result = operation.apply(image);
+      results.add(result.getImage("result"));
+      result.release();
+    }
+    image.release();
+    maskImage.release();
+    return results;
+  }
+}
@@ -0,0 +1,121 @@
+package model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * The {@code PixelAllocationTest} class is an allocation benchmark for the per-pixel hot paths.
+ * It measures the bytes the current thread allocates while running an operation and checks that
+ * nothing is allocated per pixel: an operation may allocate its result image and a few row
+ * buffers, but any per-pixel object or boxed channel list would cost at least 16 bytes per
+ * pixel and push it far over the limit.
+ */
+public class PixelAllocationTest {
+
+  private static final int SIZE = 512;
+
+  // Room for row buffers, lambdas and the console messages the operations print
+  private static final long SLACK_BYTES = 256 * 1024;
+
+  private RGBImage image;
+  private com.sun.management.ThreadMXBean threads;
+  private int defaultThreads;
+
+  /**
+   * setup will load a random 512x512 image and enable thread allocation counting. Operations
+   * run on the calling thread only, so that all of their allocations are counted.
+   */
+  @BeforeEach
+  public void setUp() throws IOException {
+    assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean,
+            "Thread allocation counters are not available on this JVM");
+    threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    assumeTrue(threads.isThreadAllocatedMemorySupported());
+    threads.setThreadAllocatedMemoryEnabled(true);
+    defaultThreads = Parallelism.getThreads();
+    Parallelism.setThreads(1);
+
+    BufferedImage source = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+    Random random = new Random(7);
+    for (int y = 0; y < SIZE; y++) {
+      for (int x = 0; x < SIZE; x++) {
+        source.setRGB(x, y, random.nextInt(0x1000000));
+      }
+    }
+    image = new RGBImage();
+    image.loadImage(source);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    Parallelism.setThreads(defaultThreads);
+  }
+
+  @Test
+  public void testFiltersAllocateOnlyTheirResult() {
+    long resultBytes = (long) SIZE * SIZE * Integer.BYTES;
+    assertAllocatesAtMost(resultBytes + SLACK_BYTES, "blur", () -> materialized(image.blur()));
+    assertAllocatesAtMost(resultBytes + SLACK_BYTES, "sharpen",
+            () -> materialized(image.sharpen()));
+    assertAllocatesAtMost(resultBytes + SLACK_BYTES, "value",
+            () -> materialized(image.convertToValue()));
+    assertAllocatesAtMost(resultBytes + SLACK_BYTES, "intensity",
+            () -> materialized(image.convertToIntensity()));
+  }
+
+  @Test
+  public void testSplitOperationsShareUnchangedColumns() {
+    // At 10% only the first of the two 256-column segments of each row is copied
+    long changedBytes = (long) SIZE * (SIZE / 2) * Integer.BYTES;
+    assertAllocatesAtMost(changedBytes + SLACK_BYTES, "sepia at 10%",
+            () -> materialized(image.convertToSepia(10)));
+    assertAllocatesAtMost(changedBytes + SLACK_BYTES, "blur at 10%",
+            () -> materialized(image.blur(10)));
+  }
+
+  @Test
+  public void testVisualizeDoesNotAllocate() {
+    RGBImagePixel pixel = new RGBImagePixel(200, 150, 255);
+    assertEquals(255, image.visualizeValue(pixel));
+    assertEquals(202, image.visualizeIntensity(pixel));
+
+    assertAllocatesAtMost(SLACK_BYTES, "visualizeValue and visualizeIntensity", () -> {
+      int total = 0;
+      for (int i = 0; i < SIZE * SIZE; i++) {
+        total += image.visualizeValue(pixel) + image.visualizeIntensity(pixel);
+      }
+      return total;
+    });
+  }
+
+  /**
+   * Runs the pipeline of an operation that returned a lazy view, so that the pixels it computes
+   * are counted as well.
+   */
+  private static AbstractImage materialized(ImageADT result) {
+    AbstractImage image = (AbstractImage) result;
+    ImageView pipeline = image.pendingPipeline();
+    return pipeline == null ? image : pipeline.materialize();
+  }
+
+  private void assertAllocatesAtMost(long limit, String name, Supplier<?> operation) {
+    operation.get(); // warm up so class loading and JIT work is not counted
+    long threadId = Thread.currentThread().getId();
+    long before = threads.getThreadAllocatedBytes(threadId);
+    operation.get();
+    long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+    assertTrue(allocated <= limit,
+            name + " allocated " + allocated + " bytes, expected at most " + limit);
+  }
+}
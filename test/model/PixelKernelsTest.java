@@ -0,0 +1,122 @@
+package model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The {@code PixelKernelsTest} class contains unit tests for {@code PixelKernels}. The sepia and
+ * luma kernels are checked against their per-pixel forms for every 24-bit color, and every
+ * filter with a row form, including the integer convolutions, is run with the kernels enabled
+ * and disabled, and the results must match pixel for pixel.
+ */
+public class PixelKernelsTest {
+
+  private BufferedImage source;
+
+  /**
+   * setup will create a random 97x61 image.
+   */
+  @BeforeEach
+  public void setUp() {
+    source = new BufferedImage(97, 61, BufferedImage.TYPE_INT_RGB);
+    Random random = new Random(11);
+    for (int y = 0; y < source.getHeight(); y++) {
+      for (int x = 0; x < source.getWidth(); x++) {
+        source.setRGB(x, y, random.nextInt(0x1000000));
+      }
+    }
+  }
+
+  @AfterEach
+  public void tearDown() {
+    PixelKernels.setRowKernels(true);
+  }
+
+  @Test
+  public void testSepiaMatchesPerPixelFormForEveryColor() {
+    assertMatchesEveryColor(PixelKernels::sepia, AbstractImage::sepia);
+  }
+
+  @Test
+  public void testLumaMatchesPerPixelFormForEveryColor() {
+    assertMatchesEveryColor(PixelKernels::lumaGrey, AbstractImage::lumaGrey);
+  }
+
+  @Test
+  public void testFiltersMatchWithKernelsDisabled() throws IOException {
+    for (ImageStorage storage : ImageStorage.values()) {
+      PixelKernels.setRowKernels(false);
+      List<BufferedImage> perPixel = runOperations(storage);
+      PixelKernels.setRowKernels(true);
+      List<BufferedImage> perRow = runOperations(storage);
+
+      for (int k = 0; k < perPixel.size(); k++) {
+        BufferedImage expected = perPixel.get(k);
+        BufferedImage actual = perRow.get(k);
+        assertArrayEquals(
+                expected.getRGB(0, 0, expected.getWidth(), expected.getHeight(), null, 0,
+                        expected.getWidth()),
+                actual.getRGB(0, 0, actual.getWidth(), actual.getHeight(), null, 0,
+                        actual.getWidth()),
+                storage + " operation " + k + " differs between the kernels and the "
+                        + "per-pixel forms");
+      }
+    }
+  }
+
+  private void assertMatchesEveryColor(AbstractImage.RowOperator kernel,
+                                       IntUnaryOperator perPixel) {
+    int[] row = new int[256];
+    int[] result = new int[256];
+    for (int redGreen = 0; redGreen < 1 << 16; redGreen++) {
+      for (int blue = 0; blue < 256; blue++) {
+        row[blue] = (redGreen << 8) | blue;
+      }
+      kernel.apply(row, result, row.length);
+      for (int blue = 0; blue < 256; blue++) {
+        if (result[blue] != perPixel.applyAsInt(row[blue])) {
+          assertEquals(perPixel.applyAsInt(row[blue]), result[blue],
+                  "Color " + Integer.toHexString(row[blue]) + " does not match");
+        }
+      }
+    }
+  }
+
+  private List<BufferedImage> runOperations(ImageStorage storage) throws IOException {
+    AbstractImage image = (AbstractImage) storage.newImage();
+    image.loadImage(source);
+    image.setLevels(20, 120, 230);
+
+    List<Function<AbstractImage, ImageADT>> operations = new ArrayList<>();
+    operations.add(AbstractImage::convertToSepia);
+    operations.add(i -> i.convertToGreyScale(45));
+    operations.add(i -> i.converttoLuma(100));
+    operations.add(i -> i.brightness(37));
+    operations.add(i -> i.brightness(-200));
+    operations.add(AbstractImage::colorCorrection);
+    operations.add(i -> i.adjustLevels(70));
+    operations.add(AbstractImage::blur);
+    operations.add(i -> i.sharpen(60));
+
+    List<BufferedImage> results = new ArrayList<>();
+    for (Function<AbstractImage, ImageADT> operation : operations) {
+      ImageADT result = operation.apply(image);
+      results.add(result.getImage("result"));
+      result.release();
+    }
+    image.release();
+    return results;
+  }
+}
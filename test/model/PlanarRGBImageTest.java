@@ -0,0 +1,89 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static model.LayoutFixtures.assertSamePixels;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The {@code PlanarRGBImageTest} class contains unit tests for {@code PlanarRGBImage}. It checks
+ * that the planar layout produces the same pixels as {@code RGBImage} and that shared planes are
+ * not modified through another image.
+ */
+public class PlanarRGBImageTest {
+
+  private BufferedImage source;
+  private PlanarRGBImage planarImage;
+  private RGBImage packedImage;
+
+  /**
+   * setup will load the six-color fixture into the planar and packed layouts.
+   */
+  @BeforeEach
+  public void setUp() throws IOException {
+    source = LayoutFixtures.sixColors();
+
+    planarImage = new PlanarRGBImage();
+    planarImage.loadImage(source);
+    packedImage = new RGBImage();
+    packedImage.loadImage(source);
+  }
+
+  @Test
+  public void testOperationsMatchPackedLayout() {
+    assertSamePixels(packedImage.blur(), planarImage.blur());
+    assertSamePixels(packedImage.sharpen(40), planarImage.sharpen(40));
+    assertSamePixels(packedImage.convertToSepia(60), planarImage.convertToSepia(60));
+    assertSamePixels(packedImage.brightness(30), planarImage.brightness(30));
+    assertSamePixels(packedImage.flipHorizontal(), planarImage.flipHorizontal());
+    assertSamePixels(packedImage.colorCorrection(), planarImage.colorCorrection());
+    assertSamePixels(packedImage.generateHistogram(), planarImage.generateHistogram());
+  }
+
+  @Test
+  public void testHistogramCountsMatchPackedLayout() {
+    for (int lastColumn = 0; lastColumn < 3; lastColumn++) {
+      Histogram packed = packedImage.histogram(lastColumn);
+      Histogram planar = planarImage.histogram(lastColumn);
+      assertArrayEquals(packed.getRed(), planar.getRed());
+      assertArrayEquals(packed.getGreen(), planar.getGreen());
+      assertArrayEquals(packed.getBlue(), planar.getBlue());
+    }
+    Histogram whole = planarImage.histogram();
+    assertEquals(2, whole.getRed()[0]);
+    assertEquals(1, whole.getRed()[0x7B]);
+    assertEquals(1, whole.getGreen()[0x57]);
+
+    planarImage.setRGB(0, 0, 0x7B0000);
+    assertEquals(2, planarImage.histogram().getRed()[0x7B],
+            "The kept histogram must be counted again once the pixels change");
+  }
+
+  @Test
+  public void testCreateRedSharesPlaneUntilWritten() {
+    PlanarRGBImage redImage = (PlanarRGBImage) planarImage.createRed();
+    assertEquals(0xFFFFFF, redImage.getRGB(0, 0));
+    assertEquals(0x7B7B7B, redImage.getRGB(1, 0));
+
+    redImage.setRGB(0, 0, 0x000000);
+
+    assertEquals(0x000000, redImage.getRGB(0, 0));
+    assertEquals(0xFF0000, planarImage.getRGB(0, 0),
+            "Writing to the derived image must not change the source");
+  }
+
+  @Test
+  public void testRGBSplitThenCombineRestoresImage() {
+    AbstractImage combined = ((AbstractImage) planarImage.createRed()).combineChannels(
+            (AbstractImage) planarImage.createGreen(), (AbstractImage) planarImage.createBlue());
+
+    assertTrue(combined instanceof PlanarRGBImage);
+    assertEquals(planarImage, combined);
+  }
+}
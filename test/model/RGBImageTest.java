@@ -0,0 +1,90 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * The {@code RGBImageTest} class contains unit tests for the copy-on-write row segments of
+ * {@code RGBImage}. The test image is 600 columns wide, so each row spans several segments and
+ * the split columns fall inside one.
+ */
+public class RGBImageTest {
+
+  private RGBImage image;
+
+  /**
+   * setup will load a random 600x40 image.
+   */
+  @BeforeEach
+  public void setUp() throws IOException {
+    BufferedImage source = new BufferedImage(600, 40, BufferedImage.TYPE_INT_RGB);
+    Random random = new Random(11);
+    for (int y = 0; y < source.getHeight(); y++) {
+      for (int x = 0; x < source.getWidth(); x++) {
+        source.setRGB(x, y, random.nextInt(0x1000000));
+      }
+    }
+    image = new RGBImage();
+    image.loadImage(source);
+  }
+
+  @Test
+  public void testSplitOperationsKeepUnchangedColumns() {
+    AbstractImage fullBlur = (AbstractImage) image.blur();
+    AbstractImage splitBlur = (AbstractImage) image.blur(30);
+    AbstractImage fullSepia = (AbstractImage) image.convertToSepia();
+    AbstractImage splitSepia = (AbstractImage) image.convertToSepia(70);
+
+    int blurSplit = (int) (600 * 0.3);
+    int sepiaSplit = (int) (600 * 0.7);
+    for (int i = 0; i < 40; i++) {
+      for (int j = 0; j < 600; j++) {
+        assertEquals(j <= blurSplit ? fullBlur.getRGB(i, j) : image.getRGB(i, j),
+                splitBlur.getRGB(i, j), "Blur pixel at (" + i + ", " + j + ") does not match");
+        assertEquals(j <= sepiaSplit ? fullSepia.getRGB(i, j) : image.getRGB(i, j),
+                splitSepia.getRGB(i, j), "Sepia pixel at (" + i + ", " + j + ") does not match");
+      }
+    }
+  }
+
+  @Test
+  public void testWritesDoNotReachSharedSegments() {
+    RGBImage derived = (RGBImage) image.convertToSepia(10);
+    int sourcePixel = image.getRGB(5, 500);
+    int derivedPixel = derived.getRGB(5, 300);
+    assertEquals(sourcePixel, derived.getRGB(5, 500));
+
+    derived.setRGB(5, 500, 0x123456);
+    image.setRGB(5, 300, 0x654321);
+
+    assertEquals(0x123456, derived.getRGB(5, 500));
+    assertEquals(sourcePixel, image.getRGB(5, 500),
+            "Writing to the derived image must not change the source");
+    assertEquals(derivedPixel, derived.getRGB(5, 300),
+            "Writing to the source must not change the derived image");
+
+    int[] row = new int[600];
+    derived.readRow(6, row);
+    row[599] = 0xABCDEF;
+    derived.writeRow(6, row);
+    assertEquals(0xABCDEF, derived.getRGB(6, 599));
+    assertEquals(image.getRGB(7, 599), derived.getRGB(7, 599));
+  }
+
+  @Test
+  public void testEqualsReadsThroughDeferredViews() {
+    RGBImage flipped = (RGBImage) image.flipHorizontal();
+    RGBImage restored = (RGBImage) flipped.flipHorizontal();
+    assertEquals(image, restored);
+    assertEquals(restored, image);
+    assertFalse(image.equals(flipped));
+    assertEquals(image.hashCode(), restored.hashCode());
+  }
+}
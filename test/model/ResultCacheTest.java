@@ -0,0 +1,101 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The {@code ResultCacheTest} class contains unit tests for {@code ResultCache}, the bounded
+ * cache of operation results kept by {@code ImageModel}.
+ */
+public class ResultCacheTest {
+
+  @Test
+  public void testEvictsLeastRecentlyUsedResults() throws IOException {
+    // Room for two 10x10 results of 400 bytes each
+    ResultCache cache = new ResultCache(800);
+    ImageNode.Key first = key("first");
+    ImageNode.Key second = key("second");
+    ImageNode.Key third = key("third");
+    ImageADT firstImage = image(10, 10);
+    ImageADT secondImage = image(10, 10);
+
+    assertTrue(cache.put(first, firstImage).isEmpty());
+    assertTrue(cache.put(second, secondImage).isEmpty());
+    assertSame(firstImage, cache.get(first));
+
+    List<ImageADT> evicted = cache.put(third, image(10, 10));
+    assertEquals(Collections.singletonList(secondImage), evicted);
+    assertFalse(cache.contains(secondImage));
+    assertEquals(null, cache.get(second));
+    assertEquals(800, cache.bytes());
+    assertEquals(1, cache.hits());
+    assertEquals(1, cache.misses());
+  }
+
+  @Test
+  public void testSkipsResultsLargerThanTheCache() throws IOException {
+    ResultCache cache = new ResultCache(100);
+    ImageADT large = image(10, 10);
+    assertTrue(cache.put(key("large"), large).isEmpty());
+    assertFalse(cache.contains(large));
+    assertEquals(0, cache.bytes());
+  }
+
+  @Test
+  public void testModelSkipsCachedOperations() throws IOException {
+    ImageModel model = new ImageModel();
+    model.loadImage(((AbstractImage) image(8, 6)).getImage("image"), "image");
+    model.loadImage(((AbstractImage) image(8, 6)).getImage("copy"), "copy");
+
+    model.applyFilter("sepia", "image", "sepia", 100);
+    model.brightenImage("15", "sepia", "bright");
+    // The copy has the same pixels, so both of its results come from the cache
+    model.applyFilter("sepia", "copy", "copySepia", 100);
+    model.brightenImage("15", "copySepia", "copyBright");
+    model.applyFilter("sepia", "image", "sepia", 50);
+
+    assertEquals(2, model.getCacheHits());
+    assertEquals(3, model.getCacheMisses());
+    assertSame(model.getImage("bright"), model.getImage("copyBright"));
+  }
+
+  @Test
+  public void testDisabledCacheIsNotLookedUp() throws IOException {
+    IModel model = new ImageModel(ImageStorage.PACKED, ImageModel.DEFAULT_OFF_HEAP_THRESHOLD,
+            ImageModel.DEFAULT_TILED_THRESHOLD, false, 0);
+    model.loadImage(((AbstractImage) image(8, 6)).getImage("image"), "image");
+    model.applyFilter("sepia", "image", "sepia", 100);
+    model.brightenImage("15", "sepia", "bright");
+
+    assertEquals(0, model.getCacheHits());
+    assertEquals(0, model.getCacheMisses());
+    assertEquals(((AbstractImage) image(8, 6).convertToSepia().brightness(15)).getImage("x")
+            .getRGB(3, 2), model.getImage("bright").getRGB(3, 2));
+  }
+
+  private static ImageNode.Key key(String operation) {
+    return ImageNode.Key.of(Arrays.asList(operation));
+  }
+
+  private static ImageADT image(int width, int height) throws IOException {
+    BufferedImage source = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        source.setRGB(x, y, (x * 31 + y * 17) * 0x10203);
+      }
+    }
+    RGBImage image = new RGBImage();
+    image.loadImage(source);
+    return image;
+  }
+}
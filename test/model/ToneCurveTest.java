@@ -0,0 +1,96 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The {@code ToneCurveTest} class contains unit tests for {@code ToneCurve}, the lookup tables
+ * behind brightness, color correction, levels and the other tone operations.
+ */
+public class ToneCurveTest {
+
+  @Test
+  public void testOffsetsClampEachChannel() {
+    int[] row = {0x000000, 0xFFFFFF, 0x10F005};
+    ToneCurve.offsets(20, -20, 0).kernel().apply(row, row, row.length);
+    assertArrayEquals(new int[]{0x140000, 0xFFEBFF, 0x24DC05}, row);
+  }
+
+  @Test
+  public void testKernelOnlyWritesTheGivenLength() {
+    int[] source = {0x000000, 0x12345F, 0xFFFFFF};
+    int[] target = new int[3];
+    ToneCurve.invert().kernel().apply(source, target, 2);
+    assertArrayEquals(new int[]{0xFFFFFF, 0xEDCBA0, 0}, target);
+  }
+
+  @Test
+  public void testToneOperations() {
+    assertEquals(0x000000, ToneCurve.gamma(2.2).apply(0x000000));
+    assertEquals(0xFFFFFF, ToneCurve.gamma(2.2).apply(0xFFFFFF));
+    assertEquals(0xBABABA, ToneCurve.gamma(2.2).apply(0x808080));
+    assertEquals(0x123456, ToneCurve.gamma(1).apply(0x123456));
+
+    assertEquals(0x00FF81, ToneCurve.contrast(3).apply(0x40C080));
+    assertEquals(0x808080, ToneCurve.contrast(0).apply(0x10F0A0));
+
+    ToneCurve curve = ToneCurve.curves(new int[]{32, 128, 224}, new int[]{0, 200, 255});
+    assertEquals(0x000000, curve.apply(0x101010));
+    assertEquals(0x64C8FF, curve.apply(0x50 << 16 | 0x80 << 8 | 0xF0));
+    assertEquals(0x123456, ToneCurve.identity().apply(0x123456));
+  }
+
+  @Test
+  public void testThenComposesCurves() {
+    ToneCurve brighten = ToneCurve.offsets(40, 40, 40);
+    ToneCurve composed = brighten.then(ToneCurve.invert());
+    for (int rgb : new int[]{0x000000, 0x123456, 0xE0F0FF}) {
+      assertEquals(ToneCurve.invert().apply(brighten.apply(rgb)), composed.apply(rgb));
+    }
+  }
+
+  @Test
+  public void testRejectsInvalidParameters() {
+    assertThrows(IllegalArgumentException.class, () -> ToneCurve.gamma(0));
+    assertThrows(IllegalArgumentException.class, () -> ToneCurve.contrast(-1));
+    assertThrows(IllegalArgumentException.class,
+        () -> ToneCurve.curves(new int[]{0, 0}, new int[]{0, 255}));
+    assertThrows(IllegalArgumentException.class,
+        () -> ToneCurve.curves(new int[]{0, 255}, new int[]{0}));
+    assertThrows(IllegalArgumentException.class,
+        () -> ToneCurve.curves(new int[]{0, 256}, new int[]{0, 255}));
+  }
+
+  @Test
+  public void testBrightnessMatchesClampedOffsets() throws IOException {
+    BufferedImage source = new BufferedImage(41, 17, BufferedImage.TYPE_INT_RGB);
+    Random random = new Random(13);
+    for (int y = 0; y < source.getHeight(); y++) {
+      for (int x = 0; x < source.getWidth(); x++) {
+        source.setRGB(x, y, random.nextInt(0x1000000));
+      }
+    }
+    RGBImage image = new RGBImage();
+    image.loadImage(source);
+
+    ImageADT brightened = image.brightness(70);
+    ImageADT inverted = image.applyTone(ToneCurve.invert(), 50);
+    for (int i = 0; i < image.getHeight(); i++) {
+      for (int j = 0; j < image.getWidth(); j++) {
+        int rgb = image.getRGB(i, j);
+        int expected = RGBImagePixel.pack(Math.min(255, RGBImagePixel.red(rgb) + 70),
+                Math.min(255, RGBImagePixel.green(rgb) + 70),
+                Math.min(255, RGBImagePixel.blue(rgb) + 70));
+        assertEquals(expected, ((AbstractImage) brightened).getRGB(i, j));
+        assertEquals(j <= 20 ? rgb ^ 0xFFFFFF : rgb, ((AbstractImage) inverted).getRGB(i, j));
+      }
+    }
+  }
+}
@@ -0,0 +1,224 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The {@code WaveletCodecTest} class contains unit tests for {@code WaveletCodec}. It checks that
+ * images survive a round trip through the format within the error of its quantization, that
+ * reduced reads give the averages of the blocks they cover, that compressed images take less
+ * space than the originals, and that other files and truncated or oversized headers are
+ * rejected.
+ */
+public class WaveletCodecTest {
+
+  private RGBImage image;
+
+  /**
+   * setup will load a 70x45 image of smooth gradients with some fine detail.
+   */
+  @BeforeEach
+  public void setUp() throws IOException {
+    BufferedImage source = new BufferedImage(70, 45, BufferedImage.TYPE_INT_RGB);
+    for (int y = 0; y < 45; y++) {
+      for (int x = 0; x < 70; x++) {
+        int red = x * 3;
+        int green = (x + y) * 2;
+        int blue = 128 + (int) (100 * Math.sin(x / 5.0) * Math.cos(y / 7.0));
+        source.setRGB(x, y, RGBImagePixel.pack(red, green, blue));
+      }
+    }
+    image = new RGBImage();
+    image.loadImage(source);
+  }
+
+  @Test
+  public void testRoundTripStaysWithinQuantization() throws IOException {
+    AbstractImage decoded = roundTrip(image, ImageStorage.PACKED);
+    assertEquals(70, decoded.getWidth());
+    assertEquals(45, decoded.getHeight());
+    assertTrue(maxDifference(image, decoded) <= 2, "Pixels drifted too far");
+  }
+
+  @Test
+  public void testDecodesIntoEveryLayout() throws IOException {
+    for (ImageStorage storage : ImageStorage.values()) {
+      AbstractImage decoded = roundTrip(image, storage);
+      assertTrue(maxDifference(image, decoded) <= 2, storage + " pixels drifted too far");
+      decoded.release();
+    }
+  }
+
+  @Test
+  public void testCompressedImageIsSmaller() throws IOException {
+    Random random = new Random(5);
+    BufferedImage source = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+    for (int y = 0; y < 64; y++) {
+      for (int x = 0; x < 64; x++) {
+        source.setRGB(x, y, random.nextInt(0x1000000));
+      }
+    }
+    RGBImage noise = new RGBImage();
+    noise.loadImage(source);
+    AbstractImage compressed = (AbstractImage) noise.compressImage(90);
+    int original = encode(noise).length;
+    int sparse = encode(compressed).length;
+    assertTrue(sparse * 2 < original, sparse + " bytes is not much less than " + original);
+    // The coefficients zeroed by compression stay zero, so decoding gives the compressed image
+    AbstractImage decoded = WaveletCodec.read(new ByteArrayInputStream(encode(compressed)),
+            ImageStorage.PACKED::newImage);
+    assertTrue(maxDifference(compressed, decoded) <= 2, "Pixels drifted too far");
+  }
+
+  @Test
+  public void testModelSavesAndLoadsHaarFiles() throws IOException {
+    Path file = Files.createTempFile("wavelet", ".haar");
+    try {
+      ImageModel model = new ImageModel();
+      model.loadImage(image.getImage("source"), "source");
+      model.saveImageFile("source", file.toString());
+      model.loadImageFile(file.toString(), "loaded");
+      BufferedImage loaded = model.getImage("loaded");
+      assertEquals(70, loaded.getWidth());
+      assertEquals(45, loaded.getHeight());
+      model.loadImageFile(file.toString(), "preview", 4);
+      BufferedImage preview = model.getImage("preview");
+      assertEquals(18, preview.getWidth());
+      assertEquals(12, preview.getHeight());
+      assertThrows(IllegalArgumentException.class,
+          () -> model.loadImageFile(file.toString(), "preview", 3));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  public void testReducedReadAveragesBlocks() throws IOException {
+    byte[] encoded = encode(image);
+    int[] fullRow = new int[70];
+    for (int reductions = 1; reductions <= 3; reductions++) {
+      int block = 1 << reductions;
+      AbstractImage reduced = WaveletCodec.read(new ByteArrayInputStream(encoded),
+              ImageStorage.PACKED::newImage, reductions);
+      assertEquals((70 + block - 1) / block, reduced.getWidth());
+      assertEquals((45 + block - 1) / block, reduced.getHeight());
+
+      // Sum each channel over the blocks of the full image, edge blocks being smaller
+      int[][] sums = new int[reduced.getHeight() * reduced.getWidth()][3];
+      int[] counts = new int[sums.length];
+      for (int y = 0; y < 45; y++) {
+        image.readRow(y, fullRow);
+        for (int x = 0; x < 70; x++) {
+          int index = (y / block) * reduced.getWidth() + x / block;
+          counts[index]++;
+          for (int k = 0; k < 3; k++) {
+            sums[index][k] += (fullRow[x] >> (16 - 8 * k)) & 0xFF;
+          }
+        }
+      }
+      int[] row = new int[reduced.getWidth()];
+      for (int i = 0; i < reduced.getHeight(); i++) {
+        reduced.readRow(i, row);
+        for (int j = 0; j < row.length; j++) {
+          int index = i * reduced.getWidth() + j;
+          for (int k = 0; k < 3; k++) {
+            double average = (double) sums[index][k] / counts[index];
+            int actual = (row[j] >> (16 - 8 * k)) & 0xFF;
+            assertTrue(Math.abs(average - actual) <= 2,
+                    "1/" + block + " pixel " + i + "," + j + " is not the block average");
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testRejectsReductionsBeyondTheSmallerSide() {
+    // The 45 rows are padded to 64, which can be halved 6 times
+    assertThrows(IllegalArgumentException.class, () -> WaveletCodec.read(
+            new ByteArrayInputStream(encode(image)), ImageStorage.PACKED::newImage, 7));
+  }
+
+  @Test
+  public void testRejectsOtherFiles() {
+    byte[] bytes = "P3\n2 2\n255\n".getBytes();
+    assertThrows(IllegalArgumentException.class, () -> WaveletCodec.read(
+            new ByteArrayInputStream(bytes), ImageStorage.PACKED::newImage));
+  }
+
+  @Test
+  public void testRejectsOversizedHeaders() throws IOException {
+    // Padding a side above 2^30 would overflow, so the size is refused before it is padded
+    byte[] tooWide = header(Integer.MAX_VALUE, 1, 31);
+    assertThrows(IllegalArgumentException.class, () -> WaveletCodec.read(
+            new ByteArrayInputStream(tooWide), ImageStorage.PACKED::newImage));
+    // 40000 pads to 65536, and 65536 x 65536 coefficients do not fit in an array
+    byte[] tooLarge = header(40000, 40000, 16);
+    assertThrows(IllegalArgumentException.class, () -> WaveletCodec.read(
+            new ByteArrayInputStream(tooLarge), ImageStorage.PACKED::newImage));
+  }
+
+  @Test
+  public void testRejectsTruncatedHeaders() throws IOException {
+    byte[] full = header(70, 45, 7);
+    for (int length = 0; length < full.length; length++) {
+      byte[] truncated = Arrays.copyOf(full, length);
+      assertThrows(IOException.class, () -> WaveletCodec.read(
+              new ByteArrayInputStream(truncated), ImageStorage.PACKED::newImage));
+    }
+  }
+
+  private static byte[] header(int width, int height, int depth) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    DataOutputStream header = new DataOutputStream(out);
+    header.writeBytes("HAAR");
+    header.writeByte(1);
+    header.writeInt(width);
+    header.writeInt(height);
+    header.writeByte(depth);
+    header.writeFloat(1.0f);
+    return out.toByteArray();
+  }
+
+  private static byte[] encode(AbstractImage source) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    WaveletCodec.write(source, out);
+    return out.toByteArray();
+  }
+
+  private static AbstractImage roundTrip(AbstractImage source, ImageStorage storage)
+          throws IOException {
+    return WaveletCodec.read(new ByteArrayInputStream(encode(source)), storage::newImage);
+  }
+
+  private static int maxDifference(AbstractImage expected, AbstractImage actual) {
+    int[] expectedRow = new int[expected.getWidth()];
+    int[] actualRow = new int[actual.getWidth()];
+    int max = 0;
+    for (int i = 0; i < expected.getHeight(); i++) {
+      expected.readRow(i, expectedRow);
+      actual.readRow(i, actualRow);
+      for (int j = 0; j < expectedRow.length; j++) {
+        for (int shift = 0; shift < 24; shift += 8) {
+          int difference = ((expectedRow[j] >> shift) & 0xFF) - ((actualRow[j] >> shift) & 0xFF);
+          max = Math.max(max, Math.abs(difference));
+        }
+      }
+    }
+    return max;
+  }
+}
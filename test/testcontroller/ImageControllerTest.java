@@ -367,6 +367,19 @@ public class ImageControllerTest {
     assertTrue(compressedFile.exists());
   }
 
+  @Test
+  public void testToneCommandsWithPercentage() throws IOException {
+
+    controller.loadImage("res/input/manhattan-original.png", "image1");
+    controller.executeCommand("gamma 2.2 image1 gammaImage split 50");
+    controller.executeCommand("curves 0:0,64:40,192:220,255:255 gammaImage curvedImage");
+    controller.executeCommand("invert curvedImage invertedImage split 30");
+    controller.executeCommand("save res/tone.png invertedImage");
+
+    File toneFile = new File("res/tone.png");
+    assertTrue(toneFile.exists());
+  }
+
   @Test
   public void testCompressImage10() throws IOException {
 